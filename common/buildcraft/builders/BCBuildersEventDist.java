@@ -8,22 +8,31 @@ package buildcraft.builders;
 
 import java.lang.ref.WeakReference;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.WeakHashMap;
 
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.client.Minecraft;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
+import net.minecraft.util.SoundCategory;
+import net.minecraft.util.SoundEvent;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorldEventListener;
 import net.minecraft.world.World;
 
 import net.minecraftforge.client.event.RenderTooltipEvent;
 import net.minecraftforge.event.world.GetCollisionBoxesEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.client.config.GuiUtils;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
@@ -33,12 +42,15 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 import buildcraft.api.core.BCLog;
 import buildcraft.api.schematics.ISchematicBlock;
 
+import buildcraft.lib.misc.data.PackedVoxelVolume;
+
 import buildcraft.builders.client.ClientArchitectTables;
 import buildcraft.builders.item.ItemSchematicSingle;
 import buildcraft.builders.snapshot.Blueprint;
 import buildcraft.builders.snapshot.ClientSnapshots;
 import buildcraft.builders.snapshot.Snapshot;
 import buildcraft.builders.snapshot.Snapshot.Header;
+import buildcraft.builders.snapshot.SnapshotBuilder;
 import buildcraft.builders.tile.TileQuarry;
 
 public enum BCBuildersEventDist {
@@ -46,6 +58,7 @@ public enum BCBuildersEventDist {
 
     private static final UUID UUID_SINGLE_SCHEMATIC = new UUID(0xfd3b8c59b0a8b191L, 0x772ec006c1b0ffaaL);
     private final Map<World, Deque<WeakReference<TileQuarry>>> allQuarries = new WeakHashMap<>();
+    private final Map<World, Set<SnapshotBuilder<?>>> allSnapshotBuilders = new WeakHashMap<>();
 
     public void validateQuarry(TileQuarry quarry) {
         Deque<WeakReference<TileQuarry>> quarries = allQuarries.computeIfAbsent(quarry.getWorld(),
@@ -71,6 +84,38 @@ public enum BCBuildersEventDist {
         }
     }
 
+    /** Adds the given builder to the set of builders that are told about block changes in the given world. The builders
+     * are only weakly referenced, so they don't need to be removed. */
+    public void validateSnapshotBuilder(World world, SnapshotBuilder<?> builder) {
+        allSnapshotBuilders.computeIfAbsent(world, k -> Collections.newSetFromMap(new WeakHashMap<>())).add(builder);
+    }
+
+    @SubscribeEvent
+    public void onWorldLoad(WorldEvent.Load event) {
+        World world = event.getWorld();
+        if (!world.isRemote) {
+            world.addEventListener(new BlockChangeListener());
+        }
+    }
+
+    private void onBlockChanged(World world, BlockPos pos) {
+        Deque<WeakReference<TileQuarry>> quarries = allQuarries.get(world);
+        if (quarries != null) {
+            for (WeakReference<TileQuarry> ref : quarries) {
+                TileQuarry quarry = ref.get();
+                if (quarry != null) {
+                    quarry.onBlockChanged(pos);
+                }
+            }
+        }
+        Set<SnapshotBuilder<?>> builders = allSnapshotBuilders.get(world);
+        if (builders != null) {
+            for (SnapshotBuilder<?> builder : builders) {
+                builder.onBlockChanged(pos);
+            }
+        }
+    }
+
     @SubscribeEvent
     public void onGetCollisionBoxesForQuarry(GetCollisionBoxesEvent event) {
         AxisAlignedBB target = event.getAabb();
@@ -110,7 +155,7 @@ public enum BCBuildersEventDist {
                 Blueprint bpt = new Blueprint();
                 bpt.size = new BlockPos(1, 1, 1);
                 bpt.offset = BlockPos.ORIGIN;
-                bpt.data = new int[][][] { { { 0 } } };
+                bpt.data = new PackedVoxelVolume(1, 1, 1, 1);
                 bpt.palette.add(schematic);
                 bpt.header = new Header(bpt.computeHash(), UUID_SINGLE_SCHEMATIC, Date.from(Instant.EPOCH), "_item");
                 snapshot = bpt;
@@ -156,4 +201,48 @@ public enum BCBuildersEventDist {
             ClientArchitectTables.tick();
         }
     }
+
+    /** Tells every quarry and snapshot builder in the world about block changes, so that they don't have to keep
+     * scanning their boxes for changes. */
+    private static class BlockChangeListener implements IWorldEventListener {
+        @Override
+        public void notifyBlockUpdate(World worldIn, BlockPos pos, IBlockState oldState, IBlockState newState, int flags) {
+            if (oldState != newState) {
+                INSTANCE.onBlockChanged(worldIn, pos);
+            }
+        }
+
+        @Override
+        public void notifyLightSet(BlockPos pos) {}
+
+        @Override
+        public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2) {}
+
+        @Override
+        public void playSoundToAllNearExcept(EntityPlayer player, SoundEvent soundIn, SoundCategory category, double x, double y, double z, float volume, float pitch) {}
+
+        @Override
+        public void playRecord(SoundEvent soundIn, BlockPos pos) {}
+
+        @Override
+        public void spawnParticle(int particleID, boolean ignoreRange, double xCoord, double yCoord, double zCoord, double xSpeed, double ySpeed, double zSpeed, int... parameters) {}
+
+        @Override
+        public void spawnParticle(int p_190570_1_, boolean p_190570_2_, boolean p_190570_3_, double p_190570_4_, double p_190570_6_, double p_190570_8_, double p_190570_10_, double p_190570_12_, double p_190570_14_, int... p_190570_16_) {}
+
+        @Override
+        public void onEntityAdded(Entity entityIn) {}
+
+        @Override
+        public void onEntityRemoved(Entity entityIn) {}
+
+        @Override
+        public void broadcastSound(int soundID, BlockPos pos, int data) {}
+
+        @Override
+        public void playEvent(EntityPlayer player, int type, BlockPos blockPosIn, int data) {}
+
+        @Override
+        public void sendBlockBreakProgress(int breakerId, BlockPos pos, int progress) {}
+    }
 }
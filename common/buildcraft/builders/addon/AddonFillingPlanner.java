@@ -20,6 +20,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraftforge.common.util.Constants;
 
 import buildcraft.lib.misc.NBTUtilBC;
+import buildcraft.lib.misc.data.PackedVoxelVolume;
 
 import buildcraft.builders.BCBuildersGuis;
 import buildcraft.builders.BCBuildersSprites;
@@ -49,7 +50,7 @@ public class AddonFillingPlanner extends Addon implements ISingleAddon {
         Template template = new Template();
         template.size = box.box.size();
         template.offset = BlockPos.ORIGIN;
-        template.data = getFillingPlan();
+        template.data = PackedVoxelVolume.fromBooleans(getFillingPlan());
         buildingInfo = template.new BuildingInfo(box.box.min(), Rotation.NONE);
     }
 
@@ -14,6 +14,8 @@ import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.lang3.tuple.Pair;
 
 import net.minecraft.item.ItemStack;
@@ -33,10 +35,11 @@ import buildcraft.api.schematics.ISchematicEntity;
 
 import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.data.Box;
+import buildcraft.lib.misc.data.PackedVoxelVolume;
 
 public class Blueprint extends Snapshot {
     public final List<ISchematicBlock<?>> palette = new ArrayList<>();
-    public int[][][] data;
+    public PackedVoxelVolume data;
     public final List<ISchematicEntity<?>> entities = new ArrayList<>();
 
     public Blueprint copy() {
@@ -45,14 +48,7 @@ public class Blueprint extends Snapshot {
         blueprint.facing = facing;
         blueprint.offset = offset;
         blueprint.palette.addAll(palette);
-        blueprint.data = new int[size.getX()][size.getY()][size.getZ()];
-        for (int z = 0; z < size.getZ(); z++) {
-            for (int y = 0; y < size.getY(); y++) {
-                for (int x = 0; x < size.getX(); x++) {
-                    blueprint.data[x][y][z] = data[x][y][z];
-                }
-            }
-        }
+        blueprint.data = data.copy();
         blueprint.entities.addAll(entities);
         blueprint.header = header.withHash(blueprint.computeHash());
         return blueprint;
@@ -68,12 +64,8 @@ public class Blueprint extends Snapshot {
         NBTTagCompound nbt = super.serializeNBT();
         nbt.setTag("palette", NBTUtilBC.writeCompoundList(palette.stream().map(SchematicBlockManager::writeToNBT)));
         NBTTagList list = new NBTTagList();
-        for (int z = 0; z < size.getZ(); z++) {
-            for (int y = 0; y < size.getY(); y++) {
-                for (int x = 0; x < size.getX(); x++) {
-                    list.appendTag(new NBTTagInt(data[x][y][z]));
-                }
-            }
+        for (int value : data.toIntArray()) {
+            list.appendTag(new NBTTagInt(value));
         }
         nbt.setTag("data", list);
         nbt.setTag("entities", NBTUtilBC.writeCompoundList(entities.stream().map(SchematicEntityManager::writeToNBT)));
@@ -92,8 +84,6 @@ public class Blueprint extends Snapshot {
             // schematics through mod additions/deletions)
             palette.add(SchematicBlockManager.readFromNBT(schematicBlockTag));
         }
-        data = new int[size.getX()][size.getY()][size.getZ()];
-
         NBTTagList list = nbt.hasKey("data", Constants.NBT.TAG_LIST) ? nbt.getTagList("data", Constants.NBT.TAG_INT)
             : null;
         int[] serializedData = nbt.hasKey("data", Constants.NBT.TAG_INT_ARRAY) ? nbt.getIntArray("data") : new int[0];
@@ -105,15 +95,18 @@ public class Blueprint extends Snapshot {
             throw new InvalidInputDataException("Pallette has length of " + len
                 + ", but we expected " + size.getX() * size.getY() * size.getZ() + size.toString());
         }
-        int i = 0;
-        for (int z = 0; z < size.getZ(); z++) {
-            for (int y = 0; y < size.getY(); y++) {
-                for (int x = 0; x < size.getX(); x++) {
-                    data[x][y][z] = list == null ? serializedData[i] : list.getIntAt(i);
-                    i++;
-                }
+        if (list != null) {
+            serializedData = new int[len];
+            for (int i = 0; i < len; i++) {
+                serializedData[i] = list.getIntAt(i);
             }
         }
+        data = new PackedVoxelVolume(size, PackedVoxelVolume.getBitsFor(palette.size()));
+        try {
+            data.readFrom(serializedData);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputDataException("Invalid blueprint data", e);
+        }
         for (NBTTagCompound schematicEntityTag : NBTUtilBC.readCompoundList(nbt.getTagList("entities",
             Constants.NBT.TAG_COMPOUND)).collect(Collectors.toList())) {
             entities.add(SchematicEntityManager.readFromNBT(schematicEntityTag));
@@ -138,16 +131,25 @@ public class Blueprint extends Snapshot {
         public final Map<ISchematicEntity<?>, List<FluidStack>> entitiesRequiredFluids = new HashMap<>();
 
         public BuildingInfo(BlockPos basePos, Rotation rotation) {
+            this(basePos, rotation, null);
+        }
+
+        /** @param loader If non-null then this is being computed on a worker thread, so the loader's fake world is
+         *            used instead of {@link FakeWorld#INSTANCE}. */
+        BuildingInfo(BlockPos basePos, Rotation rotation, @Nullable BuildingInfoLoader<?> loader) {
             this.basePos = basePos;
             this.rotation = rotation;
+            FakeWorld world = loader == null ? FakeWorld.INSTANCE : loader.getWorld();
             Pair<List<ItemStack>[][][], List<FluidStack>[][][]> required = SchematicBlockManager.computeRequired(
-                getSnapshot());
+                getSnapshot(), world, loader);
             Pair<List<List<ItemStack>>, List<List<FluidStack>>> requiredEntities = SchematicEntityManager
-                .computeRequired(getSnapshot());
+                .computeRequired(getSnapshot(), world);
+            // The volume is stored in z, y, x order, so this goes through it in a single pass
+            int index = 0;
             for (int z = 0; z < getSnapshot().size.getZ(); z++) {
                 for (int y = 0; y < getSnapshot().size.getY(); y++) {
                     for (int x = 0; x < getSnapshot().size.getX(); x++) {
-                        ISchematicBlock<?> schematicBlock = palette.get(data[x][y][z]);
+                        ISchematicBlock<?> schematicBlock = palette.get(data.get(index++));
                         BlockPos blockPos = new BlockPos(x, y, z).rotate(rotation).add(basePos).add(offset.rotate(
                             rotation));
                         if (schematicBlock.isAir()) {
@@ -159,6 +161,9 @@ public class Blueprint extends Snapshot {
                         }
                     }
                 }
+                if (loader != null) {
+                    loader.step();
+                }
             }
             int i = 0;
             for (ISchematicEntity<?> schematicEntity : getSnapshot().entities) {
@@ -43,7 +43,8 @@ public class BlueprintBuilder extends SnapshotBuilder<ITileForBlueprintBuilder>
         super(tile);
     }
 
-    private Blueprint.BuildingInfo getBuildingInfo() {
+    @Override
+    protected Blueprint.BuildingInfo getBuildingInfo() {
         return tile.getBlueprintBuildingInfo();
     }
 
@@ -128,7 +129,8 @@ public class BlueprintBuilder extends SnapshotBuilder<ITileForBlueprintBuilder>
             .allMatch(pos ->
                 getBuildingInfo().toPlace.containsKey(pos)
                     ? isBlockCorrect(pos)
-                    : !getToBreak().contains(pos) || tile.getWorldBC().isAirBlock(pos)
+                    // Everything in the box that isn't in toPlace is in toBreak
+                    : !getBuildingInfo().getBox().contains(pos) || tile.getWorldBC().isAirBlock(pos)
             ) &&
             !getBuildingInfo().toPlace.get(blockPos).isAir() &&
             getBuildingInfo().toPlace.get(blockPos).canBuild(tile.getWorldBC(), blockPos);
@@ -208,8 +210,7 @@ public class BlueprintBuilder extends SnapshotBuilder<ITileForBlueprintBuilder>
             remainingDisplayRequired.clear();
             remainingDisplayRequired.addAll(StackUtil.mergeSameItems(
                 Stream.concat(
-                    getToPlace().stream()
-                        .filter(blockPos -> !isBlockCorrect(blockPos))
+                    getIncorrectToPlace()
                         .flatMap(blockPos ->
                             getDisplayRequired(
                                 buildingInfo.toPlaceRequiredItems.get(blockPos),
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.Rotation;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.api.core.BCLog;
+
+import buildcraft.lib.misc.WorkerThreadUtil;
+
+/** Computes a {@link Blueprint.BuildingInfo} or a {@link Template.BuildingInfo} on a worker thread (see
+ * {@link WorkerThreadUtil#executeLongTask(java.util.concurrent.Callable)}), so that loading a big snapshot into a builder doesn't stall the server.
+ * <p>
+ * Blueprints are evaluated in a {@link FakeWorld} that belongs to the worker thread, rather than the shared
+ * {@link FakeWorld#INSTANCE} (which is only safe to use from the main thread). */
+public final class BuildingInfoLoader<I> {
+    private static final ThreadLocal<FakeWorld> WORKER_WORLDS = ThreadLocal.withInitial(FakeWorld::new);
+
+    private final int totalSteps;
+    private volatile int doneSteps = 0;
+    private volatile boolean cancelled = false;
+    private final Future<I> future;
+
+    private BuildingInfoLoader(int totalSteps, Function<BuildingInfoLoader<I>, I> computer) {
+        this.totalSteps = totalSteps;
+        this.future = WorkerThreadUtil.executeLongTask(() -> {
+            try {
+                return computer.apply(this);
+            } catch (CancellationException e) {
+                // Thrown by step() after cancel(), so it isn't a failure
+                return null;
+            } catch (RuntimeException e) {
+                BCLog.logger.warn("[builders.snapshot] Failed to compute the building info!", e);
+                throw e;
+            }
+        });
+    }
+
+    public static BuildingInfoLoader<Template.BuildingInfo> load(Template template, BlockPos basePos,
+        Rotation rotation) {
+        return new BuildingInfoLoader<>(
+            template.size.getZ(),
+            loader -> template.new BuildingInfo(basePos, rotation, loader)
+        );
+    }
+
+    public static BuildingInfoLoader<Blueprint.BuildingInfo> load(Blueprint blueprint, BlockPos basePos,
+        Rotation rotation) {
+        // One step per z slice for computing the required items, and then another for each slice of the info itself
+        return new BuildingInfoLoader<>(
+            blueprint.size.getZ() * 2,
+            loader -> blueprint.new BuildingInfo(basePos, rotation, loader)
+        );
+    }
+
+    /** Called by the building info every time it finishes a z slice.
+     *
+     * @throws CancellationException if {@link #cancel()} has been called, to stop the computation early. */
+    void step() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        doneSteps++;
+    }
+
+    /** @return The fake world that the calling worker thread should use. */
+    FakeWorld getWorld() {
+        return WORKER_WORLDS.get();
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /** @return The computed building info, or null if it isn't done yet, was cancelled, or failed (in which case
+     *         exception will have already been logged). */
+    @Nullable
+    public I getResult() {
+        if (!future.isDone() || future.isCancelled()) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        future.cancel(false);
+    }
+
+    /** @return How much of the building info has been computed, from 0 to 1. */
+    public double getProgress() {
+        return totalSteps == 0 ? 1 : Math.min(1, doneSteps / (double) totalSteps);
+    }
+}
@@ -6,10 +6,19 @@
 
 package buildcraft.builders.snapshot;
 
-import java.util.ArrayList;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.Nullable;
 
 import com.google.common.base.Predicates;
 
@@ -32,30 +41,244 @@ import net.minecraft.util.math.Vec3d;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
+import buildcraft.api.core.BCLog;
 import buildcraft.api.schematics.ISchematicEntity;
 
+import buildcraft.lib.misc.HashUtil;
+import buildcraft.lib.misc.WorkerThreadUtil;
+import buildcraft.lib.nbt.NbtSquisher;
 import buildcraft.lib.net.MessageManager;
 
+/** Holds the snapshots that the client has received from the server (to render them in tooltips and guis).
+ * <p>
+ * Snapshots are looked up in this order, and only go to the next step if the previous one didn't have it:
+ * <ol>
+ * <li>An in-memory cache of the most recently used snapshots.</li>
+ * <li>The client's own snapshot library ({@link GlobalSavedDataSnapshots}).</li>
+ * <li>The on-disk cache in {@link #getCacheDirectory()}, which holds every snapshot that has been received before,
+ * named by its hash.</li>
+ * <li>The server, which sends it back in parts (see {@link MessageSnapshotResponse}). If the parts stop arriving then
+ * the missing ones are asked for again.</li>
+ * </ol>
+ * Reading from the disk cache and decompressing received snapshots both happen on a worker thread, and are handed back
+ * to the client thread the next time {@link #getSnapshot(Snapshot.Header)} is called. */
 public enum ClientSnapshots {
     INSTANCE;
 
-    private final List<Snapshot> snapshots = new ArrayList<>();
-    private final List<Snapshot.Header> pending = new ArrayList<>();
-    private final Map<Snapshot.Header, FakeWorld> worlds = new HashMap<>();
+    private static final int MAX_CACHED = 32;
+    /** How long to wait for the next part of a snapshot before asking the server for the rest of it again. */
+    private static final long RESEND_TIMEOUT = 5_000;
+    /** The number of times a snapshot is asked for before giving up on it (for example because the server doesn't have
+     * it any more). */
+    private static final int MAX_REQUESTS = 5;
+
+    private final Map<Snapshot.Header, Snapshot> snapshots = new LinkedHashMap<Snapshot.Header, Snapshot>(16, 0.75f,
+        true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Snapshot.Header, Snapshot> eldest) {
+            if (size() > MAX_CACHED) {
+                worlds.remove(eldest.getKey());
+                buffers.remove(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+    /** The render data of the most recently rendered snapshots. These are kept separately from {@link #snapshots} as
+     * snapshots can be rendered without ever going through {@link #getSnapshot(Snapshot.Header)}. */
+    private final Map<Snapshot.Header, FakeWorld> worlds = new LinkedHashMap<Snapshot.Header, FakeWorld>(16, 0.75f,
+        true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Snapshot.Header, FakeWorld> eldest) {
+            if (size() > MAX_CACHED) {
+                buffers.remove(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
     private final Map<Snapshot.Header, VertexBuffer> buffers = new HashMap<>();
+    private final Map<Snapshot.Header, Transfer> pending = new HashMap<>();
+    /** Results from the worker threads, waiting to be handled on the client thread. */
+    private final Queue<Loaded> loaded = new ConcurrentLinkedQueue<>();
 
     public Snapshot getSnapshot(Snapshot.Header header) {
-        Snapshot found = snapshots.stream().filter(snapshot -> snapshot.header.equals(header)).findFirst().orElse(null);
-        if (found == null && !pending.contains(header)) {
-            pending.add(header);
-            MessageManager.sendToServer(new MessageSnapshotRequest(header));
+        handleLoaded();
+        Snapshot found = snapshots.get(header);
+        if (found != null) {
+            return found;
+        }
+        found = GlobalSavedDataSnapshots.get(Side.CLIENT).getSnapshotByHeader(header);
+        if (found != null) {
+            snapshots.put(header, found);
+            return found;
+        }
+        Transfer transfer = pending.get(header);
+        if (transfer == null) {
+            pending.put(header, new Transfer());
+            WorkerThreadUtil.executeWorkTask(() -> loaded.add(new Loaded(header, readFromCache(header), false)));
+        } else if (transfer.state == TransferState.RECEIVING
+            && System.currentTimeMillis() - transfer.lastActivity > RESEND_TIMEOUT) {
+            if (transfer.requests < MAX_REQUESTS) {
+                transfer.request(header);
+            } else {
+                BCLog.logger.warn("[builders.snapshots] Giving up on " + header + " after asking the server for it "
+                    + MAX_REQUESTS + " times");
+                transfer.state = TransferState.FAILED;
+            }
+        }
+        return null;
+    }
+
+    public void onPartReceived(Snapshot.Header header, int partIndex, int partCount, byte[] data) {
+        Transfer transfer = pending.get(header);
+        if (transfer == null || transfer.state != TransferState.RECEIVING || partIndex < 0 || partIndex >= partCount) {
+            // We didn't ask for this, or already have it
+            return;
+        }
+        if (transfer.parts == null || transfer.parts.length != partCount) {
+            transfer.parts = new byte[partCount][];
+        }
+        transfer.parts[partIndex] = data;
+        transfer.lastActivity = System.currentTimeMillis();
+        if (transfer.getFirstMissingPart() == partCount) {
+            byte[][] parts = transfer.parts;
+            transfer.state = TransferState.DECOMPRESSING;
+            transfer.parts = null;
+            WorkerThreadUtil.executeWorkTask(() -> loaded.add(new Loaded(header, readReceived(header, parts), true)));
+        }
+    }
+
+    private void handleLoaded() {
+        Loaded result;
+        while ((result = loaded.poll()) != null) {
+            Transfer transfer = pending.get(result.header);
+            if (transfer == null) {
+                continue;
+            }
+            if (result.snapshot != null) {
+                pending.remove(result.header);
+                snapshots.put(result.header, result.snapshot);
+            } else {
+                // Either it wasn't in the cache or the server sent something broken: either way start again from
+                // the beginning (after the timeout, if the server was the problem)
+                transfer.state = TransferState.RECEIVING;
+                if (result.fromServer) {
+                    transfer.lastActivity = System.currentTimeMillis();
+                } else {
+                    transfer.request(result.header);
+                }
+            }
+        }
+    }
+
+    private static File getCacheDirectory() {
+        return new File(GlobalSavedDataSnapshots.getSnapshotsDirectory(Side.CLIENT), "cache");
+    }
+
+    private static File getCacheFile(Snapshot.Header header) {
+        String hashName = HashUtil.convertHashToString(header.hash);
+        return new File(getCacheDirectory(), hashName + GlobalSavedDataSnapshots.SNAPSHOT_FILE_EXTENSION);
+    }
+
+    @Nullable
+    private static Snapshot readFromCache(Snapshot.Header header) {
+        File file = getCacheFile(header);
+        if (!file.isFile()) {
+            return null;
         }
-        return found;
+        try (FileInputStream fis = new FileInputStream(file)) {
+            Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(fis));
+            if (header.equals(snapshot.header)) {
+                return snapshot;
+            }
+            BCLog.logger.warn("[builders.snapshots] The cached snapshot " + file + " had the wrong hash!");
+        } catch (IOException e) {
+            BCLog.logger.warn("[builders.snapshots] Failed to read the cached snapshot " + file, e);
+        }
+        if (!file.delete()) {
+            BCLog.logger.warn("[builders.snapshots] Failed to delete the broken snapshot " + file);
+        }
+        return null;
     }
 
-    public void onSnapshotReceived(Snapshot snapshot) {
-        pending.remove(snapshot.header);
-        snapshots.add(snapshot);
+    @Nullable
+    private static Snapshot readReceived(Snapshot.Header header, byte[][] parts) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            baos.write(part, 0, part.length);
+        }
+        byte[] bytes = baos.toByteArray();
+        Snapshot snapshot;
+        try {
+            snapshot = Snapshot.readFromNBT(NbtSquisher.expand(bytes));
+        } catch (IOException e) {
+            BCLog.logger.warn("[builders.snapshots] Failed to read the snapshot " + header + " from the server", e);
+            return null;
+        }
+        if (!header.equals(snapshot.header)) {
+            BCLog.logger.warn("[builders.snapshots] The server sent " + snapshot.header + " instead of " + header);
+            return null;
+        }
+        // The server sends the same format that the cache uses, so the bytes can be stored as they are
+        File file = getCacheFile(header);
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(tempFile.toPath(), bytes);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            BCLog.logger.warn("[builders.snapshots] Failed to cache the snapshot " + header, e);
+        }
+        return snapshot;
+    }
+
+    private enum TransferState {
+        LOADING_CACHE,
+        RECEIVING,
+        DECOMPRESSING,
+        /** The server never sent the snapshot, so it won't be asked for again. */
+        FAILED
+    }
+
+    private static class Transfer {
+        TransferState state = TransferState.LOADING_CACHE;
+        long lastActivity = System.currentTimeMillis();
+        /** Every part received so far, or null if we don't know how many parts there are yet. */
+        byte[][] parts;
+        /** The number of times that this has been asked for from the server. */
+        int requests;
+
+        int getFirstMissingPart() {
+            if (parts == null) {
+                return 0;
+            }
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i] == null) {
+                    return i;
+                }
+            }
+            return parts.length;
+        }
+
+        void request(Snapshot.Header header) {
+            requests++;
+            lastActivity = System.currentTimeMillis();
+            MessageManager.sendToServer(new MessageSnapshotRequest(header, getFirstMissingPart()));
+        }
+    }
+
+    private static class Loaded {
+        final Snapshot.Header header;
+        @Nullable
+        final Snapshot snapshot;
+        final boolean fromServer;
+
+        Loaded(Snapshot.Header header, @Nullable Snapshot snapshot, boolean fromServer) {
+            this.header = header;
+            this.snapshot = snapshot;
+            this.fromServer = fromServer;
+        }
     }
 
     @SideOnly(Side.CLIENT)
@@ -84,7 +307,7 @@ public enum ClientSnapshots {
                 for (int z = 0; z < snapshot.size.getZ(); z++) {
                     for (int y = 0; y < snapshot.size.getY(); y++) {
                         for (int x = 0; x < snapshot.size.getX(); x++) {
-                            if (((Template) snapshot).data[x][y][z]) {
+                            if (((Template) snapshot).data.getBoolean(x, y, z)) {
                                 localWorld.setBlockState(
                                     new BlockPos(x, y, z).add(FakeWorld.BLUEPRINT_OFFSET),
                                     Blocks.QUARTZ_BLOCK.getDefaultState()
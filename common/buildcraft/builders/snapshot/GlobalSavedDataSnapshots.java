@@ -11,33 +11,68 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
 
 import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTUtil;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
+import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.relauncher.Side;
 
+import buildcraft.api.core.BCLog;
+import buildcraft.api.enums.EnumSnapshotType;
+
 import buildcraft.lib.misc.HashUtil;
+import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.StringUtilBC;
+import buildcraft.lib.misc.WorkerThreadUtil;
 import buildcraft.lib.nbt.NbtSquisher;
 
+/** The library of every snapshot that has been saved on one side.
+ * <p>
+ * Only a small index of the snapshots (their headers, types and sizes) is kept in memory all of the time, and is stored
+ * in {@link #INDEX_FILE_NAME} so that it doesn't need to read every snapshot on startup. The snapshots themselves are
+ * read from their files when they are first asked for, and only the most recently used are kept loaded. Changes are
+ * written straight to the disk, one snapshot at a time. */
 public class GlobalSavedDataSnapshots {
     public static final String SNAPSHOT_FILE_EXTENSION = ".bcnbt";
+    private static final String INDEX_FILE_NAME = "index.dat";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    /** The number of snapshots to keep loaded in memory. */
+    private static final int MAX_LOADED = 16;
 
     private static final Map<Side, GlobalSavedDataSnapshots> INSTANCES = new EnumMap<>(Side.class);
-    public final List<Snapshot> snapshots = new ArrayList<>();
     private final File snapshotsFile;
+    /** Every snapshot in the library, in the order that they were added. */
+    private final Map<Snapshot.Header, Entry> entries = new LinkedHashMap<>();
+    private final Map<Snapshot.Header, Snapshot> loaded = new LinkedHashMap<Snapshot.Header, Snapshot>(16, 0.75f,
+        true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Snapshot.Header, Snapshot> eldest) {
+            return size() > MAX_LOADED;
+        }
+    };
 
     private GlobalSavedDataSnapshots(Side side) {
-        snapshotsFile = new File(FMLCommonHandler.instance().getSavesDirectory().getParentFile(), "snapshots-" + side
-            .name().toLowerCase(Locale.ROOT));
+        snapshotsFile = getSnapshotsDirectory(side);
         if (!snapshotsFile.exists()) {
             if (!snapshotsFile.mkdirs()) {
                 throw new RuntimeException("Failed to make the directories required for snapshots! \n\tdir = "
@@ -47,7 +82,13 @@ public class GlobalSavedDataSnapshots {
             throw new IllegalStateException("The snapshots directory was a file! We can't use this!\n\tfile = "
                 + snapshotsFile);
         }
-        readSnapshots();
+        readIndex();
+    }
+
+    /** @return The directory that the snapshots for the given side are stored in. This might not exist yet. */
+    public static File getSnapshotsDirectory(Side side) {
+        return new File(FMLCommonHandler.instance().getSavesDirectory().getParentFile(), "snapshots-" + side.name()
+            .toLowerCase(Locale.ROOT));
     }
 
     public static void reInit(Side side) {
@@ -66,7 +107,7 @@ public class GlobalSavedDataSnapshots {
     }
 
     public void exportSnapshot(Snapshot.Header header, File folder) {
-        Snapshot snapshot = snapshots.stream().filter(s -> header.equals(s.header)).findAny().orElse(null);
+        Snapshot snapshot = getSnapshotByHeader(header);
         if (snapshot != null) {
             String fileName = header.name + SNAPSHOT_FILE_EXTENSION;
             fileName = StringUtilBC.replaceCharactersForFilename(fileName);
@@ -74,51 +115,237 @@ public class GlobalSavedDataSnapshots {
         }
     }
 
-    private void writeSnapshots() {
-        for (Snapshot snapshot : snapshots) {
-            String hashName = HashUtil.convertHashToString(snapshot.header.hash);
-            File snapshotFile = new File(snapshotsFile, hashName + SNAPSHOT_FILE_EXTENSION);
-            writeSingleSnapshot(snapshot, snapshotFile);
-        }
+    // Index
+
+    private File getIndexFile() {
+        return new File(snapshotsFile, INDEX_FILE_NAME);
     }
 
-    private static void writeSingleSnapshot(Snapshot snapshot, File snapshotFile) {
-        if (!snapshotFile.exists()) {
-            try (FileOutputStream fos = new FileOutputStream(snapshotFile)) {
-                NbtSquisher.squishVanilla(Snapshot.writeToNBT(snapshot), fos);
-            } catch (IOException io) {
-                IOException ex = new IOException("Failed to write the snapshot file" + snapshotFile, io);
-                ex.printStackTrace();
+    private void readIndex() {
+        File indexFile = getIndexFile();
+        boolean changed = !indexFile.isFile();
+        if (!changed) {
+            try (FileInputStream fis = new FileInputStream(indexFile)) {
+                NBTTagList list = NbtSquisher.expand(fis).getTagList("entries", Constants.NBT.TAG_COMPOUND);
+                for (int i = 0; i < list.tagCount(); i++) {
+                    Entry entry = new Entry(list.getCompoundTagAt(i));
+                    if (entry.type != null && new File(snapshotsFile, entry.fileName).isFile()) {
+                        entries.put(entry.header, entry);
+                    } else {
+                        changed = true;
+                    }
+                }
+            } catch (IOException e) {
+                BCLog.logger.warn("[builders.snapshots] Failed to read the snapshot index " + indexFile
+                    + ", rebuilding it", e);
+                entries.clear();
+                changed = true;
             }
         }
-    }
 
-    private void readSnapshots() {
+        // Pick up any snapshots that aren't in the index yet (such as ones from before the index existed, or ones that
+        // have been copied in by hand)
+        Set<String> indexed = new HashSet<>();
+        for (Entry entry : entries.values()) {
+            indexed.add(entry.fileName);
+        }
         File[] files = snapshotsFile.listFiles();
         if (files != null) {
             for (File snapshotFile : files) {
-                try (FileInputStream fis = new FileInputStream(snapshotFile)) {
-                    NBTTagCompound nbt;
-                    if (snapshotFile.getName().endsWith(SNAPSHOT_FILE_EXTENSION)) {
-                        nbt = NbtSquisher.expand(fis);
-                    } else {
-                        // 7.99.4 + back compat
-                        nbt = CompressedStreamTools.read(new DataInputStream(fis));
-                    }
-                    snapshots.add(Snapshot.readFromNBT(nbt));
-                } catch (IOException e) {
-                    IOException ex = new IOException("Failed to read the snapshot " + snapshotFile, e);
-                    ex.printStackTrace();
+                String name = snapshotFile.getName();
+                if (!snapshotFile.isFile() || indexed.contains(name) || INDEX_FILE_NAME.equals(name)
+                    || name.endsWith(TEMP_FILE_EXTENSION)) {
+                    continue;
+                }
+                Snapshot snapshot = readSingleSnapshot(snapshotFile);
+                if (snapshot != null && !entries.containsKey(snapshot.header)) {
+                    entries.put(snapshot.header, new Entry(snapshot, name));
+                    changed = true;
                 }
             }
         }
+        if (changed) {
+            writeIndex();
+        }
+    }
+
+    private void writeIndex() {
+        NBTTagList list = new NBTTagList();
+        for (Entry entry : entries.values()) {
+            list.appendTag(entry.writeToNBT());
+        }
+        NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setTag("entries", list);
+        File indexFile = getIndexFile();
+        File tempFile = new File(snapshotsFile, INDEX_FILE_NAME + TEMP_FILE_EXTENSION);
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+                NbtSquisher.squishVanilla(nbt, fos);
+            }
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException io) {
+            BCLog.logger.warn("[builders.snapshots] Failed to write the snapshot index " + indexFile, io);
+        }
+    }
+
+    // Snapshot files
+
+    private static void writeSingleSnapshot(Snapshot snapshot, File snapshotFile) {
+        if (!snapshotFile.exists()) {
+            writeSnapshotFile(Snapshot.writeToNBT(snapshot), snapshotFile);
+        }
+    }
+
+    /** Writes to a temporary file first, so that a crash half way through never leaves a broken snapshot behind. */
+    private static void writeSnapshotFile(NBTTagCompound nbt, File snapshotFile) {
+        File tempFile = new File(snapshotFile.getPath() + TEMP_FILE_EXTENSION);
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+                NbtSquisher.squishVanilla(nbt, fos);
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException io) {
+            IOException ex = new IOException("Failed to write the snapshot file" + snapshotFile, io);
+            ex.printStackTrace();
+        }
     }
 
-    public void markDirty() {
-        writeSnapshots();
+    @Nullable
+    private static Snapshot readSingleSnapshot(File snapshotFile) {
+        try (FileInputStream fis = new FileInputStream(snapshotFile)) {
+            NBTTagCompound nbt;
+            if (snapshotFile.getName().endsWith(SNAPSHOT_FILE_EXTENSION)) {
+                nbt = NbtSquisher.expand(fis);
+            } else {
+                // 7.99.4 + back compat
+                nbt = CompressedStreamTools.read(new DataInputStream(fis));
+            }
+            return Snapshot.readFromNBT(nbt);
+        } catch (IOException e) {
+            IOException ex = new IOException("Failed to read the snapshot " + snapshotFile, e);
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    // Public API
+
+    /** @return Every snapshot in the library, in the order that they were added. */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries.values()));
     }
 
+    public boolean contains(Snapshot.Header header) {
+        return entries.containsKey(header);
+    }
+
+    /** Adds the given snapshot to the library, and writes it (and the index) to the disk. */
+    public void addSnapshot(Snapshot snapshot) {
+        loaded.put(snapshot.header, snapshot);
+        if (entries.containsKey(snapshot.header)) {
+            return;
+        }
+        String fileName = HashUtil.convertHashToString(snapshot.header.hash) + SNAPSHOT_FILE_EXTENSION;
+        writeSingleSnapshot(snapshot, new File(snapshotsFile, fileName));
+        entries.put(snapshot.header, new Entry(snapshot, fileName));
+        writeIndex();
+    }
+
+    /** Hashes, compresses and writes the given snapshot to the disk on a worker thread (see
+     * {@link WorkerThreadUtil#executeLongTask(java.util.concurrent.Callable)}), so that finishing a big scan doesn't
+     * stall the server. Once the returned future is done the snapshot should be passed to
+     * {@link #addSnapshot(Snapshot)} (on the main thread), which won't need to write it again. The snapshot must not be
+     * changed until then.
+     *
+     * @param header The header to give the snapshot. Its hash is replaced with the hash of the snapshot.
+     * @return A future that completes with the given snapshot, with its header set. If saving fails then the exception
+     *         has already been logged. */
+    public Future<Snapshot> saveSnapshot(Snapshot snapshot, Snapshot.Header header) {
+        return WorkerThreadUtil.executeLongTask(() -> {
+            try {
+                NBTTagCompound nbt = Snapshot.writeToNBT(snapshot);
+                Snapshot.Header hashedHeader = header.withHash(Snapshot.computeHash(nbt));
+                Snapshot.writeHeader(nbt, hashedHeader);
+                snapshot.header = hashedHeader;
+                String fileName = HashUtil.convertHashToString(hashedHeader.hash) + SNAPSHOT_FILE_EXTENSION;
+                File snapshotFile = new File(snapshotsFile, fileName);
+                if (!snapshotFile.exists()) {
+                    writeSnapshotFile(nbt, snapshotFile);
+                }
+                return snapshot;
+            } catch (RuntimeException e) {
+                BCLog.logger.warn("[builders.snapshots] Failed to save the snapshot " + header, e);
+                throw e;
+            }
+        });
+    }
+
+    /** Removes the given snapshot from the library, and deletes its file if no other snapshot uses it. (Files are named
+     * by the hash of the snapshot's contents, so snapshots with different owners or names can share one). */
+    public void removeSnapshot(Snapshot.Header header) {
+        loaded.remove(header);
+        Entry entry = entries.remove(header);
+        if (entry != null) {
+            for (Entry other : entries.values()) {
+                if (other.fileName.equals(entry.fileName)) {
+                    writeIndex();
+                    return;
+                }
+            }
+            File snapshotFile = new File(snapshotsFile, entry.fileName);
+            if (snapshotFile.exists() && !snapshotFile.delete()) {
+                BCLog.logger.warn("[builders.snapshots] Failed to delete the snapshot file " + snapshotFile);
+            }
+            writeIndex();
+        }
+    }
+
+    @Nullable
     public Snapshot getSnapshotByHeader(Snapshot.Header header) {
-        return snapshots.stream().filter(snapshot -> snapshot.header.equals(header)).findFirst().orElse(null);
+        Snapshot snapshot = loaded.get(header);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        Entry entry = entries.get(header);
+        if (entry == null) {
+            return null;
+        }
+        snapshot = readSingleSnapshot(new File(snapshotsFile, entry.fileName));
+        if (snapshot != null) {
+            loaded.put(header, snapshot);
+        }
+        return snapshot;
+    }
+
+    /** The information about a single snapshot that is always kept in memory, without needing to read the whole
+     * snapshot. */
+    public static final class Entry {
+        public final Snapshot.Header header;
+        public final EnumSnapshotType type;
+        public final BlockPos size;
+        final String fileName;
+
+        Entry(Snapshot snapshot, String fileName) {
+            this.header = snapshot.header;
+            this.type = snapshot.getType();
+            this.size = snapshot.size;
+            this.fileName = fileName;
+        }
+
+        Entry(NBTTagCompound nbt) {
+            header = new Snapshot.Header(nbt.getCompoundTag("header"));
+            type = NBTUtilBC.readEnum(nbt.getTag("type"), EnumSnapshotType.class);
+            size = NBTUtil.getPosFromTag(nbt.getCompoundTag("size"));
+            fileName = nbt.getString("file");
+        }
+
+        NBTTagCompound writeToNBT() {
+            NBTTagCompound nbt = new NBTTagCompound();
+            nbt.setTag("header", header.serializeNBT());
+            nbt.setTag("type", NBTUtilBC.writeEnum(type));
+            nbt.setTag("size", NBTUtil.createPosTag(size));
+            nbt.setString("file", fileName);
+            return nbt;
+        }
     }
 }
@@ -6,36 +6,108 @@
 
 package buildcraft.builders.snapshot;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import io.netty.buffer.ByteBuf;
 
+import net.minecraft.entity.player.EntityPlayerMP;
+
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.relauncher.Side;
 
+import buildcraft.api.core.BCLog;
+
+import buildcraft.lib.BCLibProxy;
+import buildcraft.lib.misc.WorkerThreadUtil;
+import buildcraft.lib.nbt.NbtSquisher;
+import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.PacketBufferBC;
 
+/** Sent by the client to ask for a snapshot, starting from the given part (so that an interrupted transfer can carry on
+ * from where it stopped). The server replies with every remaining part as a separate
+ * {@link MessageSnapshotResponse}. */
 public class MessageSnapshotRequest implements IMessage {
+    /** The number of snapshots that the server keeps compressed, so that several players asking for the same snapshot
+     * (or one player resuming a transfer) don't cause it to be compressed again. */
+    private static final int MAX_COMPRESSED = 8;
+    private static final Map<Snapshot.Header, byte[]> COMPRESSED = Collections.synchronizedMap(
+        new LinkedHashMap<Snapshot.Header, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Snapshot.Header, byte[]> eldest) {
+                return size() > MAX_COMPRESSED;
+            }
+        }
+    );
+
     private Snapshot.Header header;
+    private int fromPart;
 
     public MessageSnapshotRequest() {
     }
 
-    public MessageSnapshotRequest(Snapshot.Header header) {
+    public MessageSnapshotRequest(Snapshot.Header header, int fromPart) {
         this.header = header;
+        this.fromPart = fromPart;
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
-        header.writeToByteBuf(new PacketBufferBC(buf));
+        PacketBufferBC buffer = new PacketBufferBC(buf);
+        header.writeToByteBuf(buffer);
+        buffer.writeVarInt(fromPart);
     }
 
     @Override
     public void fromBytes(ByteBuf buf) {
-        header = new Snapshot.Header(new PacketBufferBC(buf));
+        PacketBufferBC buffer = new PacketBufferBC(buf);
+        header = new Snapshot.Header(buffer);
+        fromPart = buffer.readVarInt();
+    }
+
+    /** @return The snapshot in the same format that {@link GlobalSavedDataSnapshots} stores it in. */
+    static byte[] compress(Snapshot snapshot) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        NbtSquisher.squishVanilla(Snapshot.writeToNBT(snapshot), baos);
+        return baos.toByteArray();
     }
 
-    public static final IMessageHandler<MessageSnapshotRequest, MessageSnapshotResponse> HANDLER = (message, ctx) -> {
+    public static final IMessageHandler<MessageSnapshotRequest, IMessage> HANDLER = (message, ctx) -> {
         Snapshot snapshot = GlobalSavedDataSnapshots.get(Side.SERVER).getSnapshotByHeader(message.header);
-        return snapshot != null ? new MessageSnapshotResponse(snapshot) : null;
+        if (snapshot != null) {
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            // Compressing a big snapshot can take a while, so don't do it on the server thread. The messages are
+            // still sent from the server thread though, as sending isn't thread safe.
+            WorkerThreadUtil.executeLongTask(() -> {
+                byte[] bytes = COMPRESSED.get(snapshot.header);
+                if (bytes == null) {
+                    try {
+                        bytes = compress(snapshot);
+                    } catch (IOException | RuntimeException e) {
+                        BCLog.logger.warn("[builders.snapshots] Failed to compress " + snapshot.header + " to send it", e);
+                        return null;
+                    }
+                    COMPRESSED.put(snapshot.header, bytes);
+                }
+                int partCount = MessageSnapshotResponse.getPartCount(bytes.length);
+                List<MessageSnapshotResponse> responses = new ArrayList<>();
+                for (int part = Math.max(0, message.fromPart); part < partCount; part++) {
+                    responses.add(new MessageSnapshotResponse(snapshot.header, bytes, part));
+                }
+                BCLibProxy.getProxy().addScheduledTask(player.world, () -> {
+                    for (MessageSnapshotResponse response : responses) {
+                        MessageManager.sendTo(response, player);
+                    }
+                });
+                return null;
+            });
+        }
+        return null;
     };
 }
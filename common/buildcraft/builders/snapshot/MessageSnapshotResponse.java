@@ -6,58 +6,60 @@
 
 package buildcraft.builders.snapshot;
 
-import java.io.IOException;
+import java.util.Arrays;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
-
-import net.minecraft.nbt.CompressedStreamTools;
 
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 
+import buildcraft.lib.net.PacketBufferBC;
+
+/** A single part of a compressed snapshot, sent in reply to a {@link MessageSnapshotRequest}. Snapshots are split into
+ * parts so that big blueprints never go over the maximum packet size. */
 public class MessageSnapshotResponse implements IMessage {
-    private Snapshot snapshot;
+    public static final int PART_SIZE = 32 * 1024;
+
+    private Snapshot.Header header;
+    private int partIndex;
+    private int partCount;
+    private byte[] data;
 
     public MessageSnapshotResponse() {
     }
 
-    public MessageSnapshotResponse(Snapshot snapshot) {
-        this.snapshot = snapshot;
+    public MessageSnapshotResponse(Snapshot.Header header, byte[] compressed, int partIndex) {
+        this.header = header;
+        this.partIndex = partIndex;
+        this.partCount = getPartCount(compressed.length);
+        int from = partIndex * PART_SIZE;
+        this.data = Arrays.copyOfRange(compressed, from, Math.min(compressed.length, from + PART_SIZE));
+    }
+
+    public static int getPartCount(int length) {
+        return Math.max(1, (length + PART_SIZE - 1) / PART_SIZE);
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
-
-//        byte[] bytes = NbtSquisher.squishBuildCraftV1(Snapshot.writeToNBT(snapshot));
-//        buf.writeInt(bytes.length);
-//        buf.writeBytes(bytes);
-//        try {
-//            CompressedStreamTools.write(Snapshot.writeToNBT(snapshot), new ByteBufOutputStream(buf));
-//        } catch (IOException e) {
-//            throw new RuntimeException(e);
-//        }
-        try {
-            CompressedStreamTools.writeCompressed(Snapshot.writeToNBT(snapshot), new ByteBufOutputStream(buf));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        PacketBufferBC buffer = new PacketBufferBC(buf);
+        header.writeToByteBuf(buffer);
+        buffer.writeVarInt(partIndex);
+        buffer.writeVarInt(partCount);
+        buffer.writeByteArray(data);
     }
 
     @Override
     public void fromBytes(ByteBuf buf) {
-        try {
-//            snapshot = Snapshot.readFromNBT(NbtSquisher.expand(buf.readBytes(buf.readInt()).array()));
-//            snapshot = Snapshot.readFromNBT(CompressedStreamTools.read(new ByteBufInputStream(buf), NBTSizeTracker.INFINITE));
-            snapshot = Snapshot.readFromNBT(CompressedStreamTools.readCompressed(new ByteBufInputStream(buf)));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        PacketBufferBC buffer = new PacketBufferBC(buf);
+        header = new Snapshot.Header(buffer);
+        partIndex = buffer.readVarInt();
+        partCount = buffer.readVarInt();
+        data = buffer.readByteArray();
     }
 
     public static final IMessageHandler<MessageSnapshotResponse, IMessage> HANDLER = (message, ctx) -> {
-        ClientSnapshots.INSTANCE.onSnapshotReceived(message.snapshot);
+        ClientSnapshots.INSTANCE.onPartReceived(message.header, message.partIndex, message.partCount, message.data);
         return null;
     };
 }
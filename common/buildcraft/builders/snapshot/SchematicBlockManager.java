@@ -9,6 +9,7 @@ package buildcraft.builders.snapshot;
 import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.common.collect.Lists;
 
@@ -58,6 +59,15 @@ public class SchematicBlockManager {
     }
 
     public static Pair<List<ItemStack>[][][], List<FluidStack>[][][]> computeRequired(Blueprint blueprint) {
+        return computeRequired(blueprint, FakeWorld.INSTANCE, null);
+    }
+
+    /** @param world The fake world to evaluate the blueprint in. This must only be used by the calling thread.
+     * @param loader If non-null then this is told about every z slice that is finished, and may cancel the
+     *            computation. */
+    static Pair<List<ItemStack>[][][], List<FluidStack>[][][]> computeRequired(Blueprint blueprint,
+                                                                              FakeWorld world,
+                                                                              @Nullable BuildingInfoLoader<?> loader) {
         @SuppressWarnings("unchecked") List<ItemStack>[][][] requiredItems = (List<ItemStack>[][][]) new List
             [blueprint.size.getX()]
             [blueprint.size.getY()]
@@ -66,37 +76,37 @@ public class SchematicBlockManager {
             [blueprint.size.getX()]
             [blueprint.size.getY()]
             [blueprint.size.getZ()];
-        FakeWorld world = FakeWorld.INSTANCE;
         world.uploadBlueprint(blueprint, true);
         world.editable = false;
-        for (int z = 0; z < blueprint.size.getZ(); z++) {
-            for (int y = 0; y < blueprint.size.getY(); y++) {
-                for (int x = 0; x < blueprint.size.getX(); x++) {
-                    BlockPos pos = new BlockPos(x, y, z).add(FakeWorld.BLUEPRINT_OFFSET);
-                    ISchematicBlock<?> schematicBlock = blueprint.palette.get(
-                        blueprint.data
-                            [pos.getX() - FakeWorld.BLUEPRINT_OFFSET.getX()]
-                            [pos.getY() - FakeWorld.BLUEPRINT_OFFSET.getY()]
-                            [pos.getZ() - FakeWorld.BLUEPRINT_OFFSET.getZ()]
-                    );
-                    IBlockState blockState = world.getBlockState(pos);
-                    Block block = blockState.getBlock();
-                    SchematicBlockContext schematicBlockContext = new SchematicBlockContext(
-                        world,
-                        FakeWorld.BLUEPRINT_OFFSET,
-                        pos,
-                        blockState,
-                        block
-                    );
-                    requiredItems[x][y][z] =
-                        schematicBlock.computeRequiredItems(schematicBlockContext);
-                    requiredFluids[x][y][z] =
-                        schematicBlock.computeRequiredFluids(schematicBlockContext);
+        try {
+            for (int z = 0; z < blueprint.size.getZ(); z++) {
+                for (int y = 0; y < blueprint.size.getY(); y++) {
+                    for (int x = 0; x < blueprint.size.getX(); x++) {
+                        BlockPos pos = new BlockPos(x, y, z).add(FakeWorld.BLUEPRINT_OFFSET);
+                        ISchematicBlock<?> schematicBlock = blueprint.palette.get(blueprint.data.get(x, y, z));
+                        IBlockState blockState = world.getBlockState(pos);
+                        Block block = blockState.getBlock();
+                        SchematicBlockContext schematicBlockContext = new SchematicBlockContext(
+                            world,
+                            FakeWorld.BLUEPRINT_OFFSET,
+                            pos,
+                            blockState,
+                            block
+                        );
+                        requiredItems[x][y][z] =
+                            schematicBlock.computeRequiredItems(schematicBlockContext);
+                        requiredFluids[x][y][z] =
+                            schematicBlock.computeRequiredFluids(schematicBlockContext);
+                    }
+                }
+                if (loader != null) {
+                    loader.step();
                 }
             }
+        } finally {
+            world.editable = true;
+            world.clear();
         }
-        world.editable = true;
-        world.clear();
         return Pair.of(requiredItems, requiredFluids);
     }
 
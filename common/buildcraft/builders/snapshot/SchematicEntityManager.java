@@ -55,6 +55,11 @@ public class SchematicEntityManager {
     }
 
     public static Pair<List<List<ItemStack>>, List<List<FluidStack>>> computeRequired(Blueprint blueprint) {
+        return computeRequired(blueprint, FakeWorld.INSTANCE);
+    }
+
+    /** @param world The fake world to evaluate the blueprint in. This must only be used by the calling thread. */
+    static Pair<List<List<ItemStack>>, List<List<FluidStack>>> computeRequired(Blueprint blueprint, FakeWorld world) {
         List<List<ItemStack>> requiredItems = new ArrayList<>(
             Collections.nCopies(
                 blueprint.entities.size(),
@@ -67,7 +72,6 @@ public class SchematicEntityManager {
                 Collections.emptyList()
             )
         );
-        FakeWorld world = FakeWorld.INSTANCE;
         world.uploadBlueprint(blueprint, true);
         int i = 0;
         for (ISchematicEntity<?> schematicEntity : blueprint.entities) {
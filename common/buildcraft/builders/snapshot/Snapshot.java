@@ -96,7 +96,8 @@ public abstract class Snapshot {
         return computeHash(writeToNBT(this));
     }
 
-    private static byte[] computeHash(NBTTagCompound nbt) {
+    /** @return The hash of a snapshot written by {@link #writeToNBT(Snapshot)}. This ignores the header. */
+    static byte[] computeHash(NBTTagCompound nbt) {
         NBTTagCompound nbtHeader = null;
         if (nbt.hasKey(NBT_HEADER, Constants.NBT.TAG_COMPOUND)) {
             // Don't let the hash depend on the header
@@ -113,6 +114,11 @@ public abstract class Snapshot {
         }
     }
 
+    /** Replaces the header in NBT written by {@link #writeToNBT(Snapshot)}. */
+    static void writeHeader(NBTTagCompound nbt, Header header) {
+        nbt.setTag(NBT_HEADER, header.serializeNBT());
+    }
+
     @Override
     public String toString() {
         return getType() + " - " + StringUtilBC.blockPosToShortString(size).replace(',', 'x') + " = " + header;
@@ -8,11 +8,10 @@ package buildcraft.builders.snapshot;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
-import java.util.function.Predicate;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -34,10 +33,13 @@ import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.data.Box;
 import buildcraft.lib.net.PacketBufferBC;
 
+import buildcraft.builders.BCBuildersEventDist;
+
 public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> {
     private static final int MAX_QUEUE_SIZE = 64;
 
     protected final T tile;
+    private SnapshotBuilderPlanner planner;
     private Queue<BreakTask> breakTasks = new ArrayDeque<>();
     public Queue<BreakTask> clientBreakTasks = new ArrayDeque<>();
     public Queue<BreakTask> prevClientBreakTasks = new ArrayDeque<>();
@@ -81,6 +83,39 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> {
 
     public abstract Box getBox();
 
+    /**
+     * @return current building info, or null if there isn't anything to build. A new planner is created whenever this
+     * returns a different object
+     */
+    protected abstract Object getBuildingInfo();
+
+    private void updatePlanner() {
+        Object buildingInfo = getBuildingInfo();
+        if (planner == null || planner.buildingInfo != buildingInfo) {
+            planner = buildingInfo == null ? null : new SnapshotBuilderPlanner(this, buildingInfo);
+            if (planner != null) {
+                BCBuildersEventDist.INSTANCE.validateSnapshotBuilder(tile.getWorldBC(), this);
+            }
+        }
+    }
+
+    /**
+     * Called whenever a block changes in the world, so that only the changed positions have to be checked again
+     */
+    public void onBlockChanged(BlockPos blockPos) {
+        if (planner != null) {
+            planner.markChanged(blockPos);
+        }
+    }
+
+    /**
+     * @return all positions that don't have correct block yet, including ones that can't be placed right now
+     */
+    protected Stream<BlockPos> getIncorrectToPlace() {
+        updatePlanner();
+        return planner == null ? Stream.empty() : planner.streamIncorrect();
+    }
+
     /**
      * @return Pos where flying item should be rendered
      */
@@ -130,55 +165,48 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> {
             return false;
         }
 
+        updatePlanner();
+        if (planner != null) {
+            planner.update();
+        }
+
         breakTasks.removeIf(breakTask -> tile.getWorldBC().isAirBlock(breakTask.pos) || isBlockCorrect(breakTask.pos));
         placeTasks.removeIf(placeTask -> isBlockCorrect(placeTask.pos));
 
         boolean isDone = true;
 
-        if (tile.canExcavate()) {
-            List<BlockPos> blocks = Stream.concat(getToBreak().stream(), getToPlace().stream())
-                .sorted(Comparator.comparing(blockPos ->
-                    Math.pow(blockPos.getX() - getBox().center().getX(), 2) +
-                        Math.pow(blockPos.getZ() - getBox().center().getZ(), 2) +
-                        100_000 - Math.abs(blockPos.getY() - tile.getBuilderPos().getY()) * 100_000
-                ))
-                .filter(blockPos -> breakTasks.stream().map(BreakTask::getPos).noneMatch(Predicate.isEqual(blockPos)))
-                .filter(blockPos -> !tile.getWorldBC().isAirBlock(blockPos))
-                .filter(blockPos -> !isBlockCorrect(blockPos))
-                .filter(blockPos -> BlockUtil.getFluidWithFlowing(tile.getWorldBC(), blockPos) == null)
-                .collect(Collectors.toList());
-            leftToBreak = blocks.size();
-            if (!blocks.isEmpty()) {
-                isDone = false;
-            }
-            blocks.stream()
-                .map(blockPos ->
-                    new BreakTask(
-                        blockPos,
-                        0
+        if (planner == null) {
+            leftToBreak = 0;
+            leftToPlace = 0;
+        } else {
+            if (tile.canExcavate()) {
+                Set<BlockPos> queuedBreak = breakTasks.stream().map(BreakTask::getPos).collect(Collectors.toSet());
+                leftToBreak = planner.countToBreak() - (int) queuedBreak.stream().filter(planner::isToBreak).count();
+                if (leftToBreak > 0) {
+                    isDone = false;
+                }
+                planner.streamToBreak()
+                    .filter(blockPos -> !queuedBreak.contains(blockPos))
+                    .filter(planner::recheckToBreak)
+                    .map(blockPos ->
+                        new BreakTask(
+                            blockPos,
+                            0
+                        )
                     )
-                )
-                .limit(MAX_QUEUE_SIZE - breakTasks.size())
-                .forEach(breakTasks::add);
-        }
+                    .limit(MAX_QUEUE_SIZE - breakTasks.size())
+                    .forEach(breakTasks::add);
+            }
 
-        {
-            List<BlockPos> blocks = getToPlace().stream()
-                .sorted(Comparator.comparing(blockPos ->
-                    100_000 - (Math.pow(blockPos.getX() - tile.getBuilderPos().getX(), 2) +
-                        Math.pow(blockPos.getZ() - tile.getBuilderPos().getZ(), 2)) +
-                        Math.abs(blockPos.getY() - tile.getBuilderPos().getY()) * 100_000
-                ))
-                .filter(blockPos -> placeTasks.stream().map(PlaceTask::getPos).noneMatch(Predicate.isEqual(blockPos)))
-                .filter(blockPos -> !isBlockCorrect(blockPos))
-                .filter(this::canPlace)
-                .collect(Collectors.toList());
-            leftToPlace = blocks.size();
+            Set<BlockPos> queuedPlace = placeTasks.stream().map(PlaceTask::getPos).collect(Collectors.toSet());
+            leftToPlace = planner.countToPlace() - (int) queuedPlace.stream().filter(planner::isToPlace).count();
             if ((!tile.canExcavate() || breakTasks.isEmpty())) {
-                if (!blocks.isEmpty()) {
+                if (leftToPlace > 0) {
                     isDone = false;
                 }
-                blocks.stream()
+                planner.streamToPlace()
+                    .filter(blockPos -> !queuedPlace.contains(blockPos))
+                    .filter(planner::recheckToPlace)
                     .map(blockPos ->
                         new PlaceTask(
                             blockPos,
@@ -220,6 +248,7 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> {
                             -1
                         );
                         tile.getWorldBC().destroyBlock(breakTask.pos, false);
+                        onBlockChanged(breakTask.pos);
                     } else {
                         tile.getBattery().addPower(
                             Math.min(target, tile.getBattery().getCapacity() - tile.getBattery().getStored()),
@@ -253,6 +282,7 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> {
                         );
                         cancelPlaceTask(placeTask);
                     }
+                    onBlockChanged(placeTask.pos);
                     iterator.remove();
                 }
             }
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import buildcraft.lib.misc.BlockUtil;
+import buildcraft.lib.misc.data.Box;
+import buildcraft.lib.world.BlockStateCache;
+
+/** Keeps track of which positions of a single building info still need to be broken or placed, in the order that a
+ * {@link SnapshotBuilder} should work through them.
+ * <p>
+ * The order only depends on the building info, so it is sorted once when this is created. After that the world is only
+ * checked again at positions that have been marked as changed (by block updates or finished tasks), plus a few
+ * positions every tick to catch changes that didn't cause a block update. This means that a tick only costs as much as
+ * the number of tasks that it queues, rather than the size of the whole snapshot. */
+final class SnapshotBuilderPlanner {
+    /** The number of positions that are re-checked every tick even if nothing said that they had changed. */
+    private static final int RECHECK_PER_TICK = 256;
+
+    final Object buildingInfo;
+    private final SnapshotBuilder<?> builder;
+    private final BlockPos min;
+    private final int sizeX, sizeY, sizeZ;
+
+    /** The index (see {@link #getIndex(BlockPos)}) of every position that might need breaking, in the order that they
+     * should be broken in. */
+    private final int[] breakOrder;
+    /** The index of every position that needs placing, in the order that they should be placed in. */
+    private final int[] placeOrder;
+    /** Maps an index to its position in {@link #breakOrder}, or -1 if it's not in it. */
+    private final int[] breakRanks;
+    /** Maps an index to its position in {@link #placeOrder}, or -1 if it's not in it. */
+    private final int[] placeRanks;
+
+    /** Every position in {@link #breakOrder} that still needs breaking, indexed by its position in the order. */
+    private final BitSet toBreak = new BitSet();
+    /** Every position in {@link #placeOrder} that still needs placing (and can be placed right now), indexed by its
+     * position in the order. */
+    private final BitSet toPlace = new BitSet();
+    /** Every index in {@link #placeOrder} that doesn't have the correct block yet. */
+    private final BitSet incorrect = new BitSet();
+    /** Every index that needs to be checked again on the next {@link #update()}. */
+    private final BitSet dirty = new BitSet();
+    private int recheckIndex = 0;
+    /** Invalidated by {@link #markChanged(BlockPos)}, and by the background re-check. */
+    private final BlockStateCache states;
+
+    SnapshotBuilderPlanner(SnapshotBuilder<?> builder, Object buildingInfo) {
+        this.builder = builder;
+        this.buildingInfo = buildingInfo;
+        this.states = new BlockStateCache(builder.tile.getWorldBC());
+        Box box = builder.getBox();
+        min = box.min();
+        BlockPos size = box.size();
+        sizeX = size.getX();
+        sizeY = size.getY();
+        sizeZ = size.getZ();
+        breakRanks = new int[sizeX * sizeY * sizeZ];
+        placeRanks = new int[breakRanks.length];
+        Arrays.fill(breakRanks, -1);
+        Arrays.fill(placeRanks, -1);
+
+        List<BlockPos> breakPositions = builder.getToBreak();
+        List<BlockPos> placePositions = builder.getToPlace();
+        BlockPos center = box.center();
+        BlockPos builderPos = builder.tile.getBuilderPos();
+
+        // Everything that could be in the way, from the outside in and top down
+        breakOrder = sortByKey(
+            Stream.concat(breakPositions.stream(), placePositions.stream()).toArray(BlockPos[]::new),
+            pos -> sq(pos.getX() - center.getX()) + sq(pos.getZ() - center.getZ())
+                + 100_000 - Math.abs(pos.getY() - builderPos.getY()) * 100_000L
+        );
+        // Closest layer first, and the furthest from the builder in each layer first
+        placeOrder = sortByKey(
+            placePositions.toArray(new BlockPos[0]),
+            pos -> 100_000 - (sq(pos.getX() - builderPos.getX()) + sq(pos.getZ() - builderPos.getZ()))
+                + Math.abs(pos.getY() - builderPos.getY()) * 100_000L
+        );
+        for (int rank = 0; rank < breakOrder.length; rank++) {
+            breakRanks[breakOrder[rank]] = rank;
+        }
+        for (int rank = 0; rank < placeOrder.length; rank++) {
+            placeRanks[placeOrder[rank]] = rank;
+        }
+
+        // Everything needs checking at least once
+        for (int index = 0; index < breakRanks.length; index++) {
+            check(index);
+        }
+    }
+
+    private static long sq(long value) {
+        return value * value;
+    }
+
+    private int[] sortByKey(BlockPos[] positions, ToLongFunction<BlockPos> key) {
+        long[] keys = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            keys[i] = key.applyAsLong(positions[i]);
+        }
+        // A stable sort, so equal keys keep the same order that the building info gave them in
+        return IntStream.range(0, positions.length)
+            .boxed()
+            .sorted(Comparator.comparingLong(i -> keys[i]))
+            .mapToInt(i -> getIndex(positions[i]))
+            .toArray();
+    }
+
+    /** @return The index of the given position in the box, or -1 if it is outside of the box. */
+    private int getIndex(BlockPos pos) {
+        int x = pos.getX() - min.getX();
+        int y = pos.getY() - min.getY();
+        int z = pos.getZ() - min.getZ();
+        if (x < 0 || x >= sizeX || y < 0 || y >= sizeY || z < 0 || z >= sizeZ) {
+            return -1;
+        }
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    private BlockPos getPos(int index) {
+        int x = index % sizeX;
+        int z = (index / sizeX) % sizeZ;
+        int y = index / sizeX / sizeZ;
+        return min.add(x, y, z);
+    }
+
+    private World getWorld() {
+        return builder.tile.getWorldBC();
+    }
+
+    private boolean needsBreak(BlockPos pos) {
+        IBlockState state = states.getBlockState(pos);
+        return !state.getBlock().isAir(state, getWorld(), pos) &&
+            !builder.isBlockCorrect(pos) &&
+            BlockUtil.getFluidWithFlowing(state) == null;
+    }
+
+    private void check(int index) {
+        BlockPos pos = getPos(index);
+        int breakRank = breakRanks[index];
+        if (breakRank != -1) {
+            toBreak.set(breakRank, needsBreak(pos));
+        }
+        int placeRank = placeRanks[index];
+        if (placeRank != -1) {
+            boolean correct = builder.isBlockCorrect(pos);
+            incorrect.set(index, !correct);
+            toPlace.set(placeRank, !correct && builder.canPlace(pos));
+        }
+    }
+
+    /** Marks the given position (and its neighbours, as whether something can be placed often depends on them) as
+     * needing to be checked again on the next {@link #update()}. */
+    void markChanged(BlockPos pos) {
+        states.markChanged(pos);
+        int index = getIndex(pos);
+        if (index != -1) {
+            dirty.set(index);
+        }
+        for (EnumFacing face : EnumFacing.VALUES) {
+            // Only the changed position needs to be read again, its neighbours are only re-checked
+            index = getIndex(pos.offset(face));
+            if (index != -1) {
+                dirty.set(index);
+            }
+        }
+    }
+
+    /** Checks every position that has changed since the last call, as well as the next few positions of the slow
+     * background re-check. */
+    void update() {
+        for (int i = 0; i < RECHECK_PER_TICK && i < breakRanks.length; i++) {
+            dirty.set(recheckIndex);
+            // In case something changed without telling us
+            states.markChanged(getPos(recheckIndex));
+            recheckIndex = (recheckIndex + 1) % breakRanks.length;
+        }
+        for (int index = dirty.nextSetBit(0); index >= 0; index = dirty.nextSetBit(index + 1)) {
+            check(index);
+        }
+        dirty.clear();
+    }
+
+    /** @return Every position that still needs breaking, in the order that they should be broken in. */
+    Stream<BlockPos> streamToBreak() {
+        return toBreak.stream().mapToObj(rank -> getPos(breakOrder[rank]));
+    }
+
+    /** @return Every position that still needs placing and can be placed, in the order that they should be placed
+     *         in. */
+    Stream<BlockPos> streamToPlace() {
+        return toPlace.stream().mapToObj(rank -> getPos(placeOrder[rank]));
+    }
+
+    /** @return Every position that doesn't have the correct block yet, even if it can't be placed right now. */
+    Stream<BlockPos> streamIncorrect() {
+        return incorrect.stream().mapToObj(this::getPos);
+    }
+
+    int countToBreak() {
+        return toBreak.cardinality();
+    }
+
+    int countToPlace() {
+        return toPlace.cardinality();
+    }
+
+    boolean isToBreak(BlockPos pos) {
+        int index = getIndex(pos);
+        return index != -1 && breakRanks[index] != -1 && toBreak.get(breakRanks[index]);
+    }
+
+    boolean isToPlace(BlockPos pos) {
+        int index = getIndex(pos);
+        return index != -1 && placeRanks[index] != -1 && toPlace.get(placeRanks[index]);
+    }
+
+    /** Checks the world to make sure that the given position (from {@link #streamToBreak()}) really does need breaking
+     * before a task is created for it. If it doesn't then it will be fixed on the next {@link #update()}. */
+    boolean recheckToBreak(BlockPos pos) {
+        states.markChanged(pos);
+        if (needsBreak(pos)) {
+            return true;
+        }
+        dirty.set(getIndex(pos));
+        return false;
+    }
+
+    /** Checks the world to make sure that the given position (from {@link #streamToPlace()}) really does need placing
+     * before a task is created for it. If it doesn't then it will be fixed on the next {@link #update()}. */
+    boolean recheckToPlace(BlockPos pos) {
+        if (!builder.isBlockCorrect(pos) && builder.canPlace(pos)) {
+            return true;
+        }
+        dirty.set(getIndex(pos));
+        return false;
+    }
+}
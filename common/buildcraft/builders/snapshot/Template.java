@@ -10,6 +10,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.Rotation;
 import net.minecraft.util.math.BlockPos;
@@ -18,9 +20,10 @@ import buildcraft.api.core.InvalidInputDataException;
 import buildcraft.api.enums.EnumSnapshotType;
 
 import buildcraft.lib.misc.data.Box;
+import buildcraft.lib.misc.data.PackedVoxelVolume;
 
 public class Template extends Snapshot {
-    public boolean[][][] data;
+    public PackedVoxelVolume data;
 
     public Template copy() {
         Template template = new Template();
@@ -28,37 +31,20 @@ public class Template extends Snapshot {
         template.size = size;
         template.facing = facing;
         template.offset = offset;
-        template.data = new boolean[size.getX()][size.getY()][size.getZ()];
-        for (int z = 0; z < size.getZ(); z++) {
-            for (int y = 0; y < size.getY(); y++) {
-                for (int x = 0; x < size.getX(); x++) {
-                    template.data[x][y][z] = data[x][y][z];
-                }
-            }
-        }
+        template.data = data.copy();
         return template;
     }
 
     @Override
     public NBTTagCompound serializeNBT() {
         NBTTagCompound nbt = super.serializeNBT();
-        byte[] serializedData = new byte[size.getX() * size.getY() * size.getZ()];
-        int i = 0;
-        for (int z = 0; z < size.getZ(); z++) {
-            for (int y = 0; y < size.getY(); y++) {
-                for (int x = 0; x < size.getX(); x++) {
-                    serializedData[i++] = data[x][y][z] ? (byte) 1 : (byte) 0;
-                }
-            }
-        }
-        nbt.setByteArray("data", serializedData);
+        nbt.setByteArray("data", data.toBooleanArray());
         return nbt;
     }
 
     @Override
     public void deserializeNBT(NBTTagCompound nbt) throws InvalidInputDataException {
         super.deserializeNBT(nbt);
-        data = new boolean[size.getX()][size.getY()][size.getZ()];
         byte[] serializedData = nbt.getByteArray("data");
         if (serializedData.length != size.getX() * size.getY() * size.getZ()) {
             throw new InvalidInputDataException(
@@ -66,14 +52,8 @@ public class Template extends Snapshot {
                     ", but we expected " + size.getX() * size.getY() * size.getZ() + size.toString()
             );
         }
-        int i = 0;
-        for (int z = 0; z < size.getZ(); z++) {
-            for (int y = 0; y < size.getY(); y++) {
-                for (int x = 0; x < size.getX(); x++) {
-                    data[x][y][z] = serializedData[i++] != 0;
-                }
-            }
-        }
+        data = new PackedVoxelVolume(size, 1);
+        data.readFromBooleans(serializedData);
     }
 
     @Override
@@ -89,21 +69,33 @@ public class Template extends Snapshot {
         public final List<BlockPos> toPlace = new ArrayList<>();
 
         public BuildingInfo(BlockPos basePos, Rotation rotation) {
+            this(basePos, rotation, null);
+        }
+
+        /** @param loader If non-null then this is told about every z slice that is finished, and may cancel the
+         *            computation. */
+        BuildingInfo(BlockPos basePos, Rotation rotation, @Nullable BuildingInfoLoader<?> loader) {
             this.basePos = basePos;
             this.rotation = rotation;
+            BlockPos rotatedOffset = offset.rotate(rotation);
+            // The volume is stored in z, y, x order, so this goes through it in a single pass
+            int index = 0;
             for (int z = 0; z < getSnapshot().size.getZ(); z++) {
                 for (int y = 0; y < getSnapshot().size.getY(); y++) {
                     for (int x = 0; x < getSnapshot().size.getX(); x++) {
                         BlockPos blockPos = new BlockPos(x, y, z).rotate(rotation)
                             .add(basePos)
-                            .add(offset.rotate(rotation));
-                        if (!data[x][y][z]) {
+                            .add(rotatedOffset);
+                        if (data.get(index++) == 0) {
                             toBreak.add(blockPos);
                         } else {
                             toPlace.add(blockPos);
                         }
                     }
                 }
+                if (loader != null) {
+                    loader.step();
+                }
             }
             box = new Box();
             Stream.concat(toBreak.stream(), toPlace.stream()).forEach(box::extendToEncompass);
@@ -113,6 +105,17 @@ public class Template extends Snapshot {
             return Template.this;
         }
 
+        /** @return True if the given position is one of {@link #toPlace}, without searching through the whole list. */
+        public boolean isToPlace(BlockPos blockPos) {
+            // Rotation.values() is NONE, 90, 180, 270 so this is the opposite rotation
+            Rotation inverse = Rotation.values()[(4 - rotation.ordinal()) % 4];
+            BlockPos local = blockPos.subtract(basePos).subtract(offset.rotate(rotation)).rotate(inverse);
+            return local.getX() >= 0 && local.getX() < size.getX() &&
+                local.getY() >= 0 && local.getY() < size.getY() &&
+                local.getZ() >= 0 && local.getZ() < size.getZ() &&
+                data.getBoolean(local.getX(), local.getY(), local.getZ());
+        }
+
         public Box getBox() {
             return box;
         }
@@ -26,7 +26,8 @@ public class TemplateBuilder extends SnapshotBuilder<ITileForTemplateBuilder> {
         super(tile);
     }
 
-    private Template.BuildingInfo getBuildingInfo() {
+    @Override
+    protected Template.BuildingInfo getBuildingInfo() {
         return tile.getTemplateBuildingInfo();
     }
 
@@ -77,7 +78,7 @@ public class TemplateBuilder extends SnapshotBuilder<ITileForTemplateBuilder> {
 
     @Override
     protected boolean isBlockCorrect(BlockPos blockPos) {
-        return getBuildingInfo().toPlace.contains(blockPos) && !tile.getWorldBC().isAirBlock(blockPos);
+        return getBuildingInfo().isToPlace(blockPos) && !tile.getWorldBC().isAirBlock(blockPos);
     }
 
     @Override
@@ -8,15 +8,21 @@ package buildcraft.builders.tile;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.init.Blocks;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntity;
@@ -24,6 +30,8 @@ import net.minecraft.util.EnumFacing;
 import net.minecraft.util.ITickable;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 import net.minecraftforge.fml.relauncher.Side;
@@ -41,12 +49,12 @@ import buildcraft.lib.block.BlockBCBase_Neptune;
 import buildcraft.lib.delta.DeltaInt;
 import buildcraft.lib.delta.DeltaManager;
 import buildcraft.lib.misc.BoundingBoxUtil;
+import buildcraft.lib.misc.ChunkUtil;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.data.Box;
-import buildcraft.lib.misc.data.BoxIterator;
-import buildcraft.lib.misc.data.EnumAxisOrder;
 import buildcraft.lib.misc.data.IdAllocator;
+import buildcraft.lib.misc.data.PackedVoxelVolume;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
 import buildcraft.lib.tile.item.ItemHandlerManager.EnumAccess;
@@ -73,6 +81,11 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
     public static final int NET_BOX = IDS.allocId("BOX");
     public static final int NET_SCAN = IDS.allocId("SCAN");
 
+    /** Scanning works through whole chunk sections at a time, until at least this many positions have been scanned in
+     * a tick. Templates are a lot cheaper to scan than blueprints, as they only need to know if each block is air. */
+    private static final int TEMPLATE_SCANNED_PER_TICK = 4 * 16 * 16 * 16;
+    private static final int BLUEPRINT_SCANNED_PER_TICK = 16 * 16 * 16;
+
     public final ItemHandlerSimple invSnapshotIn = itemManager.addInvHandler("in", 1, EnumAccess.INSERT,
         EnumPipePart.VALUES);
     public final ItemHandlerSimple invSnapshotOut = itemManager.addInvHandler("out", 1, EnumAccess.EXTRACT,
@@ -80,13 +93,18 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
 
     private EnumSnapshotType snapshotType = EnumSnapshotType.BLUEPRINT;
     public final Box box = new Box();
-    private boolean[][][] templateScannedBlocks;
+    private PackedVoxelVolume templateScannedBlocks;
     private final List<ISchematicBlock<?>> blueprintScannedPalette = new ArrayList<>();
-    private int[][][] blueprintScannedData;
+    /** Maps every schematic in {@link #blueprintScannedPalette} to its index in it. */
+    private final Map<ISchematicBlock<?>, Integer> blueprintScannedPaletteIndices = new HashMap<>();
+    private PackedVoxelVolume blueprintScannedData;
     private final List<ISchematicEntity<?>> blueprintScannedEntities = new ArrayList<>();
-    private BoxIterator boxIterator;
+    /** The index of the next chunk section (out of every section that the box passes through) to scan. */
+    private int scanSection = 0;
     private boolean isValid = false;
     private boolean scanning = false;
+    /** The snapshot that was just scanned, while it is being hashed and written on a worker thread. */
+    private Future<Snapshot> savingSnapshot;
     public String name = "<unnamed>";
     public final DeltaInt deltaProgress = deltaManager.addDelta("progress",
         DeltaManager.EnumNetworkVisibility.GUI_ONLY);
@@ -154,10 +172,17 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
             return;
         }
 
+        if (savingSnapshot != null) {
+            if (savingSnapshot.isDone()) {
+                finishSaving();
+            }
+            return;
+        }
+
         if (!invSnapshotIn.getStackInSlot(0).isEmpty() && invSnapshotOut.getStackInSlot(0).isEmpty() && isValid) {
             if (!scanning) {
                 int size = box.size().getX() * box.size().getY() * box.size().getZ();
-                size /= snapshotType.maxPerTick;
+                size /= getScannedPerTick();
                 deltaProgress.addDelta(0, size, 1);
                 deltaProgress.addDelta(size, size + 10, -1);
                 scanning = true;
@@ -177,60 +202,141 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
         }
     }
 
-    private void scanMultipleBlocks() {
-        for (int i = snapshotType.maxPerTick; i > 0; i--) {
-            scanSingleBlock();
-            if (!scanning) {
-                break;
-            }
-        }
+    private int getScannedPerTick() {
+        return snapshotType == EnumSnapshotType.TEMPLATE ? TEMPLATE_SCANNED_PER_TICK : BLUEPRINT_SCANNED_PER_TICK;
     }
 
-    private void scanSingleBlock() {
-        BlockPos size = box.size();
+    private void scanMultipleBlocks() {
+        BlockPos min = box.min();
+        BlockPos max = box.max();
         if (templateScannedBlocks == null || blueprintScannedData == null) {
-            boxIterator = new BoxIterator(box, EnumAxisOrder.XZY.getMinToMaxOrder(), true);
-            templateScannedBlocks = new boolean[size.getX()][size.getY()][size.getZ()];
-            blueprintScannedData = new int[size.getX()][size.getY()][size.getZ()];
+            BlockPos size = box.size();
+            templateScannedBlocks = new PackedVoxelVolume(size, 1);
+            // This is widened as the palette grows
+            blueprintScannedData = new PackedVoxelVolume(size, 1);
+            blueprintScannedPalette.clear();
+            blueprintScannedPaletteIndices.clear();
+            scanSection = 0;
         }
-
-        // Read from world
-        BlockPos worldScanPos = boxIterator.getCurrent();
-        BlockPos schematicIndex = worldScanPos.subtract(box.min());
-        if (snapshotType == EnumSnapshotType.TEMPLATE) {
-            boolean solid = !world.isAirBlock(worldScanPos);
-            templateScannedBlocks[schematicIndex.getX()][schematicIndex.getY()][schematicIndex.getZ()] = solid;
-        }
-        if (snapshotType == EnumSnapshotType.BLUEPRINT) {
-            ISchematicBlock<?> schematicBlock = readSchematicBlock(worldScanPos);
-            int index = blueprintScannedPalette.indexOf(schematicBlock);
-            if (index == -1) {
-                index = blueprintScannedPalette.size();
-                blueprintScannedPalette.add(schematicBlock);
-            }
-            blueprintScannedData[schematicIndex.getX()][schematicIndex.getY()][schematicIndex.getZ()] = index;
+        int sectionsX = (max.getX() >> 4) - (min.getX() >> 4) + 1;
+        int sectionsY = (max.getY() >> 4) - (min.getY() >> 4) + 1;
+        int sectionsZ = (max.getZ() >> 4) - (min.getZ() >> 4) + 1;
+        int sectionCount = sectionsX * sectionsY * sectionsZ;
+        BlockPos basePos = pos.offset(world.getBlockState(pos).getValue(BlockBCBase_Neptune.PROP_FACING).getOpposite());
+
+        List<BlockPos> scannedFrom = new ArrayList<>();
+        List<BlockPos> scannedTo = new ArrayList<>();
+        List<BitSet> scannedSolid = new ArrayList<>();
+        int scanned = 0;
+        while (scanSection < sectionCount && scanned < getScannedPerTick()) {
+            // Sections go in the same order as the blocks within them: x, then z, then y
+            int sectionX = (min.getX() >> 4) + scanSection % sectionsX;
+            int sectionZ = (min.getZ() >> 4) + scanSection / sectionsX % sectionsZ;
+            int sectionY = (min.getY() >> 4) + scanSection / sectionsX / sectionsZ;
+            BlockPos from = new BlockPos(
+                Math.max(min.getX(), sectionX << 4),
+                Math.max(min.getY(), sectionY << 4),
+                Math.max(min.getZ(), sectionZ << 4)
+            );
+            BlockPos to = new BlockPos(
+                Math.min(max.getX(), (sectionX << 4) + 15),
+                Math.min(max.getY(), (sectionY << 4) + 15),
+                Math.min(max.getZ(), (sectionZ << 4) + 15)
+            );
+            scannedFrom.add(from);
+            scannedTo.add(to);
+            scannedSolid.add(scanChunkSection(basePos, from, to));
+            scanned += (to.getX() - from.getX() + 1) * (to.getY() - from.getY() + 1) * (to.getZ() - from.getZ() + 1);
+            scanSection++;
         }
 
-        createAndSendMessage(NET_SCAN, buffer -> MessageUtil.writeBlockPos(buffer, worldScanPos));
-
-        sendNetworkUpdate(NET_RENDER_DATA);
-
-        // Move scanPos along
-        boxIterator.advance();
+        // One message for everything scanned this tick, rather than one per block
+        createAndSendMessage(NET_SCAN, buffer -> {
+            buffer.writeVarInt(scannedFrom.size());
+            for (int i = 0; i < scannedFrom.size(); i++) {
+                BlockPos from = scannedFrom.get(i);
+                BlockPos to = scannedTo.get(i);
+                MessageUtil.writeBlockPos(buffer, from);
+                buffer.writeByte(to.getX() - from.getX());
+                buffer.writeByte(to.getY() - from.getY());
+                buffer.writeByte(to.getZ() - from.getZ());
+                long[] solid = scannedSolid.get(i).toLongArray();
+                buffer.writeVarInt(solid.length);
+                for (long word : solid) {
+                    buffer.writeLong(word);
+                }
+            }
+        });
 
-        if (boxIterator.hasFinished()) {
+        if (scanSection >= sectionCount) {
             scanning = false;
-            boxIterator = null;
         }
     }
 
-    private ISchematicBlock<?> readSchematicBlock(BlockPos worldScanPos) {
+    /** Scans every position between from and to (which must all be in the same chunk section), reading the block
+     * states straight out of the section rather than going through the world for every one.
+     *
+     * @return A bitmask of every scanned position that wasn't air, in x, then z, then y order. */
+    private BitSet scanChunkSection(BlockPos basePos, BlockPos from, BlockPos to) {
+        Chunk chunk = ChunkUtil.getChunk(world, from, true);
+        int sectionY = from.getY() >> 4;
+        ExtendedBlockStorage section = sectionY >= 0 && sectionY < 16
+            ? chunk.getBlockStorageArray()[sectionY]
+            : Chunk.NULL_BLOCK_STORAGE;
+        boolean empty = section == Chunk.NULL_BLOCK_STORAGE || section.isEmpty();
+        IBlockState air = Blocks.AIR.getDefaultState();
+        int airIndex = -1;
+        BitSet solid = new BitSet();
+        int i = 0;
+        for (int y = from.getY(); y <= to.getY(); y++) {
+            for (int z = from.getZ(); z <= to.getZ(); z++) {
+                for (int x = from.getX(); x <= to.getX(); x++) {
+                    BlockPos worldScanPos = new BlockPos(x, y, z);
+                    IBlockState state = empty ? air : section.get(x & 15, y & 15, z & 15);
+                    boolean isAir = state.getBlock().isAir(state, world, worldScanPos);
+                    int sx = x - box.min().getX();
+                    int sy = y - box.min().getY();
+                    int sz = z - box.min().getZ();
+                    if (snapshotType == EnumSnapshotType.TEMPLATE && !isAir) {
+                        templateScannedBlocks.setBoolean(sx, sy, sz, true);
+                    }
+                    if (snapshotType == EnumSnapshotType.BLUEPRINT) {
+                        int index;
+                        if (empty) {
+                            // Every position in an empty section has the same schematic
+                            if (airIndex == -1) {
+                                airIndex = getPaletteIndex(readSchematicBlock(basePos, worldScanPos, state));
+                            }
+                            index = airIndex;
+                        } else {
+                            index = getPaletteIndex(readSchematicBlock(basePos, worldScanPos, state));
+                        }
+                        blueprintScannedData.set(sx, sy, sz, index);
+                    }
+                    if (!isAir) {
+                        solid.set(i);
+                    }
+                    i++;
+                }
+            }
+        }
+        return solid;
+    }
+
+    private int getPaletteIndex(ISchematicBlock<?> schematicBlock) {
+        return blueprintScannedPaletteIndices.computeIfAbsent(schematicBlock, key -> {
+            blueprintScannedPalette.add(key);
+            return blueprintScannedPalette.size() - 1;
+        });
+    }
+
+    private ISchematicBlock<?> readSchematicBlock(BlockPos basePos, BlockPos worldScanPos, IBlockState state) {
         return SchematicBlockManager.getSchematicBlock(
             world,
-            pos.offset(world.getBlockState(pos).getValue(BlockBCBase_Neptune.PROP_FACING).getOpposite()),
+            basePos,
             worldScanPos,
-            world.getBlockState(worldScanPos),
-            world.getBlockState(worldScanPos).getBlock()
+            state,
+            state.getBlock()
         );
     }
 
@@ -265,21 +371,40 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
 
         }
 
-        snapshot.header = new Header(snapshot.computeHash(), getOwner().getId(), new Date(), name);
-        GlobalSavedDataSnapshots store = GlobalSavedDataSnapshots.get(world);
-        store.snapshots.add(snapshot);
-        store.markDirty();
-        ItemStack stackIn = invSnapshotIn.getStackInSlot(0);
-        stackIn.setCount(stackIn.getCount() - 1);
-        if (stackIn.getCount() == 0) {
-            stackIn = ItemStack.EMPTY;
-        }
-        invSnapshotIn.setStackInSlot(0, stackIn);
-        invSnapshotOut.setStackInSlot(0, BCBuildersItems.snapshot.getUsed(snapshotType, snapshot.header));
+        // The hash is filled in by the library once it has been computed
+        Header header = new Header(null, getOwner().getId(), new Date(), name);
+        savingSnapshot = GlobalSavedDataSnapshots.get(world).saveSnapshot(snapshot, header);
         templateScannedBlocks = null;
         blueprintScannedData = null;
+        blueprintScannedPalette.clear();
+        blueprintScannedPaletteIndices.clear();
         blueprintScannedEntities.clear();
-        boxIterator = null;
+        scanSection = 0;
+    }
+
+    private void finishSaving() {
+        Snapshot snapshot;
+        try {
+            snapshot = savingSnapshot.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // saveSnapshot has already logged this: just scan again
+            snapshot = null;
+        }
+        savingSnapshot = null;
+        if (snapshot == null) {
+            return;
+        }
+        GlobalSavedDataSnapshots store = GlobalSavedDataSnapshots.get(world);
+        store.addSnapshot(snapshot);
+        ItemStack stackIn = invSnapshotIn.getStackInSlot(0);
+        if (!stackIn.isEmpty() && invSnapshotOut.getStackInSlot(0).isEmpty()) {
+            stackIn.setCount(stackIn.getCount() - 1);
+            if (stackIn.getCount() == 0) {
+                stackIn = ItemStack.EMPTY;
+            }
+            invSnapshotIn.setStackInSlot(0, stackIn);
+            invSnapshotOut.setStackInSlot(0, BCBuildersItems.snapshot.getUsed(snapshot.getType(), snapshot.header));
+        }
         sendNetworkUpdate(NET_RENDER_DATA);
     }
 
@@ -309,8 +434,28 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
                 box.readData(buffer);
             }
             if (id == NET_SCAN) {
-                ClientArchitectTables.SCANNED_BLOCKS.put(MessageUtil.readBlockPos(buffer),
-                    ClientArchitectTables.START_SCANNED_BLOCK_VALUE);
+                int count = buffer.readVarInt();
+                for (int j = 0; j < count; j++) {
+                    BlockPos from = MessageUtil.readBlockPos(buffer);
+                    BlockPos to = from.add(buffer.readUnsignedByte(), buffer.readUnsignedByte(),
+                        buffer.readUnsignedByte());
+                    long[] words = new long[buffer.readVarInt()];
+                    for (int w = 0; w < words.length; w++) {
+                        words[w] = buffer.readLong();
+                    }
+                    BitSet solid = BitSet.valueOf(words);
+                    int i = 0;
+                    for (int y = from.getY(); y <= to.getY(); y++) {
+                        for (int z = from.getZ(); z <= to.getZ(); z++) {
+                            for (int x = from.getX(); x <= to.getX(); x++) {
+                                if (solid.get(i++)) {
+                                    ClientArchitectTables.SCANNED_BLOCKS.put(new BlockPos(x, y, z),
+                                        ClientArchitectTables.START_SCANNED_BLOCK_VALUE);
+                                }
+                            }
+                        }
+                    }
+                }
             }
         }
     }
@@ -319,9 +464,6 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
     public NBTTagCompound writeToNBT(NBTTagCompound nbt) {
         super.writeToNBT(nbt);
         nbt.setTag("box", box.writeToNBT());
-        if (boxIterator != null) {
-            nbt.setTag("iter", boxIterator.writeToNbt());
-        }
         nbt.setBoolean("scanning", scanning);
         nbt.setTag("snapshotType", NBTUtilBC.writeEnum(snapshotType));
         nbt.setBoolean("isValid", isValid);
@@ -333,9 +475,6 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
     public void readFromNBT(NBTTagCompound nbt) {
         super.readFromNBT(nbt);
         box.initialize(nbt.getCompoundTag("box"));
-        if (nbt.hasKey("iter")) {
-            boxIterator = BoxIterator.readFromNbt(nbt.getCompoundTag("iter"));
-        }
         scanning = nbt.getBoolean("scanning");
         snapshotType = NBTUtilBC.readEnum(nbt.getTag("snapshotType"), EnumSnapshotType.class);
         isValid = nbt.getBoolean("isValid");
@@ -350,7 +489,8 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
         left.add(" - min = " + box.min());
         left.add(" - max = " + box.max());
         left.add("scanning = " + scanning);
-        left.add("current = " + (boxIterator == null ? null : boxIterator.getCurrent()));
+        left.add("section = " + scanSection);
+        left.add("saving = " + (savingSnapshot != null));
     }
 
     // Rendering
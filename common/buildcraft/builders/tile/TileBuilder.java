@@ -65,6 +65,7 @@ import buildcraft.builders.BCBuildersItems;
 import buildcraft.builders.item.ItemSnapshot;
 import buildcraft.builders.snapshot.Blueprint;
 import buildcraft.builders.snapshot.BlueprintBuilder;
+import buildcraft.builders.snapshot.BuildingInfoLoader;
 import buildcraft.builders.snapshot.GlobalSavedDataSnapshots;
 import buildcraft.builders.snapshot.ITileForBlueprintBuilder;
 import buildcraft.builders.snapshot.ITileForTemplateBuilder;
@@ -94,6 +95,8 @@ public class TileBuilder extends TileBC_Neptune implements ITickable, IDebuggabl
     public EnumSnapshotType snapshotType = null;
     private Template.BuildingInfo templateBuildingInfo = null;
     private Blueprint.BuildingInfo blueprintBuildingInfo = null;
+    /** Computes {@link #templateBuildingInfo} or {@link #blueprintBuildingInfo} in the background. */
+    private BuildingInfoLoader<?> buildingInfoLoader = null;
     public TemplateBuilder templateBuilder = new TemplateBuilder(this);
     public BlueprintBuilder blueprintBuilder = new BlueprintBuilder(this);
     private Box currentBox = new Box();
@@ -139,26 +142,55 @@ public class TileBuilder extends TileBC_Neptune implements ITickable, IDebuggabl
         if (getBuilder() != null) {
             getBuilder().cancel();
         }
+        cancelBuildingInfoLoader();
+        templateBuildingInfo = null;
+        blueprintBuildingInfo = null;
         if (snapshot != null && getCurrentBasePos() != null) {
             snapshotType = snapshot.getType();
             EnumFacing facing = world.getBlockState(pos).getValue(BlockBCBase_Neptune.PROP_FACING);
             Rotation rotation = Arrays.stream(Rotation.values()).filter(r -> r.rotate(snapshot.facing) == facing).findFirst().orElse(null);
             if (snapshot.getType() == EnumSnapshotType.TEMPLATE) {
-                templateBuildingInfo = ((Template) snapshot).new BuildingInfo(getCurrentBasePos(), rotation);
+                buildingInfoLoader = BuildingInfoLoader.load((Template) snapshot, getCurrentBasePos(), rotation);
             }
             if (snapshot.getType() == EnumSnapshotType.BLUEPRINT) {
-                blueprintBuildingInfo = ((Blueprint) snapshot).new BuildingInfo(getCurrentBasePos(), rotation);
+                buildingInfoLoader = BuildingInfoLoader.load((Blueprint) snapshot, getCurrentBasePos(), rotation);
             }
-            currentBox = Optional.ofNullable(getBuilder()).map(SnapshotBuilder::getBox).orElse(null);
         } else {
             snapshotType = null;
-            templateBuildingInfo = null;
-            blueprintBuildingInfo = null;
-            currentBox = null;
         }
+        currentBox = new Box();
+    }
+
+    private void cancelBuildingInfoLoader() {
+        if (buildingInfoLoader != null) {
+            buildingInfoLoader.cancel();
+            buildingInfoLoader = null;
+        }
+    }
+
+    /** Moves the building info out of {@link #buildingInfoLoader} once it has finished computing it.
+     *
+     * @return True if the building info is ready to be used. */
+    private boolean updateBuildingInfoLoader() {
+        if (buildingInfoLoader == null) {
+            return true;
+        }
+        if (!buildingInfoLoader.isDone()) {
+            return false;
+        }
+        Object buildingInfo = buildingInfoLoader.getResult();
+        buildingInfoLoader = null;
+        if (buildingInfo instanceof Template.BuildingInfo) {
+            templateBuildingInfo = (Template.BuildingInfo) buildingInfo;
+        }
+        if (buildingInfo instanceof Blueprint.BuildingInfo) {
+            blueprintBuildingInfo = (Blueprint.BuildingInfo) buildingInfo;
+        }
+        currentBox = Optional.ofNullable(getBuilder()).map(SnapshotBuilder::getBox).orElse(null);
         if (currentBox == null) {
             currentBox = new Box();
         }
+        return true;
     }
 
     private void updateBasePoses() {
@@ -179,6 +211,12 @@ public class TileBuilder extends TileBC_Neptune implements ITickable, IDebuggabl
         return currentBasePosIndex < basePoses.size() ? basePoses.get(currentBasePosIndex) : null;
     }
 
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        cancelBuildingInfoLoader();
+    }
+
     @Override
     public void onPlacedBy(EntityLivingBase placer, ItemStack stack) {
         super.onPlacedBy(placer, stack);
@@ -199,7 +237,7 @@ public class TileBuilder extends TileBC_Neptune implements ITickable, IDebuggabl
     public void update() {
         battery.tick(getWorld(), getPos());
         battery.addPowerChecking(64 * MjAPI.MJ, false);
-        if (getBuilder() != null) {
+        if (getBuilder() != null && updateBuildingInfoLoader()) {
             if (isDone = getBuilder().tick()) {
                 if (currentBasePosIndex < basePoses.size() - 1) {
                     currentBasePosIndex++;
@@ -351,6 +389,9 @@ public class TileBuilder extends TileBC_Neptune implements ITickable, IDebuggabl
         left.add("basePoses = " + (basePoses == null ? "null" : basePoses.size()));
         left.add("currentBasePosIndex = " + currentBasePosIndex);
         left.add("isDone = " + isDone);
+        if (buildingInfoLoader != null) {
+            left.add("loading = " + (int) (buildingInfoLoader.getProgress() * 100) + "%");
+        }
     }
 
     @Override
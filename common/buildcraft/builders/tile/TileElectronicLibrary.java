@@ -179,8 +179,7 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
             if (id == NET_DOWN) {
                 if (buffer.readBoolean()) {
                     Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(buffer));
-                    store.snapshots.add(snapshot);
-                    store.markDirty();
+                    store.addSnapshot(snapshot);
                 }
             }
             if (id == NET_UP) {
@@ -193,8 +192,7 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
                     NBTTagCompound nbt = NbtSquisher.expand(buffer);
                     Snapshot snapshot = Snapshot.readFromNBT(nbt);
                     invUpIn.setStackInSlot(0, StackUtil.EMPTY);
-                    store.snapshots.add(snapshot);
-                    store.markDirty();
+                    store.addSnapshot(snapshot);
                     invUpOut.setStackInSlot(0, BCBuildersItems.snapshot.getUsed(snapshot.getType(), snapshot.header));
                 }
             }
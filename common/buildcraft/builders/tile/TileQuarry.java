@@ -8,15 +8,16 @@ package buildcraft.builders.tile;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.function.BiFunction;
-import java.util.function.Predicate;
 
 import com.google.common.collect.ImmutableList;
 
@@ -59,6 +60,7 @@ import buildcraft.lib.inventory.filter.StackFilter;
 import buildcraft.lib.misc.BlockUtil;
 import buildcraft.lib.misc.BoundingBoxUtil;
 import buildcraft.lib.misc.CapUtil;
+import buildcraft.lib.misc.ChunkUtil;
 import buildcraft.lib.misc.InventoryUtil;
 import buildcraft.lib.misc.LocaleUtil;
 import buildcraft.lib.misc.MessageUtil;
@@ -72,11 +74,15 @@ import buildcraft.lib.misc.data.EnumAxisOrder;
 import buildcraft.lib.mj.MjBatteryReciver;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
+import buildcraft.lib.world.BlockStateCache;
 
 import buildcraft.builders.BCBuildersBlocks;
 import buildcraft.builders.BCBuildersEventDist;
 
 public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable {
+    /** The maximum number of positions that {@link #skipUnmineable()} will look at in a single tick. */
+    private static final int MAX_SKIPPED_PER_TICK = 4096;
+
     private final MjBattery battery = new MjBattery(1600L * MjAPI.MJ);
     public final Box frameBox = new Box();
     private final Box miningBox = new Box();
@@ -90,6 +96,26 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
      */
     private final AverageInt recentPowerAverage = new AverageInt(200);
 
+    /** The cached result of {@link #getFramePositions(IBlockState)}, for the frame box and facing below. */
+    private List<BlockPos> framePath = null;
+    private final Map<BlockPos, Integer> framePathIndices = new HashMap<>();
+    private EnumFacing framePathFacing;
+    private BlockPos framePathMin, framePathMax;
+    /** The index in the frame path of the first position that hasn't been checked for a frame yet. Everything before
+     * this is known to not be air. */
+    private int frameCursor = 0;
+
+    /** The frame box that {@link #scanDirty} and {@link #scanBreak} are indexed over, or null if it hasn't been
+     * scanned yet. */
+    private BlockPos scanMin, scanMax;
+    /** Every position in the frame box that might have changed since it was last checked. */
+    private final BitSet scanDirty = new BitSet();
+    /** Every position in the frame box that needs to be broken before the frame can be built. */
+    private final BitSet scanBreak = new BitSet();
+    /** The states of the frame and mining boxes, kept up to date by {@link #onBlockChanged(BlockPos)}. Created
+     * lazily as this needs the world. */
+    private BlockStateCache stateCache;
+
     public TileQuarry() {
         caps.addProvider(new MjCapabilityHelper(new MjBatteryReciver(battery) {
             @Override
@@ -104,57 +130,80 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         caps.addCapabilityInstance(CapUtil.CAP_ITEM_TRANSACTOR, AutomaticProvidingTransactor.INSTANCE, EnumPipePart.VALUES);
     }
 
+    /** @return The positions of every frame block, in the order that they should be placed. This is cached for the
+     *         current frame box, so the returned list must not be modified. */
     public List<BlockPos> getFramePositions(IBlockState state) {
-        List<BlockPos> framePositions = new ArrayList<>();
-
         BlockPos min = frameBox.min();
         BlockPos max = frameBox.max();
+        EnumFacing facing = state.getValue(BlockBCBase_Neptune.PROP_FACING).getOpposite();
+        if (framePath == null || facing != framePathFacing || !min.equals(framePathMin) || !max.equals(framePathMax)) {
+            framePathIndices.clear();
+            framePath = Collections.unmodifiableList(computeFramePath(min, max, facing));
+            for (int i = 0; i < framePath.size(); i++) {
+                framePathIndices.putIfAbsent(framePath.get(i), i);
+            }
+            framePathFacing = facing;
+            framePathMin = min;
+            framePathMax = max;
+        }
+        return framePath;
+    }
 
+    /** Orders every frame position so that each one is next to one that came before it, always picking the position
+     * that is closest to the quarry out of all of the ones that could come next. */
+    private List<BlockPos> computeFramePath(BlockPos min, BlockPos max, EnumFacing facing) {
+        Set<BlockPos> frameSet = new HashSet<>();
         for (int x = min.getX(); x <= max.getX(); x++) {
-            framePositions.add(new BlockPos(x, min.getY(), min.getZ()));
-            framePositions.add(new BlockPos(x, max.getY(), min.getZ()));
-            framePositions.add(new BlockPos(x, min.getY(), max.getZ()));
-            framePositions.add(new BlockPos(x, max.getY(), max.getZ()));
+            frameSet.add(new BlockPos(x, min.getY(), min.getZ()));
+            frameSet.add(new BlockPos(x, max.getY(), min.getZ()));
+            frameSet.add(new BlockPos(x, min.getY(), max.getZ()));
+            frameSet.add(new BlockPos(x, max.getY(), max.getZ()));
         }
 
         for (int z = min.getZ(); z <= max.getZ(); z++) {
-            framePositions.add(new BlockPos(min.getX(), min.getY(), z));
-            framePositions.add(new BlockPos(max.getX(), min.getY(), z));
-            framePositions.add(new BlockPos(min.getX(), max.getY(), z));
-            framePositions.add(new BlockPos(max.getX(), max.getY(), z));
+            frameSet.add(new BlockPos(min.getX(), min.getY(), z));
+            frameSet.add(new BlockPos(max.getX(), min.getY(), z));
+            frameSet.add(new BlockPos(min.getX(), max.getY(), z));
+            frameSet.add(new BlockPos(max.getX(), max.getY(), z));
         }
 
         for (int y = min.getY(); y <= max.getY(); y++) {
-            framePositions.add(new BlockPos(min.getX(), y, min.getZ()));
-            framePositions.add(new BlockPos(max.getX(), y, min.getZ()));
-            framePositions.add(new BlockPos(min.getX(), y, max.getZ()));
-            framePositions.add(new BlockPos(max.getX(), y, max.getZ()));
-        }
-
-        framePositions = new ArrayList<>(new HashSet<>(framePositions));
-
-        framePositions.sort(Comparator.comparing(blockPos ->
-            Math.pow(blockPos.getX() - pos.getX(), 2) +
-                Math.pow(blockPos.getY() - pos.getY(), 2) +
-                Math.pow(blockPos.getZ() - pos.getZ(), 2)
-        ));
-
-        List<BlockPos> framePositionsSorted = new ArrayList<>();
-        EnumFacing facing = state.getValue(BlockBCBase_Neptune.PROP_FACING).getOpposite();
-        framePositionsSorted.add(pos.offset(facing));
-        while (framePositions.size() != framePositionsSorted.size()) {
-            for (BlockPos blockPos : framePositions) {
-                if (!framePositionsSorted.contains(blockPos)) {
-                    if (framePositionsSorted.stream()
-                        .flatMap(blockPosLocal -> Arrays.stream(EnumFacing.VALUES).map(blockPosLocal::offset))
-                        .anyMatch(Predicate.isEqual(blockPos))) {
-                        framePositionsSorted.add(blockPos);
-                        break;
-                    }
+            frameSet.add(new BlockPos(min.getX(), y, min.getZ()));
+            frameSet.add(new BlockPos(max.getX(), y, min.getZ()));
+            frameSet.add(new BlockPos(min.getX(), y, max.getZ()));
+            frameSet.add(new BlockPos(max.getX(), y, max.getZ()));
+        }
+
+        List<BlockPos> byDistance = new ArrayList<>(frameSet);
+        byDistance.sort(Comparator.comparingDouble(blockPos -> blockPos.distanceSq(pos)));
+        Map<BlockPos, Integer> distanceOrder = new HashMap<>();
+        for (int i = 0; i < byDistance.size(); i++) {
+            distanceOrder.put(byDistance.get(i), i);
+        }
+
+        List<BlockPos> framePositionsSorted = new ArrayList<>(byDistance.size());
+        Set<BlockPos> added = new HashSet<>();
+        // The indices (in byDistance) of every position next to one that has already been added
+        PriorityQueue<Integer> next = new PriorityQueue<>();
+        BlockPos start = pos.offset(facing);
+        framePositionsSorted.add(start);
+        added.add(start);
+        BlockPos last = start;
+        while (true) {
+            for (EnumFacing face : EnumFacing.VALUES) {
+                BlockPos offset = last.offset(face);
+                Integer index = distanceOrder.get(offset);
+                if (index != null && added.add(offset)) {
+                    next.add(index);
                 }
             }
+            Integer index = next.poll();
+            if (index == null || framePositionsSorted.size() == byDistance.size()) {
+                break;
+            }
+            last = byDistance.get(index);
+            framePositionsSorted.add(last);
         }
-
         return framePositionsSorted;
     }
 
@@ -217,16 +266,70 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         miningBox.setMax(new BlockPos(max.getX() - 1, max.getY() - 1, max.getZ() - 1));
     }
 
+    private BlockStateCache getStateCache() {
+        if (stateCache == null) {
+            stateCache = new BlockStateCache(world);
+        }
+        return stateCache;
+    }
+
     private boolean canNotMine(BlockPos blockPos) {
-        Fluid fluid = BlockUtil.getFluidWithFlowing(world, blockPos);
+        return canNotMine(getStateCache().getBlockState(blockPos));
+    }
+
+    private static boolean canNotMine(IBlockState state) {
+        Fluid fluid = BlockUtil.getFluidWithFlowing(state);
         return fluid != null && fluid.getViscosity() > 1000;
     }
 
     private boolean canSkip(BlockPos blockPos) {
-        Fluid fluid = BlockUtil.getFluidWithFlowing(world, blockPos);
+        return canSkip(getStateCache().getBlockState(blockPos));
+    }
+
+    private static boolean canSkip(IBlockState state) {
+        Fluid fluid = BlockUtil.getFluidWithFlowing(state);
         return fluid != null && fluid.getViscosity() <= 1000;
     }
 
+    /** Moves {@link #boxIterator} on to the next position that actually needs mining, reading blocks straight out of
+     * the chunk sections and skipping a whole layer at once whenever every section that it passes through is empty.
+     * This stops early if it reaches an unloaded chunk, or after {@link #MAX_SKIPPED_PER_TICK} positions, in which case
+     * it will carry on from the same position next time. */
+    private void skipUnmineable() {
+        BlockPos min = miningBox.min();
+        BlockPos max = miningBox.max();
+        boolean layered = boxIterator.getOrder().third.getAxis() == Axis.Y;
+        for (int skipped = 0; skipped < MAX_SKIPPED_PER_TICK && boxIterator.hasNext(); skipped++) {
+            BlockPos current = boxIterator.getCurrent();
+            if (layered && ChunkUtil.isSectionEmpty(world, current.getX() >> 4, current.getY() >> 4, current.getZ() >> 4)
+                && isLayerEmpty(min, max, current.getY())) {
+                boxIterator.skipThird();
+                continue;
+            }
+            IBlockState state = ChunkUtil.getBlockStateIfLoaded(world, current);
+            if (state == null) {
+                return;
+            }
+            if (!state.getBlock().isAir(state, world, current) && !canSkip(state)) {
+                return;
+            }
+            boxIterator.advance();
+        }
+    }
+
+    /** @return True if every chunk section that the given layer of the mining box goes through is empty. */
+    private boolean isLayerEmpty(BlockPos min, BlockPos max, int y) {
+        int sectionY = y >> 4;
+        for (int cx = min.getX() >> 4; cx <= max.getX() >> 4; cx++) {
+            for (int cz = min.getZ() >> 4; cz <= max.getZ() >> 4; cz++) {
+                if (!ChunkUtil.isSectionEmpty(world, cx, sectionY, cz)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public void validate() {
         super.validate();
@@ -239,6 +342,77 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         BCBuildersEventDist.INSTANCE.invalidateQuarry(this);
     }
 
+    /** Resets the clear scan if the frame box is different to the one that was last scanned, so that every position
+     * in it will be checked. */
+    private void updateScanBox(BlockPos min, BlockPos max) {
+        if (!min.equals(scanMin) || !max.equals(scanMax)) {
+            scanMin = min;
+            scanMax = max;
+            scanBreak.clear();
+            scanDirty.clear();
+            BlockPos size = max.subtract(min).add(1, 1, 1);
+            scanDirty.set(0, size.getX() * size.getY() * size.getZ());
+            frameCursor = 0;
+        }
+    }
+
+    private int getScanIndex(BlockPos blockPos) {
+        if (scanMin == null) {
+            return -1;
+        }
+        int x = blockPos.getX() - scanMin.getX();
+        int y = blockPos.getY() - scanMin.getY();
+        int z = blockPos.getZ() - scanMin.getZ();
+        int sizeX = scanMax.getX() - scanMin.getX() + 1;
+        int sizeY = scanMax.getY() - scanMin.getY() + 1;
+        int sizeZ = scanMax.getZ() - scanMin.getZ() + 1;
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return -1;
+        }
+        return (x * sizeY + y) * sizeZ + z;
+    }
+
+    private BlockPos getScanPos(int index) {
+        int sizeY = scanMax.getY() - scanMin.getY() + 1;
+        int sizeZ = scanMax.getZ() - scanMin.getZ() + 1;
+        int z = index % sizeZ;
+        int y = (index / sizeZ) % sizeY;
+        int x = index / sizeZ / sizeY;
+        return scanMin.add(x, y, z);
+    }
+
+    private boolean shouldBreak(BlockPos blockPos) {
+        BlockPos min = scanMin;
+        BlockPos max = scanMax;
+        int x = blockPos.getX();
+        int y = blockPos.getY();
+        int z = blockPos.getZ();
+        boolean shouldBeFrame = ((x == min.getX() || x == max.getX()) && (y == min.getY() || y == max.getY())) ||
+            ((y == min.getY() || y == max.getY()) && (z == min.getZ() || z == max.getZ())) ||
+            ((z == min.getZ() || z == max.getZ()) && (x == min.getX() || x == max.getX()));
+        IBlockState state = getStateCache().getBlockState(blockPos);
+        Block block = state.getBlock();
+        return ((block != Blocks.AIR && !shouldBeFrame) ||
+            (block != BCBuildersBlocks.frame && block != Blocks.AIR && shouldBeFrame)) && !canSkip(state);
+    }
+
+    /** Called whenever a block in this quarry's world changes, so that only the positions that actually changed need
+     * to be checked again while clearing the area and building the frame. */
+    public void onBlockChanged(BlockPos changed) {
+        if (stateCache != null) {
+            stateCache.markChanged(changed);
+        }
+        int index = getScanIndex(changed);
+        if (index < 0) {
+            return;
+        }
+        scanDirty.set(index);
+        Integer pathIndex = framePathIndices.get(changed);
+        if (pathIndex != null && pathIndex < frameCursor) {
+            frameCursor = pathIndex;
+        }
+    }
+
     @Override
     public void update() {
         if (world.isRemote) {
@@ -254,45 +428,6 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         BlockPos min = frameBox.min();
         BlockPos max = frameBox.max();
 
-        if (drillPos != null) {
-            Map<BlockPos, EnumFacing.Axis> entityPoses = new HashMap<>();
-
-            for (int x = min.getX(); x <= max.getX(); x++) {
-                entityPoses.put(new BlockPos(x, max.getY(), drillPos.zCoord + 0.5), EnumFacing.Axis.X);
-            }
-
-            for (int y = (int) drillPos.yCoord; y < max.getY(); y++) {
-                entityPoses.put(new BlockPos(drillPos.xCoord + 0.5, y, drillPos.zCoord + 0.5), EnumFacing.Axis.Y);
-            }
-
-            for (int z = min.getZ(); z <= max.getZ(); z++) {
-                entityPoses.put(new BlockPos(drillPos.xCoord + 0.5, max.getY(), z), EnumFacing.Axis.Z);
-            }
-
-            /*
-            List<EntityQuarryFrame> allEntities = world.getEntitiesWithinAABB(
-                    EntityQuarryFrame.class,
-                    miningBox.getBoundingBox().union(frameBox.getBoundingBox()).expandXyz(1)
-            );
-            entityPoses.forEach((currentPos, axis) -> {
-                List<EntityQuarryFrame> entities = allEntities.stream()
-                        .filter(entity ->
-                                entity != null &&
-                                        EnumFacing.Axis.values()[entity.getDataManager().get(EntityQuarryFrame.AXIS)] == axis &&
-                                        entity.getDataManager().get(EntityQuarryFrame.QUARRY_POS).equals(pos) &&
-                                        entity.getDataManager().get(EntityQuarryFrame.FRAME_POS).equals(currentPos))
-                        .collect(Collectors.toList());
-                if (entities.isEmpty()) {
-                    world.spawnEntity(new EntityQuarryFrame(world, pos, currentPos, axis));
-                } else {
-                    for (EntityQuarryFrame entity : entities) {
-                        entity.getDataManager().set(EntityQuarryFrame.TIMEOUT, EntityQuarryFrame.INIT_TIMEOUT);
-                    }
-                }
-            });
-            */
-        }
-
         if (currentTask != null) {
             long maxToExtract = MjAPI.MJ * 10;
             if (currentTask.addPower(
@@ -307,29 +442,18 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             return;
         }
 
-        List<BlockPos> breakPoses = new ArrayList<>();
-
-        for (int x = min.getX(); x <= max.getX(); x++) {
-            for (int y = min.getY(); y <= max.getY(); y++) {
-                for (int z = min.getZ(); z <= max.getZ(); z++) {
-                    BlockPos framePos = new BlockPos(x, y, z);
-                    boolean shouldBeFrame = ((x == min.getX() || x == max.getX()) && (y == min.getY() || y == max.getY())) ||
-                        ((y == min.getY() || y == max.getY()) && (z == min.getZ() || z == max.getZ())) ||
-                        ((z == min.getZ() || z == max.getZ()) && (x == min.getX() || x == max.getX()));
-                    Block block = world.getBlockState(framePos).getBlock();
-                    if (((block != Blocks.AIR && !shouldBeFrame) ||
-                        (block != BCBuildersBlocks.frame && block != Blocks.AIR && shouldBeFrame)) && !canSkip(framePos)) {
-                        breakPoses.add(framePos);
-                    }
-                }
-            }
+        updateScanBox(min, max);
+        for (int i = scanDirty.nextSetBit(0); i >= 0; i = scanDirty.nextSetBit(i + 1)) {
+            scanBreak.set(i, shouldBreak(getScanPos(i)));
         }
+        scanDirty.clear();
 
-        if (breakPoses.size() > 0) {
+        if (!scanBreak.isEmpty()) {
             double closestDistance = Double.MAX_VALUE;
             BlockPos closestPos = null;
 
-            for (BlockPos breakPos : breakPoses) {
+            for (int i = scanBreak.nextSetBit(0); i >= 0; i = scanBreak.nextSetBit(i + 1)) {
+                BlockPos breakPos = getScanPos(i);
                 double distance = breakPos.distanceSq(pos);
 
                 if (distance < closestDistance) {
@@ -346,40 +470,43 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             return;
         }
 
-        for (BlockPos framePos : getFramePositions()) {
-            Block block = world.getBlockState(framePos).getBlock();
+        List<BlockPos> framePositions = getFramePositions();
+        while (frameCursor < framePositions.size()) {
+            BlockPos framePos = framePositions.get(frameCursor);
+            Block block = getStateCache().getBlockState(framePos).getBlock();
             if (block == Blocks.AIR) {
                 drillPos = null;
                 currentTask = new TaskAddFrame(framePos);
                 sendNetworkUpdate(NET_RENDER_DATA);
                 return;
             }
+            frameCursor++;
         }
 
         if ((boxIterator == null || drillPos == null) && miningBox.isInitialized()) {
             boxIterator = new BoxIterator(miningBox, AxisOrder.getFor(EnumAxisOrder.XZY, AxisOrder.Inversion.NNN), true);
-            while (world.isAirBlock(boxIterator.getCurrent()) || canSkip(boxIterator.getCurrent())) {
-               if (boxIterator.advance() == null) {
-                   break;
-               }
-            }
+            skipUnmineable();
             drillPos = new Vec3d(miningBox.closestInsideTo(pos));
         }
 
         if (boxIterator != null && boxIterator.hasNext()) {
             boolean found = false;
+            BlockPos current = boxIterator.getCurrent();
+            IBlockState state = getStateCache().getBlockState(current);
 
-            if (drillPos.squareDistanceTo(new Vec3d(boxIterator.getCurrent())) > 2) {
-                currentTask = new TaskMoveDrill(drillPos, new Vec3d(boxIterator.getCurrent()));
+            if (drillPos.squareDistanceTo(new Vec3d(current)) > 2) {
+                currentTask = new TaskMoveDrill(drillPos, new Vec3d(current));
                 found = true;
-            } else if (!world.isAirBlock(boxIterator.getCurrent()) && !canSkip(boxIterator.getCurrent())) {
-                if (!canNotMine(boxIterator.getCurrent())) {
-                    currentTask = new TaskBreakBlock(boxIterator.getCurrent());
+            } else if (!state.getBlock().isAir(state, world, current) && !canSkip(state)) {
+                if (!canNotMine(state)) {
+                    currentTask = new TaskBreakBlock(current);
                     found = true;
                 }
             } else {
                 found = true;
-                BlockPos next = boxIterator.advance();
+                boxIterator.advance();
+                skipUnmineable();
+                BlockPos next = boxIterator.getCurrent();
                 if (next == null) {
                     currentTask = null;
                 } else {
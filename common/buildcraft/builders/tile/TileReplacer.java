@@ -63,8 +63,7 @@ public class TileReplacer extends TileBC_Neptune implements ITickable {
                         newBlueprint.replace(from, to);
                         Header nHeader = new Header(newBlueprint.computeHash(), getOwner().getId(), new Date(), header.name);
                         newBlueprint.header = nHeader;
-                        store.snapshots.add(newBlueprint);
-                        store.markDirty();
+                        store.addSnapshot(newBlueprint);
                         invSnapshot.setStackInSlot(
                             0,
                             BCBuildersItems.snapshot.getUsed(
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.factory;
+
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.common.config.Configuration;
+import net.minecraftforge.common.config.Property;
+import net.minecraftforge.fml.client.event.ConfigChangedEvent.OnConfigChangedEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+import buildcraft.api.BCModules;
+
+import buildcraft.lib.config.EnumRestartRequirement;
+
+import buildcraft.core.BCCoreConfig;
+
+public class BCFactoryConfig {
+    /** The maximum number of blocks that a pump will search from each tick when looking for fluid. */
+    public static int pumpSearchBlocksPerTick = 2048;
+
+    /** The maximum amount of time, in microseconds, that a pump will spend searching for fluid each tick. */
+    public static int pumpSearchMicrosPerTick = 500;
+
+    private static Property propPumpSearchBlocksPerTick;
+    private static Property propPumpSearchMicrosPerTick;
+
+    public static void preInit() {
+        Configuration config = BCCoreConfig.config;
+        EnumRestartRequirement none = EnumRestartRequirement.NONE;
+
+        propPumpSearchBlocksPerTick = config.get("general", "pumpSearchBlocksPerTick", pumpSearchBlocksPerTick);
+        propPumpSearchBlocksPerTick.setComment("The maximum number of blocks that each pump will search from every tick when looking for fluid.");
+        propPumpSearchBlocksPerTick.setMinValue(16);
+        none.setTo(propPumpSearchBlocksPerTick);
+
+        propPumpSearchMicrosPerTick = config.get("general", "pumpSearchMicrosPerTick", pumpSearchMicrosPerTick);
+        propPumpSearchMicrosPerTick.setComment("The maximum amount of time, in microseconds, that each pump will spend searching for fluid every tick.");
+        propPumpSearchMicrosPerTick.setMinValue(10).setMaxValue(50_000);
+        none.setTo(propPumpSearchMicrosPerTick);
+
+        reloadConfig(EnumRestartRequirement.GAME);
+        MinecraftForge.EVENT_BUS.register(BCFactoryConfig.class);
+    }
+
+    public static void reloadConfig(EnumRestartRequirement restarted) {
+        pumpSearchBlocksPerTick = Math.max(16, propPumpSearchBlocksPerTick.getInt());
+        pumpSearchMicrosPerTick = Math.max(10, propPumpSearchMicrosPerTick.getInt());
+    }
+
+    @SubscribeEvent
+    public static void onConfigChange(OnConfigChangedEvent cce) {
+        if (BCModules.isBcMod(cce.getModID())) {
+            reloadConfig(EnumRestartRequirement.NONE);
+        }
+    }
+}
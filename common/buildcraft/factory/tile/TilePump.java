@@ -7,18 +7,7 @@
 package buildcraft.factory.tile;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Set;
-
-import com.google.common.collect.ImmutableList;
 
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.EnumFacing;
@@ -40,19 +29,22 @@ import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.FluidUtilBC;
 import buildcraft.lib.mj.MjRedstoneBatteryReceiver;
 import buildcraft.lib.net.PacketBufferBC;
+import buildcraft.lib.world.BlockStateCache;
 
 import buildcraft.factory.BCFactoryBlocks;
+import buildcraft.factory.BCFactoryConfig;
+import buildcraft.factory.util.FluidPathTree;
 
 public class TilePump extends TileMiner {
+    /** The minimum number of ticks between full rebuilds of the queue when there is nothing left to drain. */
+    private static final int REBUILD_INTERVAL = 100;
+
     private final Tank tank = new Tank("tank", 16 * Fluid.BUCKET_VOLUME, this);
     private boolean queueBuilt = false;
-    private Queue<BlockPos> queue = new PriorityQueue<>(
-        Comparator.<BlockPos, Integer>comparing(blockPos ->
-            (blockPos.getX() - pos.getX()) * (blockPos.getX() - pos.getX()) +
-                (blockPos.getZ() - pos.getZ()) * (blockPos.getZ() - pos.getZ())
-        ).reversed()
-    );
-    private Map<BlockPos, List<BlockPos>> paths = new HashMap<>();
+    private final FluidPathTree paths = new FluidPathTree(64);
+    /** The world time that the queue was last fully rebuilt at, so that a pump with nothing left to drain doesn't
+     * rebuild it every tick. */
+    private long lastRebuild = -REBUILD_INTERVAL;
 
     public TilePump() {
         tank.setCanFill(false);
@@ -64,63 +56,32 @@ public class TilePump extends TileMiner {
         return new MjRedstoneBatteryReceiver(battery);
     }
 
+    /** Clears the queue and starts searching again from the first fluid block below the pump. The search itself is
+     * done a bit at a time by {@link #searchQueue()}. */
     private void buildQueue() {
         world.profiler.startSection("prepare");
-        queue.clear();
         paths.clear();
-        Set<BlockPos> checked = new HashSet<>();
-        List<BlockPos> nextPosesToCheck = new ArrayList<>();
-        Fluid fluid = null;
+        lastRebuild = world.getTotalWorldTime();
         for (BlockPos posToCheck = pos.down(); posToCheck.getY() > 0; posToCheck = posToCheck.down()) {
-            if (BlockUtil.getFluidWithFlowing(world, posToCheck) != null) {
-                fluid = BlockUtil.getFluidWithFlowing(world, posToCheck);
-                nextPosesToCheck.add(posToCheck);
-                paths.put(posToCheck, Collections.singletonList(posToCheck));
-                if (BlockUtil.getFluid(world, posToCheck) != null) {
-                    queue.add(posToCheck);
-                }
+            Fluid fluid = BlockUtil.getFluidWithFlowing(world, posToCheck);
+            if (fluid != null) {
+                paths.start(world, pos, posToCheck, fluid);
                 break;
             } else if (!world.isAirBlock(posToCheck) && world.getBlockState(posToCheck).getBlock() != BCFactoryBlocks.tube) {
                 break;
             }
         }
-        if (nextPosesToCheck.isEmpty()) {
-            world.profiler.endSection();
-            return;
-        }
-        world.profiler.endStartSection("build");
-        while (!nextPosesToCheck.isEmpty()) {
-            List<BlockPos> nextPosesToCheckCopy = new ArrayList<>(nextPosesToCheck);
-            nextPosesToCheck.clear();
-            for (BlockPos posToCheck : nextPosesToCheckCopy) {
-                for (EnumFacing side : new EnumFacing[] {
-                    EnumFacing.UP,
-                    EnumFacing.NORTH,
-                    EnumFacing.SOUTH,
-                    EnumFacing.WEST,
-                    EnumFacing.EAST
-                }) {
-                    BlockPos offsetPos = posToCheck.offset(side);
-                    if ((offsetPos.getX() - pos.getX()) * (offsetPos.getX() - pos.getX()) +
-                        (offsetPos.getZ() - pos.getZ()) * (offsetPos.getZ() - pos.getZ()) > 64 * 64) {
-                        continue;
-                    }
-                    if (!checked.contains(offsetPos)) {
-                        if (BlockUtil.getFluidWithFlowing(world, offsetPos) == fluid) {
-                            ImmutableList.Builder<BlockPos> pathBuilder = new ImmutableList.Builder<>();
-                            pathBuilder.addAll(paths.get(posToCheck));
-                            pathBuilder.add(offsetPos);
-                            paths.put(offsetPos, pathBuilder.build());
-                            if (BlockUtil.getFluid(world, offsetPos) != null) {
-                                queue.add(offsetPos);
-                            }
-                            nextPosesToCheck.add(offsetPos);
-                        }
-                        checked.add(offsetPos);
-                    }
-                }
-            }
-        }
+        world.profiler.endSection();
+    }
+
+    /** Carries on searching for fluid blocks (either from a new queue, or from around blocks that were removed from it)
+     * until this tick's budget runs out. */
+    private void searchQueue() {
+        world.profiler.startSection("search");
+        // A new cache every tick, as nothing changes while searching
+        BlockStateCache states = new BlockStateCache(world);
+        long maxNanos = BCFactoryConfig.pumpSearchMicrosPerTick * 1000L;
+        paths.search(world, states, BCFactoryConfig.pumpSearchBlocksPerTick, maxNanos);
         world.profiler.endSection();
     }
 
@@ -130,8 +91,9 @@ public class TilePump extends TileMiner {
     }
 
     private void nextPos() {
-        while (!queue.isEmpty()) {
-            currentPos = queue.poll();
+        int node;
+        while ((node = paths.pollSource()) != FluidPathTree.NO_NODE) {
+            currentPos = paths.getPos(node);
             if (canDrain(currentPos)) {
                 updateLength();
                 return;
@@ -150,9 +112,14 @@ public class TilePump extends TileMiner {
 
     @Override
     public void update() {
-        if (!queueBuilt && !world.isRemote) {
-            buildQueue();
-            queueBuilt = true;
+        if (!world.isRemote) {
+            if (!queueBuilt) {
+                buildQueue();
+                queueBuilt = true;
+            }
+            if (paths.hasOpenNodes()) {
+                searchQueue();
+            }
         }
 
         super.update();
@@ -169,14 +136,12 @@ public class TilePump extends TileMiner {
                 return;
             }
             long target = 10 * MjAPI.MJ;
-            if (currentPos != null && paths.containsKey(currentPos)) {
+            int node = currentPos == null ? FluidPathTree.NO_NODE : paths.getNode(currentPos);
+            if (node != FluidPathTree.NO_NODE) {
                 progress += battery.extractPower(0, target - progress);
                 if (progress >= target) {
                     FluidStack drain = BlockUtil.drainBlock(world, currentPos, false);
-                    if (drain != null &&
-                        paths.get(currentPos).stream()
-                            .allMatch(blockPos -> BlockUtil.getFluidWithFlowing(world, blockPos) != null) &&
-                        canDrain(currentPos)) {
+                    if (drain != null && paths.validatePath(world, node, world.getTotalWorldTime()) && canDrain(currentPos)) {
                         tank.fillInternal(drain, true);
                         progress = 0;
                         int count = 0;
@@ -192,15 +157,21 @@ public class TilePump extends TileMiner {
                         }
                         if (count < 4) {
                             BlockUtil.drainBlock(world, currentPos, true);
+                            // Anything that was only reachable through the drained block has to be found again
+                            paths.remove(node);
                             nextPos();
                         }
                     } else {
-                        buildQueue();
+                        // If the path was broken then only the part of the tree below the break has been removed,
+                        // and will be searched for again over the next few ticks
                         nextPos();
                     }
                     prevResult = true;
                 }
-            } else {
+            } else if (paths.getSourceCount() > 0) {
+                // Drain whatever has been found while the search carries on
+                nextPos();
+            } else if (!paths.hasOpenNodes() && world.getTotalWorldTime() - lastRebuild >= REBUILD_INTERVAL) {
                 buildQueue();
                 nextPos();
             }
@@ -211,12 +182,15 @@ public class TilePump extends TileMiner {
     public void readFromNBT(NBTTagCompound nbt) {
         super.readFromNBT(nbt);
         tank.deserializeNBT(nbt.getCompoundTag("tank"));
+        paths.readFromNBT(nbt.getCompoundTag("paths"));
+        queueBuilt = !paths.isEmpty();
     }
 
     @Override
     public NBTTagCompound writeToNBT(NBTTagCompound nbt) {
         super.writeToNBT(nbt);
         nbt.setTag("tank", tank.serializeNBT());
+        nbt.setTag("paths", paths.writeToNBT());
         return nbt;
     }
 
@@ -250,6 +224,8 @@ public class TilePump extends TileMiner {
     public void getDebugInfo(List<String> left, List<String> right, EnumFacing side) {
         super.getDebugInfo(left, right, side);
         left.add("fluid = " + tank.getDebugString());
-        left.add("queue size = " + queue.size());
+        left.add("queue size = " + paths.getSourceCount());
+        left.add("path nodes = " + paths.size());
+        left.add("searching = " + paths.getOpenCount());
     }
 }
@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.factory.util;
+
+import java.util.Arrays;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import net.minecraftforge.fluids.Fluid;
+import net.minecraftforge.fluids.FluidRegistry;
+
+import buildcraft.api.core.BCLog;
+
+import buildcraft.lib.misc.BlockUtil;
+import buildcraft.lib.world.BlockStateCache;
+
+/** Every fluid block that a pump can reach, stored as a tree of parent pointers rather than as a full path for every
+ * block. Each node's parent is the block that it was found from, so the path from any block back to the pump is found
+ * by following the parents up to the root. Positions are stored as {@link BlockPos#toLong()} in flat arrays, so even an
+ * ocean only takes a few arrays of primitives.
+ * <p>
+ * When a block in a path stops being fluid only the nodes below it are removed, and the search then carries on from
+ * the nodes next to them to find any blocks that can still be reached another way. */
+public class FluidPathTree {
+    public static final int NO_NODE = -1;
+
+    /** The faces that the search goes in. The pump can't pull fluid up from below the first block it finds. */
+    private static final EnumFacing[] SEARCH_FACES = {
+        EnumFacing.UP,
+        EnumFacing.NORTH,
+        EnumFacing.SOUTH,
+        EnumFacing.WEST,
+        EnumFacing.EAST
+    };
+
+    /** The faces that a node's parent could be in: the opposites of {@link #SEARCH_FACES}. */
+    private static final EnumFacing[] PARENT_FACES = {
+        EnumFacing.DOWN,
+        EnumFacing.NORTH,
+        EnumFacing.SOUTH,
+        EnumFacing.WEST,
+        EnumFacing.EAST
+    };
+
+    // Same layout as BlockPos.toLong()
+    private static final int BITS_X = 26, BITS_Y = 12, BITS_Z = 26, SHIFT_X = 38, SHIFT_Y = 26;
+
+    private final int maxDistanceSq;
+    private int originX, originZ;
+    private Fluid fluid = null;
+
+    private long[] positions = new long[64];
+    private int[] parents = new int[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    /** The world time that each node's path was last checked at, so that paths with a common parent are only checked
+     * once per tick. */
+    private long[] checkedAt = new long[64];
+    /** The number of nodes in the arrays, including removed ones. */
+    private int nodeCount = 0;
+    /** Maps every live position to its node. A node has been removed if it isn't in here. */
+    private final TLongIntHashMap indices = new TLongIntHashMap(64, 0.5f, Long.MIN_VALUE, NO_NODE);
+
+    /** The nodes whose neighbours haven't been searched yet, in the order they were found. */
+    private final TIntArrayList open = new TIntArrayList();
+    private int openStart = 0;
+    /** A binary heap of every node that can be drained, furthest away (horizontally) from the origin first. */
+    private final TIntArrayList sources = new TIntArrayList();
+
+    public FluidPathTree(int maxDistance) {
+        if (maxDistance < 0 || maxDistance >= 512) {
+            // Saved positions only have 10 bits for each horizontal offset
+            throw new IllegalArgumentException("Invalid maxDistance " + maxDistance);
+        }
+        this.maxDistanceSq = maxDistance * maxDistance;
+    }
+
+    /** Removes every node. */
+    public void clear() {
+        nodeCount = 0;
+        indices.clear();
+        open.resetQuick();
+        openStart = 0;
+        sources.resetQuick();
+        fluid = null;
+    }
+
+    /** Clears this tree and starts a new one from the given root block.
+     *
+     * @param origin The position that the search distance (and the drain order) is measured from.
+     * @param root The first block of fluid. */
+    public void start(World world, BlockPos origin, BlockPos root, Fluid fluid) {
+        clear();
+        this.originX = origin.getX();
+        this.originZ = origin.getZ();
+        this.fluid = fluid;
+        addNode(world, root, NO_NODE);
+    }
+
+    public boolean isEmpty() {
+        return indices.isEmpty();
+    }
+
+    public int size() {
+        return indices.size();
+    }
+
+    public Fluid getFluid() {
+        return fluid;
+    }
+
+    /** @return The node at the given position, or {@link #NO_NODE} if the position isn't in the tree. */
+    public int getNode(BlockPos pos) {
+        return indices.get(pos.toLong());
+    }
+
+    public BlockPos getPos(int node) {
+        return BlockPos.fromLong(positions[node]);
+    }
+
+    private boolean isLive(int node) {
+        return indices.get(positions[node]) == node;
+    }
+
+    private static int unpackX(long pos) {
+        return (int) (pos << (64 - SHIFT_X - BITS_X) >> (64 - BITS_X));
+    }
+
+    private static int unpackY(long pos) {
+        return (int) (pos << (64 - SHIFT_Y - BITS_Y) >> (64 - BITS_Y));
+    }
+
+    private static int unpackZ(long pos) {
+        return (int) (pos << (64 - BITS_Z) >> (64 - BITS_Z));
+    }
+
+    private int getDistanceSq(long pos) {
+        int dx = unpackX(pos) - originX;
+        int dz = unpackZ(pos) - originZ;
+        return dx * dx + dz * dz;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > positions.length) {
+            int newLength = Math.max(capacity, positions.length * 2);
+            positions = Arrays.copyOf(positions, newLength);
+            parents = Arrays.copyOf(parents, newLength);
+            firstChild = Arrays.copyOf(firstChild, newLength);
+            nextSibling = Arrays.copyOf(nextSibling, newLength);
+            checkedAt = Arrays.copyOf(checkedAt, newLength);
+        }
+    }
+
+    /** Sets up the given node and adds it to its parent's children. */
+    private void setNode(int node, long packed, int parent) {
+        positions[node] = packed;
+        parents[node] = parent;
+        firstChild[node] = NO_NODE;
+        checkedAt[node] = Long.MIN_VALUE;
+        if (parent == NO_NODE) {
+            nextSibling[node] = NO_NODE;
+        } else {
+            nextSibling[node] = firstChild[parent];
+            firstChild[parent] = node;
+        }
+        indices.put(packed, node);
+    }
+
+    private int addNode(World world, BlockPos pos, int parent) {
+        int node = nodeCount++;
+        ensureCapacity(nodeCount);
+        setNode(node, pos.toLong(), parent);
+        open.add(node);
+        if (isSource(world, pos)) {
+            pushSource(node);
+        }
+        return node;
+    }
+
+    /** @return True if the fluid at the given position can be drained. */
+    protected boolean isSource(World world, BlockPos pos) {
+        return BlockUtil.getFluid(world, pos) != null;
+    }
+
+    /** @return The fluid at the given position, including flowing fluid that can't be drained. */
+    protected Fluid getFluidWithFlowing(World world, BlockPos pos) {
+        return BlockUtil.getFluidWithFlowing(world, pos);
+    }
+
+    // Searching
+
+    /** @return True if there are still nodes whose neighbours need to be searched. */
+    public boolean hasOpenNodes() {
+        return openStart < open.size();
+    }
+
+    public int getOpenCount() {
+        return open.size() - openStart;
+    }
+
+    /** Searches outwards from the open nodes, in the order that they were found, until there are none left or the
+     * given budget runs out. Searching can carry on from where it stopped by calling this again, so a big lake can be
+     * searched over several ticks (while the blocks already found are drained).
+     *
+     * @param states A cache for the current tick only - the world can change between calls.
+     * @param maxNodes The maximum number of open nodes to search from.
+     * @param maxNanos The maximum amount of time to spend searching, in nanoseconds. */
+    public void search(World world, BlockStateCache states, int maxNodes, long maxNanos) {
+        long start = System.nanoTime();
+        BlockPos.MutableBlockPos next = new BlockPos.MutableBlockPos();
+        int searched = 0;
+        while (openStart < open.size()) {
+            if (searched >= maxNodes || ((searched & 63) == 63 && System.nanoTime() - start >= maxNanos)) {
+                break;
+            }
+            searched++;
+            int node = open.getQuick(openStart++);
+            if (!isLive(node)) {
+                continue;
+            }
+            long packed = positions[node];
+            int x = unpackX(packed);
+            int y = unpackY(packed);
+            int z = unpackZ(packed);
+            for (EnumFacing face : SEARCH_FACES) {
+                next.setPos(x + face.getFrontOffsetX(), y + face.getFrontOffsetY(), z + face.getFrontOffsetZ());
+                int dx = next.getX() - originX;
+                int dz = next.getZ() - originZ;
+                if (dx * dx + dz * dz > maxDistanceSq || indices.containsKey(next.toLong())) {
+                    continue;
+                }
+                if (states.getFluidWithFlowing(next) == fluid) {
+                    addNode(world, next.toImmutable(), node);
+                }
+            }
+        }
+        if (openStart == open.size()) {
+            open.resetQuick();
+            openStart = 0;
+        }
+        if (nodeCount >= 256 && indices.size() * 2 <= nodeCount) {
+            compact();
+        }
+    }
+
+    // Validation
+
+    /** Checks that every block between the given node and the root is still the right fluid. Nodes that have already
+     * been checked at the given time are trusted, so draining lots of blocks in the same area doesn't check the same
+     * paths over and over again.
+     * <p>
+     * If a block isn't fluid any more then that node and all of the nodes below it are {@link #remove(int) removed}, so
+     * {@link #search(World, BlockStateCache, int, long)} should be called afterwards to find any that can be reached
+     * another way.
+     *
+     * @return True if the path is still valid. */
+    public boolean validatePath(World world, int node, long now) {
+        for (int n = node; n != NO_NODE; n = parents[n]) {
+            if (checkedAt[n] == now) {
+                return true;
+            }
+            if (getFluidWithFlowing(world, BlockPos.fromLong(positions[n])) != fluid) {
+                remove(n);
+                return false;
+            }
+            checkedAt[n] = now;
+        }
+        return true;
+    }
+
+    /** Removes the given node and every node below it, and queues up the remaining nodes next to them so that the next
+     * {@link #search(World, BlockStateCache, int, long)} can find them again if they can be reached another way. */
+    public void remove(int node) {
+        if (!isLive(node)) {
+            return;
+        }
+        int parent = parents[node];
+        if (parent != NO_NODE) {
+            if (firstChild[parent] == node) {
+                firstChild[parent] = nextSibling[node];
+            } else {
+                int sibling = firstChild[parent];
+                while (nextSibling[sibling] != node) {
+                    sibling = nextSibling[sibling];
+                }
+                nextSibling[sibling] = nextSibling[node];
+            }
+        }
+
+        TIntArrayList removed = new TIntArrayList();
+        removed.add(node);
+        for (int i = 0; i < removed.size(); i++) {
+            int n = removed.getQuick(i);
+            indices.remove(positions[n]);
+            for (int child = firstChild[n]; child != NO_NODE; child = nextSibling[child]) {
+                removed.add(child);
+            }
+        }
+
+        BlockPos.MutableBlockPos neighbour = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < removed.size(); i++) {
+            long packed = positions[removed.getQuick(i)];
+            int x = unpackX(packed);
+            int y = unpackY(packed);
+            int z = unpackZ(packed);
+            for (EnumFacing face : PARENT_FACES) {
+                neighbour.setPos(x + face.getFrontOffsetX(), y + face.getFrontOffsetY(), z + face.getFrontOffsetZ());
+                int other = indices.get(neighbour.toLong());
+                if (other != NO_NODE) {
+                    open.add(other);
+                }
+            }
+        }
+    }
+
+    /** Moves every live node down to fill the gaps left by removed ones. Removed nodes are left in the arrays until they
+     * make up most of them (or the tree is saved). */
+    private void compact() {
+        int[] remap = new int[nodeCount];
+        int next = 0;
+        // Parents are always added before their children, so they are always moved first
+        for (int n = 0; n < nodeCount; n++) {
+            if (!isLive(n)) {
+                remap[n] = NO_NODE;
+                continue;
+            }
+            int to = next++;
+            remap[n] = to;
+            long checked = checkedAt[n];
+            setNode(to, positions[n], parents[n] == NO_NODE ? NO_NODE : remap[parents[n]]);
+            checkedAt[to] = checked;
+        }
+        nodeCount = next;
+
+        TIntArrayList oldOpen = new TIntArrayList(open.size() - openStart);
+        for (int i = openStart; i < open.size(); i++) {
+            oldOpen.add(open.getQuick(i));
+        }
+        open.resetQuick();
+        openStart = 0;
+        for (int i = 0; i < oldOpen.size(); i++) {
+            int n = remap[oldOpen.getQuick(i)];
+            if (n != NO_NODE) {
+                open.add(n);
+            }
+        }
+
+        TIntArrayList oldSources = new TIntArrayList(sources);
+        sources.resetQuick();
+        for (int i = 0; i < oldSources.size(); i++) {
+            int n = remap[oldSources.getQuick(i)];
+            if (n != NO_NODE) {
+                pushSource(n);
+            }
+        }
+    }
+
+    // Saving
+
+    /** Positions are saved relative to the origin, to fit them into a single int each. */
+    private int packRelative(long pos) {
+        int dx = unpackX(pos) - originX;
+        int dz = unpackZ(pos) - originZ;
+        return ((dx & 0x3FF) << 22) | ((dz & 0x3FF) << 12) | (unpackY(pos) & 0xFFF);
+    }
+
+    private long unpackRelative(int packed) {
+        int x = originX + (packed >> 22);
+        int z = originZ + (packed << 10 >> 22);
+        return new BlockPos(x, packed & 0xFFF, z).toLong();
+    }
+
+    /** Saves every node, along with the open ones so that an unfinished search can carry on after being loaded. */
+    public NBTTagCompound writeToNBT() {
+        NBTTagCompound nbt = new NBTTagCompound();
+        if (fluid == null || isEmpty()) {
+            return nbt;
+        }
+        if (nodeCount != indices.size()) {
+            compact();
+        }
+        int[] nodes = new int[nodeCount];
+        for (int n = 0; n < nodeCount; n++) {
+            nodes[n] = packRelative(positions[n]);
+        }
+        nbt.setString("fluid", FluidRegistry.getFluidName(fluid));
+        nbt.setInteger("originX", originX);
+        nbt.setInteger("originZ", originZ);
+        nbt.setIntArray("nodes", nodes);
+        nbt.setIntArray("parents", Arrays.copyOf(parents, nodeCount));
+        nbt.setIntArray("open", open.toArray(openStart, open.size() - openStart));
+        nbt.setIntArray("sources", sources.toArray());
+        return nbt;
+    }
+
+    public void readFromNBT(NBTTagCompound nbt) {
+        clear();
+        Fluid savedFluid = FluidRegistry.getFluid(nbt.getString("fluid"));
+        int[] nodes = nbt.getIntArray("nodes");
+        int[] savedParents = nbt.getIntArray("parents");
+        if (savedFluid == null || nodes.length == 0 || savedParents.length != nodes.length) {
+            return;
+        }
+        fluid = savedFluid;
+        originX = nbt.getInteger("originX");
+        originZ = nbt.getInteger("originZ");
+        ensureCapacity(nodes.length);
+        for (int n = 0; n < nodes.length; n++) {
+            int parent = savedParents[n];
+            // Parents always come before their children, which also means that nothing can loop
+            if (parent < NO_NODE || parent >= n || (parent == NO_NODE && n != 0)) {
+                BCLog.logger.warn("[factory.pump] Found an invalid parent " + parent + " for node " + n + ", discarding the saved paths");
+                clear();
+                return;
+            }
+            setNode(n, unpackRelative(nodes[n]), parent);
+        }
+        nodeCount = nodes.length;
+        for (int n : nbt.getIntArray("open")) {
+            if (n >= 0 && n < nodeCount) {
+                open.add(n);
+            }
+        }
+        for (int n : nbt.getIntArray("sources")) {
+            if (n >= 0 && n < nodeCount) {
+                pushSource(n);
+            }
+        }
+    }
+
+    // Sources
+
+    public int getSourceCount() {
+        return sources.size();
+    }
+
+    /** @return The next node that can be drained (furthest from the origin first), or {@link #NO_NODE} if there are
+     *         none left. The returned node is still in the tree, but won't be returned again unless it is removed and
+     *         found again. */
+    public int pollSource() {
+        while (!sources.isEmpty()) {
+            int node = sources.getQuick(0);
+            int last = sources.removeAt(sources.size() - 1);
+            if (!sources.isEmpty()) {
+                sources.setQuick(0, last);
+                siftDown(0);
+            }
+            if (isLive(node)) {
+                return node;
+            }
+        }
+        return NO_NODE;
+    }
+
+    private void pushSource(int node) {
+        sources.add(node);
+        int index = sources.size() - 1;
+        int distance = getDistanceSq(positions[node]);
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            int parentNode = sources.getQuick(parent);
+            if (getDistanceSq(positions[parentNode]) >= distance) {
+                break;
+            }
+            sources.setQuick(index, parentNode);
+            index = parent;
+        }
+        sources.setQuick(index, node);
+    }
+
+    private void siftDown(int index) {
+        int size = sources.size();
+        int node = sources.getQuick(index);
+        int distance = getDistanceSq(positions[node]);
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            int childDistance = getDistanceSq(positions[sources.getQuick(child)]);
+            if (child + 1 < size) {
+                int rightDistance = getDistanceSq(positions[sources.getQuick(child + 1)]);
+                if (rightDistance > childDistance) {
+                    child++;
+                    childDistance = rightDistance;
+                }
+            }
+            if (childDistance <= distance) {
+                break;
+            }
+            sources.setQuick(index, sources.getQuick(child));
+            index = child;
+        }
+        sources.setQuick(index, node);
+    }
+}
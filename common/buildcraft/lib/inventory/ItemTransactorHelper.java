@@ -49,6 +49,11 @@ public class ItemTransactorHelper {
             }
             return NoSpaceTransactor.INSTANCE;
         }
+        return getTransactor(handler);
+    }
+
+    @Nonnull
+    public static IItemTransactor getTransactor(@Nonnull IItemHandler handler) {
         if (handler instanceof IItemTransactor) {
             return (IItemTransactor) handler;
         }
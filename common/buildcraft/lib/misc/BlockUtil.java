@@ -244,7 +244,11 @@ public final class BlockUtil {
     }
 
     public static Fluid getFluidWithFlowing(World world, BlockPos pos) {
-        IBlockState blockState = world.getBlockState(pos);
+        return getFluidWithFlowing(world.getBlockState(pos));
+    }
+
+    /** Same as {@link #getFluidWithFlowing(World, BlockPos)}, for when the state has already been looked up. */
+    public static Fluid getFluidWithFlowing(IBlockState blockState) {
         Block block = blockState.getBlock();
         if (block == Blocks.FLOWING_WATER) {
             return FluidRegistry.WATER;
@@ -6,10 +6,15 @@
 
 package buildcraft.lib.misc;
 
+import javax.annotation.Nullable;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 public class ChunkUtil {
     private static final ThreadLocal<Chunk> lastChunk = new ThreadLocal<>();
@@ -46,4 +51,36 @@ public class ChunkUtil {
         }
         return chunk;
     }
+
+    /** @return The block state at the given position, read directly out of the chunk's section storage, or null if
+     *         the chunk isn't loaded. This never loads or generates a chunk. */
+    @Nullable
+    public static IBlockState getBlockStateIfLoaded(World world, BlockPos pos) {
+        Chunk chunk = getChunk(world, pos, false);
+        if (chunk == null) {
+            return null;
+        }
+        int y = pos.getY();
+        if (y < 0 || y >= 256) {
+            return Blocks.AIR.getDefaultState();
+        }
+        ExtendedBlockStorage section = chunk.getBlockStorageArray()[y >> 4];
+        if (section == Chunk.NULL_BLOCK_STORAGE || section.isEmpty()) {
+            return Blocks.AIR.getDefaultState();
+        }
+        return section.get(pos.getX() & 15, y & 15, pos.getZ() & 15);
+    }
+
+    /** @return True if the 16x16x16 section at the given section coordinates is loaded and only contains air. */
+    public static boolean isSectionEmpty(World world, int chunkX, int sectionY, int chunkZ) {
+        if (sectionY < 0 || sectionY >= 16) {
+            return true;
+        }
+        Chunk chunk = getChunk(world, chunkX, chunkZ, false);
+        if (chunk == null) {
+            return false;
+        }
+        ExtendedBlockStorage section = chunk.getBlockStorageArray()[sectionY];
+        return section == Chunk.NULL_BLOCK_STORAGE || section.isEmpty();
+    }
 }
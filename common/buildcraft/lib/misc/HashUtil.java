@@ -22,16 +22,13 @@ import net.minecraft.nbt.NBTTagList;
 
 public class HashUtil {
     public static final int DIGEST_LENGTH = 32;
-    private static final MessageDigest SHA_256;
+    /** {@link MessageDigest}s are not thread safe, and snapshots are hashed on worker threads, so each thread needs its
+     * own. */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(HashUtil::createSha256);
     private static final MethodHandle HANDLE_NBT_WRITE;
 
     static {
-        try {
-            SHA_256 = MessageDigest.getInstance("sha-256");
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException(e);
-        }
-        int realLength = SHA_256.getDigestLength();
+        int realLength = SHA_256.get().getDigestLength();
         if (realLength != DIGEST_LENGTH) {
             // Just in case
             throw new IllegalStateException("Digest length of sha-256 is meant to be 32, but returned " + realLength);
@@ -62,8 +59,16 @@ public class HashUtil {
         computeHash(nbt);
     }
 
+    private static MessageDigest createSha256() {
+        try {
+            return MessageDigest.getInstance("sha-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static byte[] computeHash(byte[] data) {
-        return SHA_256.digest(data);
+        return SHA_256.get().digest(data);
     }
 
     public static byte[] computeHash(NBTTagCompound nbt) {
@@ -76,11 +81,11 @@ public class HashUtil {
         } catch (IOException io) {
             throw new RuntimeException("Failed to write to a perfectly good DigestOutputStream!", io);
         }
-        return SHA_256.digest();
+        return SHA_256.get().digest();
     }
 
     public static DigestOutputStream createDigestStream() {
-        return new DigestOutputStream(ByteStreams.nullOutputStream(), SHA_256);
+        return new DigestOutputStream(ByteStreams.nullOutputStream(), SHA_256.get());
     }
 
     public static String convertHashToString(byte[] hash) {
@@ -12,6 +12,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
@@ -31,7 +32,7 @@ import buildcraft.api.core.BCLog;
  * a push 100ms. Each task is watched to make sure that it takes less time to complete that that, and if it takes longer
  * then a warning is logged. */
 public class WorkerThreadUtil {
-    private static final ExecutorService WORKING_POOL, DEPENDANT_WORKING_POOL, MONITORING_POOL;
+    private static final ExecutorService WORKING_POOL, DEPENDANT_WORKING_POOL, LONG_WORKING_POOL, MONITORING_POOL;
     private static final boolean DEBUG = BCDebugging.shouldDebugLog("lib.threads");
 
     static {
@@ -54,6 +55,12 @@ public class WorkerThreadUtil {
         factory = new BasicThreadFactory.Builder().daemon(false).namingPattern("BuildCraft Dependant Worker Thread %d").build();
         DEPENDANT_WORKING_POOL = new ThreadPoolExecutor(0, max, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), factory, rejectHandler);
 
+        // Long tasks queue up rather than running on the caller, as they would stall it for far too long
+        factory = new BasicThreadFactory.Builder().daemon(true).priority(Thread.MIN_PRIORITY).namingPattern("BuildCraft Long Worker Thread %d").build();
+        ThreadPoolExecutor longPool = new ThreadPoolExecutor(max, max, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+        longPool.allowCoreThreadTimeOut(true);
+        LONG_WORKING_POOL = longPool;
+
         if (DEBUG) {
             factory = new BasicThreadFactory.Builder().daemon(false).namingPattern("BuildCraft Monitoring Thread %d").build();
             MONITORING_POOL = Executors.newCachedThreadPool(factory);
@@ -95,6 +102,14 @@ public class WorkerThreadUtil {
         }
     }
 
+    /** Executes a task that could take a lot longer than the 100ms allowed by {@link #executeWorkTask(Callable)}, such as
+     * a whole blueprint being processed. These have their own pool of threads, so they never hold up the shorter
+     * tasks, and are queued up (rather than run on the calling thread) if every thread is already busy. Long tasks are
+     * not monitored, and any exceptions are only reported through the returned future. */
+    public static <T> Future<T> executeLongTask(Callable<T> task) {
+        return LONG_WORKING_POOL.submit(task);
+    }
+
     /** Executes a task that is dependent on OTHER tasks run in {@link #executeWorkTask(Runnable)}. This is NOT
      * monitored, so you should make these tasks "delegate managers" rather than actual workers themselves. */
     public static void executeDependantTask(Runnable task) {
@@ -12,6 +12,7 @@ import javax.annotation.Nonnull;
 
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.EnumFacing;
+import net.minecraft.util.EnumFacing.Axis;
 import net.minecraft.util.EnumFacing.AxisDirection;
 import net.minecraft.util.math.BlockPos;
 
@@ -144,6 +145,45 @@ public class BoxIterator implements Iterator<BlockPos> {
         return getCurrent();
     }
 
+    /** Skips every remaining position that has the same value on the third axis as the current one, leaving this in
+     * exactly the same state as calling {@link #advance()} until the third axis changed would have.
+     *
+     * @return The first position of the next layer, or null if there isn't one. */
+    public BlockPos skipThird() {
+        if (current == null) {
+            return advance();
+        }
+        Axis secondAxis = order.second.getAxis();
+        int value = VecUtil.getValue(current, secondAxis);
+        int rows;
+        if (order.second.getAxisDirection() == AxisDirection.POSITIVE) {
+            rows = VecUtil.getValue(max, secondAxis) - value + 1;
+        } else {
+            rows = value - VecUtil.getValue(min, secondAxis) + 1;
+        }
+        if (invert) {
+            // The first axis is inverted once for every row that is skipped
+            if ((rows & 1) == 1) {
+                order = order.invertFirst();
+            }
+            order = order.invertSecond();
+        }
+        current = replace(current, order.first);
+        current = replace(current, order.second);
+        current = increment(current, order.third);
+        if (shouldReset(current, order.third)) {
+            if (repeat) {
+                if (invert) {
+                    order = order.invertThird();
+                }
+                current = replace(current, order.third);
+            } else {
+                current = null;
+            }
+        }
+        return getCurrent();
+    }
+
     private static BlockPos increment(BlockPos pos, EnumFacing facing) {
         int diff = facing.getAxisDirection().getOffset();
         int value = VecUtil.getValue(pos, facing.getAxis()) + diff;
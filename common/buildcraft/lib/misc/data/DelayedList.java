@@ -6,79 +6,242 @@
 
 package buildcraft.lib.misc.data;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.function.Supplier;
-
-import com.google.common.collect.ImmutableList;
 
 /** Implements a delayed list of something- stuff that can be postponed for later retrieval. A specialised ordered queue
- * really. */
+ * really.
+ * <p>
+ * Internally this is a fixed size timing wheel: every delay less than the capacity maps directly onto a reused bucket,
+ * and anything further out than that is kept in a single overflow bucket until it comes within range of the wheel. */
 public class DelayedList<E> {
-    protected final List<List<E>> elements;
-    private final Supplier<List<E>> innerListSupplier;
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final List<E>[] buckets;
+    private final int mask;
+    private final List<Overflow<E>> overflow = new ArrayList<>();
+    private final List<List<E>> allElementsView = new AllElementsView();
+
+    /** The list that was returned by the last call to {@link #advance()}. This is swapped back into the wheel (after
+     * being cleared) on the next call, so the wheel never needs to allocate new buckets. */
+    private List<E> spare = new ArrayList<>();
+    private int head = 0;
+    /** The number of times that {@link #advance()} has been called. */
+    private long ticks = 0;
+    /** The smallest {@link Overflow#due} of every element in {@link #overflow}, or {@link Long#MAX_VALUE} if it is
+     * empty. */
+    private long overflowMinDue = Long.MAX_VALUE;
 
     public DelayedList() {
-        this(new ArrayList<>(), ArrayList::new);
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** @param capacity The number of delays that will be held directly in the wheel. This is rounded up to the next
+     *            power of two. Elements with a delay greater than or equal to this are stored in a separate overflow
+     *            bucket, which is slightly slower. */
+    @SuppressWarnings("unchecked")
+    public DelayedList(int capacity) {
+        if (capacity < 2) {
+            capacity = 2;
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        buckets = new List[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        mask = size - 1;
     }
 
+    /** @return A list that can be added to from any thread. Unlike the normal list, {@link #advance()} returns a copy
+     *         of the elements, as the internal list could be reused by another thread as soon as the lock is
+     *         released. */
     public static <E> DelayedList<E> createConcurrent() {
-        return new DelayedList<E>(
-            Collections.synchronizedList(new ArrayList<>()),
-            () -> Collections.synchronizedList(new ArrayList<>())
-        ) {
+        return new DelayedList<E>() {
             @Override
-            public List<E> advance() {
-                synchronized (this.elements) {
-                    return super.advance();
-                }
+            public synchronized List<E> advance() {
+                List<E> current = super.advance();
+                return current.isEmpty() ? Collections.emptyList() : new ArrayList<>(current);
             }
-        };
-    }
 
-    private DelayedList(List<List<E>> actualList, Supplier<List<E>> innerList) {
-        elements = actualList;
-        innerListSupplier = innerList;
+            @Override
+            public synchronized void add(int delay, E element) {
+                super.add(delay, element);
+            }
+
+            @Override
+            public synchronized void clear() {
+                super.clear();
+            }
+        };
     }
 
     /** @return The maximum delay value that any of the elements has. */
     public int getMaxDelay() {
-        return elements.size();
+        if (!overflow.isEmpty()) {
+            long max = 0;
+            for (Overflow<E> o : overflow) {
+                max = Math.max(max, o.due);
+            }
+            return (int) (max - ticks + 1);
+        }
+        for (int i = mask; i >= 0; i--) {
+            if (!buckets[(head + i) & mask].isEmpty()) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /** @return The number of times that {@link #advance()} can be called before it might return a non-empty list, or
+     *         {@link Integer#MAX_VALUE} if this list is empty. */
+    public int getMinDelay() {
+        for (int i = 0; i <= mask; i++) {
+            if (!buckets[(head + i) & mask].isEmpty()) {
+                return i;
+            }
+        }
+        if (overflow.isEmpty()) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(overflowMinDue - ticks, Integer.MAX_VALUE);
     }
 
     /** Advances this list by one, effectively decrementing the delays of every element by one and returning all
      * elements that have a delay of 0.
-     * 
-     * @return The elements that are no longer on a delay. */
+     *
+     * @return The elements that are no longer on a delay. The returned list is owned by this object, and is only valid
+     *         until the next call to {@link #advance()} (except for {@link #createConcurrent()} lists). */
     public List<E> advance() {
-        if (elements.isEmpty()) {
-            return ImmutableList.of();
+        if (overflowMinDue - ticks <= mask) {
+            drainOverflow();
         }
-        return elements.remove(0);
+        List<E> current = buckets[head];
+        spare.clear();
+        buckets[head] = spare;
+        spare = current;
+        head = (head + 1) & mask;
+        ticks++;
+        return current;
+    }
+
+    /** Does the same as calling {@link #advance()} the given number of times and ignoring what it returns, but only
+     * needs to visit each bucket at most once. If the wheel is empty this doesn't need to visit any of them. */
+    public void skip(int count) {
+        if (count <= 0) {
+            return;
+        }
+        int passed = Math.min(count, buckets.length);
+        for (int i = 0; i < passed; i++) {
+            buckets[(head + i) & mask].clear();
+        }
+        head = (head + count) & mask;
+        ticks += count;
+        if (!overflow.isEmpty()) {
+            for (int i = overflow.size() - 1; i >= 0; i--) {
+                if (overflow.get(i).due < ticks) {
+                    int last = overflow.size() - 1;
+                    overflow.set(i, overflow.get(last));
+                    overflow.remove(last);
+                }
+            }
+            drainOverflow();
+        }
+    }
+
+    /** Moves every overflowing element that is now within range of the wheel into it's bucket. */
+    private void drainOverflow() {
+        long min = Long.MAX_VALUE;
+        for (int i = overflow.size() - 1; i >= 0; i--) {
+            Overflow<E> o = overflow.get(i);
+            long delay = o.due - ticks;
+            if (delay <= mask) {
+                buckets[(head + (int) delay) & mask].add(o.element);
+                int last = overflow.size() - 1;
+                overflow.set(i, overflow.get(last));
+                overflow.remove(last);
+            } else if (o.due < min) {
+                min = o.due;
+            }
+        }
+        overflowMinDue = min;
     }
 
     /** Adds an element that will by returned by {@link #advance()} after it has been called delay times.
-     * 
+     *
      * @param delay The number of times that advance needs to be called for the *next* advance to return this element.
      *            Negative numbers default up to 0. */
     public void add(int delay, E element) {
         if (delay < 0) {
             delay = 0;
         }
-        while (elements.size() < delay + 1) {
-            elements.add(innerListSupplier.get());
+        if (delay <= mask) {
+            buckets[(head + delay) & mask].add(element);
+        } else {
+            long due = ticks + delay;
+            overflow.add(new Overflow<>(due, element));
+            if (due < overflowMinDue) {
+                overflowMinDue = due;
+            }
         }
-        elements.get(delay).add(element);
     }
 
-    /** @return The inner data structure used to hold the elements. Most useful for saving the elements for later. */
+    /** @return A view of the inner data structure used to hold the elements. Most useful for saving the elements for
+     *         later. The first {@link #getWheelSize()} lists are ordered by delay, however any elements delayed further
+     *         than that are all returned in a single, final, list. */
     public List<List<E>> getAllElements() {
-        return elements;
+        return allElementsView;
+    }
+
+    /** @return The number of delays that are held directly in the wheel, without overflowing. */
+    public int getWheelSize() {
+        return buckets.length;
     }
 
     /** Removes *all* elements from this list. */
     public void clear() {
-        elements.clear();
+        for (List<E> bucket : buckets) {
+            bucket.clear();
+        }
+        overflow.clear();
+        overflowMinDue = Long.MAX_VALUE;
+    }
+
+    private static final class Overflow<E> {
+        final long due;
+        final E element;
+
+        Overflow(long due, E element) {
+            this.due = due;
+            this.element = element;
+        }
+    }
+
+    private final class AllElementsView extends AbstractList<List<E>> {
+        private final List<E> overflowView = new AbstractList<E>() {
+            @Override
+            public E get(int index) {
+                return overflow.get(index).element;
+            }
+
+            @Override
+            public int size() {
+                return overflow.size();
+            }
+        };
+
+        @Override
+        public List<E> get(int index) {
+            if (index == buckets.length) {
+                return overflowView;
+            }
+            return buckets[(head + index) & mask];
+        }
+
+        @Override
+        public int size() {
+            return buckets.length + (overflow.isEmpty() ? 0 : 1);
+        }
     }
 }
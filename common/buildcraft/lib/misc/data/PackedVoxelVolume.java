@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.misc.data;
+
+import java.util.Arrays;
+
+import net.minecraft.util.Rotation;
+import net.minecraft.util.math.BlockPos;
+
+/** A fixed size volume of small, non-negative integers (such as palette indices) stored in a single flat array of
+ * bit-packed entries. Each entry is only as wide as it needs to be: 1 bit for a simple flag, or
+ * {@link #getBitsFor(int)} bits for a palette.
+ * <p>
+ * Entries are ordered with x changing fastest, then y, then z. This is the same order that snapshots are serialized in,
+ * so whole volumes can be read and written in a single pass. Entries never span two longs, so a few of the top bits in
+ * each long may be unused. */
+public final class PackedVoxelVolume {
+    public final int sizeX, sizeY, sizeZ;
+    private final int volume;
+    private int bits;
+    private int perLong;
+    private long mask;
+    private long[] data;
+
+    public PackedVoxelVolume(int sizeX, int sizeY, int sizeZ, int bits) {
+        if (sizeX < 0 || sizeY < 0 || sizeZ < 0) {
+            throw new IllegalArgumentException("Negative size " + sizeX + ", " + sizeY + ", " + sizeZ);
+        }
+        if (bits < 1 || bits > 32) {
+            throw new IllegalArgumentException("Bits must be between 1 and 32, but was " + bits);
+        }
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.volume = sizeX * sizeY * sizeZ;
+        setBits(bits);
+        this.data = new long[getLongCount(volume, perLong)];
+    }
+
+    public PackedVoxelVolume(BlockPos size, int bits) {
+        this(size.getX(), size.getY(), size.getZ(), bits);
+    }
+
+    private PackedVoxelVolume(PackedVoxelVolume from) {
+        sizeX = from.sizeX;
+        sizeY = from.sizeY;
+        sizeZ = from.sizeZ;
+        volume = from.volume;
+        setBits(from.bits);
+        data = Arrays.copyOf(from.data, from.data.length);
+    }
+
+    /** @return The number of bits needed to store every value from 0 to count - 1 (but always at least one). */
+    public static int getBitsFor(int count) {
+        if (count <= 2) {
+            return 1;
+        }
+        return 32 - Integer.numberOfLeadingZeros(count - 1);
+    }
+
+    /** Creates a 1 bit volume from a jagged boolean array, indexed as [x][y][z]. */
+    public static PackedVoxelVolume fromBooleans(boolean[][][] values) {
+        int sizeX = values.length;
+        int sizeY = sizeX == 0 ? 0 : values[0].length;
+        int sizeZ = sizeY == 0 ? 0 : values[0][0].length;
+        PackedVoxelVolume volume = new PackedVoxelVolume(sizeX, sizeY, sizeZ, 1);
+        for (int z = 0; z < sizeZ; z++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int x = 0; x < sizeX; x++) {
+                    if (values[x][y][z]) {
+                        volume.set(volume.getIndex(x, y, z), 1);
+                    }
+                }
+            }
+        }
+        return volume;
+    }
+
+    private static int getLongCount(int volume, int perLong) {
+        return (volume + perLong - 1) / perLong;
+    }
+
+    private void setBits(int bits) {
+        this.bits = bits;
+        this.perLong = 64 / bits;
+        this.mask = (1L << bits) - 1;
+    }
+
+    public PackedVoxelVolume copy() {
+        return new PackedVoxelVolume(this);
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public int getVolume() {
+        return volume;
+    }
+
+    public BlockPos getSize() {
+        return new BlockPos(sizeX, sizeY, sizeZ);
+    }
+
+    /** @return The index of the given position, for use in {@link #get(int)} and {@link #set(int, int)}. */
+    public int getIndex(int x, int y, int z) {
+        if (x < 0 || x >= sizeX || y < 0 || y >= sizeY || z < 0 || z >= sizeZ) {
+            throw new IndexOutOfBoundsException(x + ", " + y + ", " + z + " is outside of " + sizeX + ", " + sizeY
+                + ", " + sizeZ);
+        }
+        return (z * sizeY + y) * sizeX + x;
+    }
+
+    public int get(int index) {
+        return (int) ((data[index / perLong] >>> (index % perLong * bits)) & mask);
+    }
+
+    public int get(int x, int y, int z) {
+        return get(getIndex(x, y, z));
+    }
+
+    public boolean getBoolean(int x, int y, int z) {
+        return get(x, y, z) != 0;
+    }
+
+    /** Sets the value at the given index, widening every entry first if the value doesn't fit in {@link #getBits()}
+     * bits. */
+    public void set(int index, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot store negative values! (" + value + ")");
+        }
+        if ((value & ~mask) != 0) {
+            resize(getBitsFor(value + 1));
+        }
+        int shift = index % perLong * bits;
+        int longIndex = index / perLong;
+        data[longIndex] = (data[longIndex] & ~(mask << shift)) | ((long) value << shift);
+    }
+
+    public void set(int x, int y, int z, int value) {
+        set(getIndex(x, y, z), value);
+    }
+
+    public void setBoolean(int x, int y, int z, boolean value) {
+        set(getIndex(x, y, z), value ? 1 : 0);
+    }
+
+    /** Repacks every entry to use the given number of bits. */
+    public void resize(int newBits) {
+        if (newBits == bits) {
+            return;
+        }
+        int[] values = toIntArray();
+        setBits(newBits);
+        data = new long[getLongCount(volume, perLong)];
+        pack(values);
+    }
+
+    // Bulk operations
+
+    /** @return Every value in this volume, in index order. */
+    public int[] toIntArray() {
+        int[] values = new int[volume];
+        int i = 0;
+        for (long word : data) {
+            for (int j = 0; j < perLong && i < volume; j++) {
+                values[i++] = (int) ((word >>> (j * bits)) & mask);
+            }
+        }
+        return values;
+    }
+
+    /** Replaces every value in this volume with the given values, in index order. This will widen the entries if any of
+     * the values are too big to fit. */
+    public void readFrom(int[] values) {
+        checkLength(values.length);
+        int max = 0;
+        for (int value : values) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Cannot store negative values! (" + value + ")");
+            }
+            max = Math.max(max, value);
+        }
+        if ((max & ~mask) != 0) {
+            setBits(getBitsFor(max + 1));
+            data = new long[getLongCount(volume, perLong)];
+        }
+        pack(values);
+    }
+
+    /** @return One byte per entry, in index order, that is 1 if the entry is non-zero or 0 otherwise. */
+    public byte[] toBooleanArray() {
+        byte[] values = new byte[volume];
+        for (int i = 0; i < volume; i++) {
+            values[i] = get(i) != 0 ? (byte) 1 : (byte) 0;
+        }
+        return values;
+    }
+
+    /** Replaces every value in this volume with 1 where the given byte is non-zero, or 0 otherwise. */
+    public void readFromBooleans(byte[] values) {
+        checkLength(values.length);
+        int i = 0;
+        for (int w = 0; w < data.length; w++) {
+            long word = 0;
+            for (int j = 0; j < perLong && i < volume; j++) {
+                if (values[i++] != 0) {
+                    word |= 1L << (j * bits);
+                }
+            }
+            data[w] = word;
+        }
+    }
+
+    private void pack(int[] values) {
+        int i = 0;
+        for (int w = 0; w < data.length; w++) {
+            long word = 0;
+            for (int j = 0; j < perLong && i < volume; j++) {
+                word |= (values[i++] & mask) << (j * bits);
+            }
+            data[w] = word;
+        }
+    }
+
+    private void checkLength(int length) {
+        if (length != volume) {
+            throw new IllegalArgumentException("Expected " + volume + " values, but got " + length);
+        }
+    }
+
+    // Rotation
+
+    /** @return A view of this volume rotated around the y axis, with its minimum corner at the origin. This doesn't copy
+     *         any of the data, so changes to this volume are visible in the view. */
+    public RotatedView rotated(Rotation rotation) {
+        return new RotatedView(this, rotation);
+    }
+
+    /** A read only view of a {@link PackedVoxelVolume} that has been rotated around the y axis (in the same direction as
+     * {@link BlockPos#rotate(Rotation)}), and then moved so that its minimum corner is at the origin. */
+    public static final class RotatedView {
+        public final int sizeX, sizeY, sizeZ;
+        private final PackedVoxelVolume volume;
+        private final Rotation rotation;
+
+        RotatedView(PackedVoxelVolume volume, Rotation rotation) {
+            this.volume = volume;
+            this.rotation = rotation;
+            boolean swap = rotation == Rotation.CLOCKWISE_90 || rotation == Rotation.COUNTERCLOCKWISE_90;
+            sizeX = swap ? volume.sizeZ : volume.sizeX;
+            sizeY = volume.sizeY;
+            sizeZ = swap ? volume.sizeX : volume.sizeZ;
+        }
+
+        public int get(int x, int y, int z) {
+            switch (rotation) {
+                case CLOCKWISE_90:
+                    return volume.get(z, y, volume.sizeZ - 1 - x);
+                case CLOCKWISE_180:
+                    return volume.get(volume.sizeX - 1 - x, y, volume.sizeZ - 1 - z);
+                case COUNTERCLOCKWISE_90:
+                    return volume.get(volume.sizeX - 1 - z, y, x);
+                default:
+                    return volume.get(x, y, z);
+            }
+        }
+
+        public boolean getBoolean(int x, int y, int z) {
+            return get(x, y, z) != 0;
+        }
+    }
+}
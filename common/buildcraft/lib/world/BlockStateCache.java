@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.world;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
+
+import net.minecraftforge.fluids.Fluid;
+
+import buildcraft.lib.misc.BlockUtil;
+import buildcraft.lib.misc.ChunkUtil;
+
+/** A cache of block states, for machines that look at lots of positions in the same area (often several times each in
+ * a single tick) such as pumps, quarries and builders.
+ * <p>
+ * A flat array of states is kept for every chunk section that has been accessed, and each state is only read from the
+ * world the first time that it is asked for. Only the most recently used sections are kept, so this can be used for
+ * areas of any size.
+ * <p>
+ * This doesn't listen for changes itself: either call {@link #markChanged(BlockPos)} whenever a block changes, or only
+ * use the cache for a single scan and then throw it away. */
+public class BlockStateCache {
+    public static final int DEFAULT_MAX_SECTIONS = 64;
+
+    private final IBlockAccess access;
+    private final Map<Long, IBlockState[]> sections;
+    private long lastKey;
+    private IBlockState[] lastSection;
+    private long lookups = 0;
+    private long worldLookups = 0;
+
+    public BlockStateCache(IBlockAccess access) {
+        this(access, DEFAULT_MAX_SECTIONS);
+    }
+
+    public BlockStateCache(IBlockAccess access, int maxSections) {
+        this.access = access;
+        this.sections = new LinkedHashMap<Long, IBlockState[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, IBlockState[]> eldest) {
+                if (size() > maxSections) {
+                    if (eldest.getValue() == lastSection) {
+                        lastSection = null;
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private static long getSectionKey(int sectionX, int sectionY, int sectionZ) {
+        return ((sectionX & 0x3F_FFFFL) << 38) | ((sectionZ & 0x3F_FFFFL) << 16) | (sectionY & 0xFFFFL);
+    }
+
+    private static int getIndex(BlockPos pos) {
+        return ((pos.getY() & 15) << 8) | ((pos.getZ() & 15) << 4) | (pos.getX() & 15);
+    }
+
+    private IBlockState[] getSection(BlockPos pos, boolean create) {
+        long key = getSectionKey(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+        if (lastSection != null && lastKey == key) {
+            return lastSection;
+        }
+        IBlockState[] section = sections.get(key);
+        if (section == null) {
+            if (!create) {
+                return null;
+            }
+            section = new IBlockState[16 * 16 * 16];
+            sections.put(key, section);
+        }
+        lastKey = key;
+        lastSection = section;
+        return section;
+    }
+
+    public IBlockState getBlockState(BlockPos pos) {
+        lookups++;
+        if (pos.getY() < 0 || pos.getY() >= 256) {
+            worldLookups++;
+            return access.getBlockState(pos);
+        }
+        IBlockState[] section = getSection(pos, true);
+        int index = getIndex(pos);
+        IBlockState state = section[index];
+        if (state == null) {
+            worldLookups++;
+            state = readBlockState(pos);
+            section[index] = state;
+        }
+        return state;
+    }
+
+    private IBlockState readBlockState(BlockPos pos) {
+        if (access instanceof World) {
+            // Skip the world's chunk lookup (and its checks) if we can
+            IBlockState state = ChunkUtil.getBlockStateIfLoaded((World) access, pos);
+            if (state != null) {
+                return state;
+            }
+        }
+        return access.getBlockState(pos);
+    }
+
+    public boolean isAirBlock(BlockPos pos) {
+        IBlockState state = getBlockState(pos);
+        return state.getBlock().isAir(state, access, pos);
+    }
+
+    /** Same as {@link BlockUtil#getFluidWithFlowing(World, BlockPos)}, but using the cached state. */
+    public Fluid getFluidWithFlowing(BlockPos pos) {
+        return BlockUtil.getFluidWithFlowing(getBlockState(pos));
+    }
+
+    /** Forgets the state at the given position, so that it will be read from the world again next time. */
+    public void markChanged(BlockPos pos) {
+        if (pos.getY() < 0 || pos.getY() >= 256) {
+            return;
+        }
+        IBlockState[] section = getSection(pos, false);
+        if (section != null) {
+            section[getIndex(pos)] = null;
+        }
+    }
+
+    /** Forgets every cached state. */
+    public void clear() {
+        sections.clear();
+        lastSection = null;
+    }
+
+    /** @return The number of states that have been asked for. */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /** @return The number of states that actually had to be read from the world. */
+    public long getWorldLookups() {
+        return worldLookups;
+    }
+}
@@ -29,9 +29,11 @@ import buildcraft.lib.registry.TagManager.EnumTagType;
 import buildcraft.lib.registry.TagManager.TagEntry;
 
 import buildcraft.core.BCCore;
+import buildcraft.transport.pipe.flow.MessageTravellingItems;
 import buildcraft.transport.plug.FacadeStateManager;
 import buildcraft.transport.plug.FacadeStateManager.FacadeBlockStateInfo;
 import buildcraft.transport.plug.FacadeStateManager.FullFacadeInstance;
+import buildcraft.transport.tile.MessageUpdatePipes;
 import buildcraft.transport.wire.MessageWireSystems;
 import buildcraft.transport.wire.MessageWireSystemsPowered;
 
@@ -78,6 +80,8 @@ public class BCTransport {
         MinecraftForge.EVENT_BUS.register(BCTransportEventDist.INSTANCE);
         MessageManager.addMessageType(MessageWireSystems.class, MessageWireSystems.HANDLER, Side.CLIENT);
         MessageManager.addMessageType(MessageWireSystemsPowered.class, MessageWireSystemsPowered.HANDLER, Side.CLIENT);
+        MessageManager.addMessageType(MessageTravellingItems.class, MessageTravellingItems.HANDLER, Side.CLIENT);
+        MessageManager.addMessageType(MessageUpdatePipes.class, MessageUpdatePipes.HANDLER, Side.CLIENT);
     }
 
     @Mod.EventHandler
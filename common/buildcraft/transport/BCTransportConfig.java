@@ -43,11 +43,22 @@ public class BCTransportConfig {
     public static long mjPerItem = MjAPI.MJ;
     public static int baseFlowRate = 10;
     public static PowerLossMode lossMode = PowerLossMode.DEFAULT;
+    /** If true then connected kinesis pipes share a single power network, which moves power straight from the engines
+     * to the machines rather than one pipe at a time. */
+    public static boolean usePowerNetworks = false;
+    /** If true then connected fluid pipes share a single fluid network, which moves fluid towards the nearest output in
+     * a single pass rather than one pipe at a time. */
+    public static boolean useFluidNetworks = false;
+    /** If true then pipes that have nothing to do stop ticking until something happens to them. */
+    public static boolean pipesSleepWhenIdle = true;
 
     private static Property propMjPerMillibucket;
     private static Property propMjPerItem;
     private static Property propBaseFlowRate;
     private static Property propLossMode;
+    private static Property propUsePowerNetworks;
+    private static Property propUseFluidNetworks;
+    private static Property propPipesSleepWhenIdle;
 
     public static void preInit() {
         Configuration config = BCCoreConfig.config;
@@ -64,10 +75,24 @@ public class BCTransportConfig {
         ConfigUtil.setEnumProperty(propLossMode, PowerLossMode.VALUES);
         EnumRestartRequirement.WORLD.setTo(propLossMode);
 
+        propUsePowerNetworks = config.get("experimental", "kinesisNetworks", usePowerNetworks);
+        propUsePowerNetworks.setComment("Should connected kinesis pipes move power as a single network, rather than one pipe at a time?");
+        EnumRestartRequirement.WORLD.setTo(propUsePowerNetworks);
+
+        propUseFluidNetworks = config.get("experimental", "fluidNetworks", useFluidNetworks);
+        propUseFluidNetworks.setComment("Should connected fluid pipes move fluid as a single network, rather than one pipe at a time?");
+        EnumRestartRequirement.WORLD.setTo(propUseFluidNetworks);
+
+        propPipesSleepWhenIdle = config.get("general", "pipes.sleepWhenIdle", pipesSleepWhenIdle);
+        propPipesSleepWhenIdle.setComment("Should pipes that have nothing to do stop ticking until something changes?");
+        EnumRestartRequirement.NONE.setTo(propPipesSleepWhenIdle);
+
         MinecraftForge.EVENT_BUS.register(BCTransportConfig.class);
     }
 
     public static void reloadConfig(EnumRestartRequirement restarted) {
+        pipesSleepWhenIdle = propPipesSleepWhenIdle.getBoolean();
+
         if (EnumRestartRequirement.WORLD.hasBeenRestarted(restarted)) {
             mjPerMillibucket = propMjPerMillibucket.getLong();
             if (mjPerMillibucket < MJ_REQ_MILLIBUCKET_MIN) {
@@ -83,6 +108,8 @@ public class BCTransportConfig {
             int basePowerRate = 4;
 
             lossMode = ConfigUtil.parseEnumForConfig(propLossMode.getString(), PowerLossMode.VALUES, PowerLossMode.DEFAULT);
+            usePowerNetworks = propUsePowerNetworks.getBoolean();
+            useFluidNetworks = propUseFluidNetworks.getBoolean();
 
             fluidTransfer(BCTransportPipes.cobbleFluid, baseFlowRate, 10);
             fluidTransfer(BCTransportPipes.woodFluid, baseFlowRate, 10);
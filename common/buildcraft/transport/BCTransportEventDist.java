@@ -14,6 +14,8 @@ import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
 import buildcraft.transport.client.render.PipeWireRenderer;
+import buildcraft.transport.pipe.flow.TravellingItemSync;
+import buildcraft.transport.tile.PipeUpdateSync;
 import buildcraft.transport.wire.WorldSavedDataWireSystems;
 
 public enum BCTransportEventDist {
@@ -23,12 +25,21 @@ public enum BCTransportEventDist {
     public void onWorldTick(TickEvent.WorldTickEvent event) {
         if (!event.world.isRemote && event.world.getMinecraftServer() != null) {
             WorldSavedDataWireSystems.get(event.world).tick();
+            if (event.phase == TickEvent.Phase.END) {
+                PipeUpdateSync.onWorldTickEnd(event.world);
+                TravellingItemSync.onWorldTickEnd(event.world);
+            }
         }
     }
 
     @SubscribeEvent
-    public void onChunkWatch(ChunkWatchEvent event) {
-        WorldSavedDataWireSystems.get(event.getPlayer().world).changedPlayers.add(event.getPlayer());
+    public void onChunkWatch(ChunkWatchEvent.Watch event) {
+        WorldSavedDataWireSystems.get(event.getPlayer().world).onChunkWatch(event.getPlayer(), event.getChunk());
+    }
+
+    @SubscribeEvent
+    public void onChunkUnwatch(ChunkWatchEvent.UnWatch event) {
+        WorldSavedDataWireSystems.get(event.getPlayer().world).onChunkUnwatch(event.getPlayer(), event.getChunk());
     }
 
     @SubscribeEvent
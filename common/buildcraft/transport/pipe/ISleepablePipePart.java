@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe;
+
+/** Implemented by pipe flows, behaviours and pluggables that only need to be ticked while they have something to do.
+ * Once every part of a pipe is idle its holder stops ticking it until either the shortest idle time has passed or
+ * something wakes it up (for example inserting into it, a neighbour changing or an event being fired).
+ * <p>
+ * Parts that don't implement this are assumed to need ticking every tick if they override onTick(), and never
+ * otherwise. */
+public interface ISleepablePipePart {
+    /** Returned by {@link #getIdleTicks()} if this doesn't need to be ticked again until it is woken up. */
+    int UNTIL_WOKEN = Integer.MAX_VALUE;
+
+    /** Only called on the server, after this has been ticked.
+     *
+     * @return The number of ticks that can be skipped before this needs to be ticked again, {@link #UNTIL_WOKEN} if it
+     *         has nothing to do at all, or 0 if it needs to be ticked next tick. */
+    int getIdleTicks();
+
+    /** Called when the pipe wakes up, before anything else happens to it.
+     *
+     * @param ticksSlept The number of ticks that were skipped. This is never more than the smallest value returned by
+     *            {@link #getIdleTicks()} before the pipe went to sleep. */
+    default void onWakeUp(int ticksSlept) {}
+}
@@ -8,7 +8,9 @@ package buildcraft.transport.pipe;
 
 import java.io.IOException;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 
@@ -45,8 +47,14 @@ import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.net.PacketBufferBC;
 
 import buildcraft.transport.client.model.key.PipeModelKey;
+import buildcraft.transport.pipe.flow.PipeFlowFluids;
+import buildcraft.transport.pipe.flow.PipeFlowPower;
+import buildcraft.transport.tile.TilePipeHolder;
 
 public final class Pipe implements IPipe, IDebuggable {
+    /** Whether each class of pipe part overrides onTick(), for parts that don't implement {@link ISleepablePipePart}. */
+    private static final Map<Class<?>, Boolean> TICKING_CLASSES = new HashMap<>();
+
     public final IPipeHolder holder;
     public final PipeDefinition definition;
     public final PipeBehaviour behaviour;
@@ -213,6 +221,16 @@ public final class Pipe implements IPipe, IDebuggable {
         updateConnections();
     }
 
+    /** Called when the holder is removed from the world, either because it was broken or because its chunk was
+     * unloaded. */
+    public void onRemove() {
+        if (flow instanceof PipeFlowPower) {
+            ((PipeFlowPower) flow).invalidateNetwork();
+        } else if (flow instanceof PipeFlowFluids) {
+            ((PipeFlowFluids) flow).invalidateNetwork();
+        }
+    }
+
     public void onTick() {
         behaviour.onTick();
         flow.onTick();
@@ -221,6 +239,44 @@ public final class Pipe implements IPipe, IDebuggable {
         }
     }
 
+    // Sleeping
+
+    /** @return The number of ticks that this pipe can go without being ticked. See {@link ISleepablePipePart}. */
+    public int getIdleTicks() {
+        if (updateMarked) {
+            return 0;
+        }
+        return Math.min(getIdleTicks(behaviour), getIdleTicks(flow));
+    }
+
+    public void onWakeUp(int ticksSlept) {
+        if (behaviour instanceof ISleepablePipePart) {
+            ((ISleepablePipePart) behaviour).onWakeUp(ticksSlept);
+        }
+        if (flow instanceof ISleepablePipePart) {
+            ((ISleepablePipePart) flow).onWakeUp(ticksSlept);
+        }
+    }
+
+    /** @param part A {@link PipeBehaviour}, {@link PipeFlow} or {@link PipePluggable}.
+     * @return The number of ticks that the given part can go without being ticked. */
+    public static int getIdleTicks(Object part) {
+        if (part instanceof ISleepablePipePart) {
+            return ((ISleepablePipePart) part).getIdleTicks();
+        }
+        boolean ticks = TICKING_CLASSES.computeIfAbsent(part.getClass(), Pipe::overridesOnTick);
+        return ticks ? 0 : ISleepablePipePart.UNTIL_WOKEN;
+    }
+
+    private static boolean overridesOnTick(Class<?> cls) {
+        try {
+            Class<?> declaring = cls.getMethod("onTick").getDeclaringClass();
+            return declaring != PipeBehaviour.class && declaring != PipeFlow.class && declaring != PipePluggable.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
     private void updateConnections() {
         if (holder.getPipeWorld().isRemote) {
             return;
@@ -276,6 +332,11 @@ public final class Pipe implements IPipe, IDebuggable {
             }
         }
         if (!old.equals(connected)) {
+            if (flow instanceof PipeFlowPower) {
+                ((PipeFlowPower) flow).invalidateNetwork();
+            } else if (flow instanceof PipeFlowFluids) {
+                ((PipeFlowFluids) flow).invalidateNetwork();
+            }
             for (EnumFacing face : EnumFacing.VALUES) {
                 boolean o = old.containsKey(face);
                 boolean n = connected.containsKey(face);
@@ -318,6 +379,7 @@ public final class Pipe implements IPipe, IDebuggable {
     @Override
     public void markForUpdate() {
         updateMarked = true;
+        TilePipeHolder.wakeUp(holder);
     }
 
     @SideOnly(Side.CLIENT)
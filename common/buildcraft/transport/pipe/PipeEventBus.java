@@ -8,6 +8,7 @@ package buildcraft.transport.pipe;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
@@ -28,8 +29,15 @@ public class PipeEventBus {
 
     private static final Map<Class<?>, List<Handler>> allHandlers = new HashMap<>();
 
+    private static final LocalHandler[] NO_HANDLERS = new LocalHandler[0];
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, PipeEvent.class);
+
     private final List<LocalHandler> currentHandlers = new ArrayList<>();
 
+    /** Cache of event class -> every handler in {@link #currentHandlers} that accepts that event, in priority order.
+     * This is cleared whenever a handler is registered or unregistered. */
+    private final Map<Class<?>, LocalHandler[]> handlersByEvent = new HashMap<>();
+
     private static List<LocalHandler> getAndBindHandlers(Object obj) {
         Class<?> cls = obj instanceof Class ? (Class<?>) obj : obj.getClass();
 
@@ -90,6 +98,7 @@ public class PipeEventBus {
         }
         currentHandlers.addAll(getAndBindHandlers(obj));
         Collections.sort(currentHandlers);
+        handlersByEvent.clear();
     }
 
     public void unregisterHandler(Object obj) {
@@ -97,7 +106,30 @@ public class PipeEventBus {
             return;
         }
 
-        currentHandlers.removeIf(next -> next.target == obj);
+        if (currentHandlers.removeIf(next -> next.target == obj)) {
+            handlersByEvent.clear();
+        }
+    }
+
+    /** @return True if at least one registered handler would receive an event of the given class. Callers can use this
+     *         to avoid creating events that nothing listens to. */
+    public boolean hasHandlers(Class<? extends PipeEvent> eventClass) {
+        return getHandlersFor(eventClass).length > 0;
+    }
+
+    private LocalHandler[] getHandlersFor(Class<?> eventClass) {
+        LocalHandler[] handlers = handlersByEvent.get(eventClass);
+        if (handlers == null) {
+            List<LocalHandler> list = new ArrayList<>();
+            for (LocalHandler handler : currentHandlers) {
+                if (handler.classHandled.isAssignableFrom(eventClass)) {
+                    list.add(handler);
+                }
+            }
+            handlers = list.isEmpty() ? NO_HANDLERS : list.toArray(new LocalHandler[list.size()]);
+            handlersByEvent.put(eventClass, handlers);
+        }
+        return handlers;
     }
 
     /** Sends this event to all of the registered handlers.
@@ -112,8 +144,8 @@ public class PipeEventBus {
                     + "(error = " + error + ")");
             }
         }
-        for (LocalHandler handler : currentHandlers) {
-            handled |= handler.handleEvent(event);
+        for (LocalHandler handler : getHandlersFor(event.getClass())) {
+            handled |= handler.handleApplicableEvent(event);
             if (DEBUG) {
                 String error = event.checkStateForErrors();
                 if (error != null) {
@@ -165,23 +197,29 @@ public class PipeEventBus {
             this.target = target;
             this.methodName = methodName;
             this.classHandled = classHandled;
-            this.handle = handle;
+            // Adapt the handle once so that every call can use invokeExact rather than the slower generic invoke
+            this.handle = handle.asType(HANDLER_TYPE);
         }
 
         public boolean handleEvent(PipeEvent event) {
+            if (classHandled.isAssignableFrom(event.getClass())) {
+                return handleApplicableEvent(event);
+            }
+            return false;
+        }
+
+        /** Like {@link #handleEvent(PipeEvent)}, but assumes that the event is already known to be of the correct
+         * type for this handler. */
+        boolean handleApplicableEvent(PipeEvent event) {
             if (!receiveCanceled && event.isCanceled()) {
                 return false;
             }
-
-            if (classHandled.isAssignableFrom(event.getClass())) {
-                try {
-                    handle.invoke(event);
-                    return true;
-                } catch (Throwable e) {
-                    throw new IllegalStateException(e);
-                }
+            try {
+                handle.invokeExact(event);
+                return true;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
             }
-            return false;
         }
 
         @Override
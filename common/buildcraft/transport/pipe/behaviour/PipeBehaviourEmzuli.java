@@ -185,6 +185,19 @@ public class PipeBehaviourEmzuli extends PipeBehaviourWood {
         }
     }
 
+    @Override
+    public int getIdleTicks() {
+        if (!activeSlots.isEmpty()) {
+            return 0;
+        }
+        for (byte ttl : activatedTtl) {
+            if (ttl > 0) {
+                return 0;
+            }
+        }
+        return super.getIdleTicks();
+    }
+
     private SlotIndex getNextSlot() {
         SlotIndex current = currentSlot == null ? SlotIndex.CROSS : currentSlot;
         int i = SlotIndex.VALUES.length;
@@ -34,8 +34,10 @@ import buildcraft.api.transport.pipe.PipeEventHandler;
 import buildcraft.lib.inventory.filter.StackFilter;
 
 import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.pipe.ISleepablePipePart;
+import buildcraft.transport.tile.TilePipeHolder;
 
-public class PipeBehaviourWood extends PipeBehaviourDirectional implements IMjRedstoneReceiver, IDebuggable {
+public class PipeBehaviourWood extends PipeBehaviourDirectional implements IMjRedstoneReceiver, IDebuggable, ISleepablePipePart {
 
     private final MjBattery mjBattery = new MjBattery(2 * MjAPI.MJ);
     private final MjCapabilityHelper mjCaps = new MjCapabilityHelper(this);
@@ -118,6 +120,24 @@ public class PipeBehaviourWood extends PipeBehaviourDirectional implements IMjRe
         }
     }
 
+    @Override
+    public int getIdleTicks() {
+        if (mjBattery.getStored() > 0) {
+            return 0;
+        }
+        if (currentDir == EnumPipePart.CENTER) {
+            // It will start facing the first valid direction next tick
+            for (EnumFacing face : EnumFacing.VALUES) {
+                if (canFaceDirection(face)) {
+                    return 0;
+                }
+            }
+        } else if (!canFaceDirection(getCurrentDir())) {
+            return 0;
+        }
+        return UNTIL_WOKEN;
+    }
+
     protected int extractItems(IFlowItems flow, EnumFacing dir, int count) {
         return flow.tryExtractItems(count, dir, null, StackFilter.ALL);
     }
@@ -140,6 +160,9 @@ public class PipeBehaviourWood extends PipeBehaviourDirectional implements IMjRe
 
     @Override
     public long receivePower(long microJoules, boolean simulate) {
+        if (!simulate) {
+            TilePipeHolder.wakeUp(pipe.getHolder());
+        }
         return mjBattery.addPowerChecking(microJoules, simulate);
     }
 
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import net.minecraft.util.EnumFacing;
+
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+
+import buildcraft.lib.misc.CapUtil;
+
+import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.tile.TilePipeHolder;
+
+/** Every {@link PipeFlowFluids} that is connected together and holds the same fluid (or none), when
+ * {@link BCTransportConfig#useFluidNetworks} is enabled. Pipes whose behaviour or pluggables listen for fluid events are
+ * never part of a network, and are treated like any other tile that the network outputs into.
+ * <p>
+ * Rather than each pipe moving fluid through its sections every tick, the network keeps the amount and capacity of
+ * every pipe in flat arrays and moves fluid between them in a single pass per tick. Fluid only ever moves towards the
+ * nearest output (or levels out between pipes that are equally far from one), and pipes are processed nearest first so
+ * a full line moves its entire flow rate every tick rather than waiting for every pipe along it. */
+final class FluidNetwork {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final PipeFlowFluids[] members;
+
+    // Per pipe
+    private final int[] amounts;
+    private final int[] capacities;
+    private final int[] rates;
+    /** The number of pipes between each pipe and the nearest active output. */
+    private final int[] distances;
+    /** Every pipe, sorted by {@link #distances}. */
+    private final int[] order;
+
+    // Connections between pipes, stored by pipe: the connections of pipe i are from edgeStart[i] to edgeStart[i + 1]
+    private final int[] edgeStart;
+    private final int[] edgeTarget;
+    private final byte[] edgeFace;
+
+    // Tiles (and pipes that aren't in this network) that fluid can move into
+    private final int[] outputPipe;
+    private final EnumFacing[] outputFace;
+    /** Whether each output was able to accept fluid when {@link #distances} were last worked out. Outputs that have
+     * recently inserted fluid into the network aren't active either, so that fluid isn't sent straight back into them. */
+    private final boolean[] outputActive;
+
+    private FluidStack fluid;
+    private boolean valid = true;
+    private long lastTick = Long.MIN_VALUE;
+    private int lastMoved;
+    /** True if some of the pipes haven't sent their current amounts to the client yet. */
+    private boolean unsent = true;
+
+    private FluidNetwork(PipeFlowFluids[] members, FluidStack fluid, int[] neighbours) {
+        this.members = members;
+        this.fluid = fluid;
+        int count = members.length;
+        amounts = new int[count];
+        capacities = new int[count];
+        rates = new int[count];
+        distances = new int[count];
+        order = new int[count];
+
+        edgeStart = new int[count + 1];
+        int edges = 0;
+        for (int n : neighbours) {
+            if (n >= 0) {
+                edges++;
+            }
+        }
+        edgeTarget = new int[edges];
+        edgeFace = new byte[edges];
+
+        List<int[]> outputs = new ArrayList<>();
+        int e = 0;
+        for (int i = 0; i < count; i++) {
+            PipeFlowFluids flow = members[i];
+            flow.network = this;
+            flow.networkIndex = i;
+            flow.setNetworkFluid(fluid);
+            capacities[i] = flow.getNetworkCapacity();
+            rates[i] = flow.getTransferPerTick();
+            edgeStart[i] = e;
+            for (EnumFacing face : EnumFacing.VALUES) {
+                int n = neighbours[i * 6 + face.ordinal()];
+                if (n >= 0) {
+                    edgeTarget[e] = n;
+                    edgeFace[e] = (byte) face.ordinal();
+                    e++;
+                } else if (flow.pipe.isConnected(face)) {
+                    outputs.add(new int[] { i, face.ordinal() });
+                }
+            }
+        }
+        edgeStart[count] = e;
+
+        outputPipe = new int[outputs.size()];
+        outputFace = new EnumFacing[outputs.size()];
+        outputActive = new boolean[outputs.size()];
+        for (int o = 0; o < outputPipe.length; o++) {
+            outputPipe[o] = outputs.get(o)[0];
+            outputFace[o] = EnumFacing.VALUES[outputs.get(o)[1]];
+            outputActive[o] = members[outputPipe[o]].isNetworkOutputActive(outputFace[o]);
+        }
+        computeDistances();
+        TilePipeHolder.wakeUp(members[0].pipe.getHolder());
+    }
+
+    /** Creates a new network out of the fluid pipes around the given one that can share its fluid. Pipes that listen
+     * for fluid events, or that hold a different fluid to the first one found, are left out and become outputs instead.
+     * Every network that lost a pipe to this one is invalidated, which wakes up its remaining pipes so that they can
+     * form their own network. */
+    static FluidNetwork build(PipeFlowFluids start) {
+        FluidMatcher matcher = new FluidMatcher(start.getNetworkFluid());
+        PipeGraph<PipeFlowFluids> graph = PipeGraph.search(start, PipeFlowFluids.class, matcher);
+        List<FluidNetwork> old = new ArrayList<>();
+        for (PipeFlowFluids flow : graph.members) {
+            if (flow.network != null && !old.contains(flow.network)) {
+                old.add(flow.network);
+            }
+        }
+        FluidNetwork network = new FluidNetwork(graph.members.toArray(new PipeFlowFluids[0]), matcher.fluid,
+            graph.neighbours);
+        for (FluidNetwork network2 : old) {
+            network2.invalidate();
+        }
+        return network;
+    }
+
+    /** Accepts pipes that are empty or hold the same fluid as every other pipe accepted so far. */
+    private static final class FluidMatcher implements Predicate<PipeFlowFluids> {
+        FluidStack fluid;
+
+        FluidMatcher(FluidStack fluid) {
+            this.fluid = fluid;
+        }
+
+        @Override
+        public boolean test(PipeFlowFluids flow) {
+            if (flow.hooksFluidEvents()) {
+                return false;
+            }
+            FluidStack other = flow.getNetworkFluid();
+            if (other == null) {
+                return true;
+            }
+            if (fluid == null) {
+                fluid = other;
+                return true;
+            }
+            return fluid.isFluidEqual(other);
+        }
+    }
+
+    /** Works out how far every pipe is from the nearest active output, with a breadth first search from all of them at
+     * once. */
+    private void computeDistances() {
+        int count = members.length;
+        Arrays.fill(distances, UNREACHABLE);
+        int[] queue = order;
+        int head = 0, tail = 0;
+        for (int o = 0; o < outputPipe.length; o++) {
+            int p = outputPipe[o];
+            if (outputActive[o] && distances[p] != 0) {
+                distances[p] = 0;
+                queue[tail++] = p;
+            }
+        }
+        while (head < tail) {
+            int from = queue[head++];
+            for (int e = edgeStart[from]; e < edgeStart[from + 1]; e++) {
+                int to = edgeTarget[e];
+                if (distances[to] == UNREACHABLE) {
+                    distances[to] = distances[from] + 1;
+                    queue[tail++] = to;
+                }
+            }
+        }
+        // Anything that can't reach an output goes at the end
+        for (int i = 0; i < count; i++) {
+            if (distances[i] == UNREACHABLE) {
+                queue[tail++] = i;
+            }
+        }
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    /** Stops this network from being used, and wakes up every pipe in it so that they can find their new network. */
+    void invalidate() {
+        if (!valid) {
+            return;
+        }
+        valid = false;
+        for (PipeFlowFluids member : members) {
+            TilePipeHolder.wakeUp(member.pipe.getHolder());
+        }
+    }
+
+    /** @return True if the given pipe needs to keep ticking this network, and so can't sleep. */
+    boolean needsTicking(PipeFlowFluids flow) {
+        return members[0] == flow && (fluid != null || unsent);
+    }
+
+    FluidStack getFluid() {
+        return fluid;
+    }
+
+    /** Changes the fluid of every pipe in this network. Only called when every pipe is empty. */
+    void setFluid(FluidStack fluid) {
+        this.fluid = fluid;
+        for (PipeFlowFluids member : members) {
+            member.setNetworkFluid(fluid);
+        }
+        unsent = true;
+        TilePipeHolder.wakeUp(members[0].pipe.getHolder());
+    }
+
+    int getMemberCount() {
+        return members.length;
+    }
+
+    int getOutputCount() {
+        return outputPipe.length;
+    }
+
+    int getDistance(PipeFlowFluids flow) {
+        return distances[flow.networkIndex];
+    }
+
+    /** @return The amount of fluid that moved into outputs last tick. */
+    int getLastMoved() {
+        return lastMoved;
+    }
+
+    // Ticking
+
+    /** Moves fluid through the network, and then sends the new amounts to the client. Any member that is awake can
+     * call this (normally only the first one, see {@link #needsTicking(PipeFlowFluids)}), but it is ignored if the
+     * network has already moved fluid this tick. */
+    void tick(long now) {
+        if (!valid || lastTick == now) {
+            return;
+        }
+        lastTick = now;
+        if (fluid != null) {
+            move();
+        }
+        if (unsent) {
+            boolean any = false;
+            for (PipeFlowFluids member : members) {
+                any |= member.sendAmounts();
+            }
+            unsent = any;
+        }
+    }
+
+    private void move() {
+        int count = members.length;
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            amounts[i] = members[i].getTotalAmount();
+            total += amounts[i];
+        }
+        if (total == 0) {
+            lastMoved = 0;
+            setFluid(null);
+            return;
+        }
+
+        // Move fluid out of the network. Outputs that won't accept any more fluid are skipped when working out where the
+        // fluid in the network should move to.
+        boolean changed = false;
+        int moved = 0;
+        for (int o = 0; o < outputPipe.length; o++) {
+            int p = outputPipe[o];
+            PipeFlowFluids flow = members[p];
+            IFluidHandler handler = null;
+            if (flow.isNetworkOutputActive(outputFace[o])) {
+                handler = flow.pipe.getHolder().getCapabilityFromPipe(outputFace[o], CapUtil.CAP_FLUIDS);
+            }
+            boolean active = handler != null && handler.fill(new FluidStack(fluid, 1), false) > 0;
+            if (active != outputActive[o]) {
+                outputActive[o] = active;
+                changed = true;
+            }
+            if (!active || amounts[p] <= 0) {
+                continue;
+            }
+            int filled = handler.fill(new FluidStack(fluid, Math.min(amounts[p], rates[p])), true);
+            if (filled > 0) {
+                amounts[p] -= filled;
+                moved += filled;
+                flow.onNetworkMove(outputFace[o], true);
+            }
+        }
+        if (changed) {
+            computeDistances();
+        }
+        lastMoved = moved;
+
+        // Move fluid towards the outputs, nearest first so that space freed up by one pipe can be used by the next one
+        for (int k = 0; k < count; k++) {
+            int from = order[k];
+            int dist = distances[from];
+            for (int e = edgeStart[from]; e < edgeStart[from + 1] && amounts[from] > 0; e++) {
+                int to = edgeTarget[e];
+                int amount;
+                if (distances[to] < dist) {
+                    amount = amounts[from];
+                } else if (distances[to] == dist && amounts[from] > amounts[to]) {
+                    // Level out between pipes that are just as close, moving half of the difference
+                    amount = (amounts[from] - amounts[to]) / 2;
+                } else {
+                    continue;
+                }
+                amount = Math.min(amount, Math.min(rates[from], rates[to]));
+                amount = Math.min(amount, capacities[to] - amounts[to]);
+                if (amount <= 0) {
+                    continue;
+                }
+                amounts[from] -= amount;
+                amounts[to] += amount;
+                EnumFacing face = EnumFacing.VALUES[edgeFace[e]];
+                members[from].onNetworkMove(face, true);
+                members[to].onNetworkMove(face.getOpposite(), false);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            members[i].setNetworkAmount(amounts[i]);
+        }
+        unsent = true;
+    }
+}
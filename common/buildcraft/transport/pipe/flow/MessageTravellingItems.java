@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.function.Supplier;
+
+import io.netty.buffer.ByteBuf;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.item.ItemStack;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+
+import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.IPipeHolder;
+
+import buildcraft.lib.BCLibProxy;
+import buildcraft.lib.net.PacketBufferBC;
+import buildcraft.lib.net.cache.BuildCraftObjectCaches;
+
+/** Every {@link TravellingItem} that started moving in a single chunk during a single tick. See
+ * {@link TravellingItemSync} for how these are collected. */
+public class MessageTravellingItems implements IMessage {
+    static final int FLAG_TO_CENTER = 8;
+    static final int FLAG_CANCEL = 16;
+
+    private int chunkX, chunkZ;
+    private int count;
+    private PacketBufferBC payload;
+
+    public MessageTravellingItems() {}
+
+    public MessageTravellingItems(int chunkX, int chunkZ, int count, PacketBufferBC payload) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.count = count;
+        this.payload = payload;
+    }
+
+    static int getIndexInChunk(int x, int y, int z) {
+        return (y & 0xFF) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        PacketBufferBC buffer = PacketBufferBC.asPacketBufferBc(buf);
+        buffer.writeInt(chunkX);
+        buffer.writeInt(chunkZ);
+        buffer.writeVarInt(count);
+        int length = payload.readableBytes();
+        buffer.writeVarInt(length);
+        buffer.writeBytes(payload, payload.readerIndex(), length);
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        PacketBufferBC buffer = PacketBufferBC.asPacketBufferBc(buf);
+        chunkX = buffer.readInt();
+        chunkZ = buffer.readInt();
+        count = buffer.readVarInt();
+        int length = buffer.readVarInt();
+        payload = new PacketBufferBC(buffer.readBytes(length));
+    }
+
+    public static final IMessageHandler<MessageTravellingItems, IMessage> HANDLER = (message, ctx) -> {
+        EntityPlayer player = BCLibProxy.getProxy().getPlayerForContext(ctx);
+        if (player == null || player.world == null) {
+            return null;
+        }
+        PacketBufferBC buffer = message.payload;
+        int baseX = message.chunkX << 4;
+        int baseZ = message.chunkZ << 4;
+        int index = 0;
+        for (int i = 0; i < message.count; i++) {
+            int zigzag = buffer.readVarInt();
+            index += (zigzag >>> 1) ^ -(zigzag & 1);
+            int flags = buffer.readUnsignedByte();
+            int id = buffer.readVarInt();
+            // Whatever the record is for, any item that the client predicted for this id is now out of date
+            TravellingItemPrediction.cancelClient(id);
+            if ((flags & FLAG_CANCEL) != 0) {
+                continue;
+            }
+            int stackId = buffer.readVarInt();
+            int stackCount = buffer.readVarInt();
+            int colour = buffer.readUnsignedByte();
+            int timeToDest = buffer.readVarInt();
+            double speed = buffer.readDouble();
+
+            BlockPos pos = new BlockPos(baseX + (index & 15), index >> 8, baseZ + ((index >> 4) & 15));
+            TileEntity tile = player.world.getTileEntity(pos);
+            if (!(tile instanceof IPipeHolder)) {
+                continue;
+            }
+            IPipe pipe = ((IPipeHolder) tile).getPipe();
+            if (pipe == null || !(pipe.getFlow() instanceof PipeFlowItems)) {
+                continue;
+            }
+            Supplier<ItemStack> link = BuildCraftObjectCaches.retrieveItemStack(stackId);
+            TravellingItem item = new TravellingItem(link, stackCount);
+            item.id = id;
+            item.toCenter = (flags & FLAG_TO_CENTER) != 0;
+            item.side = EnumFacing.getFront(flags & 7);
+            item.colour = colour == 0 ? null : EnumDyeColor.byMetadata(colour - 1);
+            item.timeToDest = timeToDest;
+            item.speed = speed;
+            ((PipeFlowItems) pipe.getFlow()).addClientItem(item);
+        }
+        return null;
+    };
+}
@@ -41,8 +41,10 @@ import buildcraft.api.core.SafeTimeTracker;
 import buildcraft.api.tiles.IDebuggable;
 import buildcraft.api.transport.pipe.IFlowFluid;
 import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.IPipeHolder;
 import buildcraft.api.transport.pipe.PipeApi;
 import buildcraft.api.transport.pipe.PipeApi.FluidTransferInfo;
+import buildcraft.api.transport.pipe.PipeEvent;
 import buildcraft.api.transport.pipe.PipeEventFluid;
 import buildcraft.api.transport.pipe.PipeEventFluid.OnMoveToCentre;
 import buildcraft.api.transport.pipe.PipeEventFluid.PreMoveToCentre;
@@ -57,8 +59,11 @@ import buildcraft.lib.net.cache.BuildCraftObjectCaches;
 import buildcraft.lib.net.cache.NetworkedObjectCache;
 
 import buildcraft.core.BCCoreConfig;
+import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.pipe.ISleepablePipePart;
+import buildcraft.transport.tile.TilePipeHolder;
 
-public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable {
+public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable, ISleepablePipePart {
 
     private static final int DIRECTION_COOLDOWN = 60;
     private static final int COOLDOWN_INPUT = -DIRECTION_COOLDOWN;
@@ -80,6 +85,11 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
     private int currentDelay;
     private final SafeTimeTracker tracker = new SafeTimeTracker(BCCoreConfig.networkUpdateRate, 4);
 
+    /** The network that this pipe is in, if {@link BCTransportConfig#useFluidNetworks} is enabled. */
+    FluidNetwork network;
+    /** This pipe's index in its network. */
+    int networkIndex = -1;
+
     // Client fields for interpolating amounts
     private long lastMessage, lastMessageMinus1;
     private NetworkedObjectCache<FluidStack>.Link clientFluid = null;
@@ -292,6 +302,34 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
 
             left.add(line.toString());
         }
+        if (network != null) {
+            left.add("network = " + network.getMemberCount() + " pipes, " + network.getOutputCount() + " outputs");
+            int distance = network.getDistance(this);
+            left.add("- distance = " + (distance == Integer.MAX_VALUE ? "none" : distance) + ", moved = "
+                + network.getLastMoved() + "mB");
+        }
+    }
+
+    // Sleeping
+
+    @Override
+    public int getIdleTicks() {
+        if (network != null && network.isValid()) {
+            // Only one pipe needs to stay awake to tick the whole network
+            return network.needsTicking(this) ? 0 : UNTIL_WOKEN;
+        }
+        if (currentFluid != null) {
+            return 0;
+        }
+        for (Section section : sections.values()) {
+            if (section.amount != section.lastSentAmount) {
+                return 0;
+            }
+            if (section.lastSentDirection != Dir.get(section.ticksInDirection)) {
+                return 0;
+            }
+        }
+        return UNTIL_WOKEN;
     }
 
     // Rendering
@@ -326,6 +364,14 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
     // Internal logic
 
     private void setFluid(FluidStack fluid) {
+        if (network != null && network.isValid()) {
+            network.setFluid(fluid);
+        } else {
+            setFluidLocal(fluid);
+        }
+    }
+
+    private void setFluidLocal(FluidStack fluid) {
         currentFluid = fluid;
         if (fluid != null) {
             currentDelay = (int) PipeApi.getFluidTransferInfo(pipe.getDefinition()).transferDelayMultiplier;
@@ -350,6 +396,12 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             return;
         }
 
+        if (BCTransportConfig.useFluidNetworks && !hooksFluidEvents()) {
+            tickNetwork();
+            return;
+        }
+        invalidateNetwork();
+
         if (currentFluid != null) {
             // int timeSlot = (int) (world.getTotalWorldTime() % currentDelay);
             int totalFluid = 0;
@@ -390,6 +442,14 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             }
         }
 
+        sendAmounts();
+    }
+
+    /** Sends the amounts in every section to the client, if they have changed and enough time has passed since they
+     * were last sent.
+     * 
+     * @return True if the client still has out of date amounts. */
+    boolean sendAmounts() {
         boolean send = false;
 
         for (EnumPipePart part : EnumPipePart.VALUES) {
@@ -406,9 +466,123 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             }
         }
 
-        if (send && tracker.markTimeIfDelay(world)) {
+        if (send && tracker.markTimeIfDelay(pipe.getHolder().getPipeWorld())) {
             // send a net update
             sendPayload(NET_FLUID_AMOUNTS);
+            return false;
+        }
+        return send;
+    }
+
+    private boolean hasHandlers(Class<? extends PipeEvent> eventClass) {
+        IPipeHolder holder = pipe.getHolder();
+        if (holder instanceof TilePipeHolder) {
+            return ((TilePipeHolder) holder).eventBus.hasHandlers(eventClass);
+        }
+        return true;
+    }
+
+    // Networking
+
+    /** @return True if anything in this pipe listens for fluid events, in which case it can't be part of a
+     *         {@link FluidNetwork} and has to move fluid by itself. */
+    boolean hooksFluidEvents() {
+        return hasHandlers(PipeEventFluid.SideCheck.class) || hasHandlers(PreMoveToCentre.class)
+            || hasHandlers(OnMoveToCentre.class) || hasHandlers(PipeEventFluid.TryInsert.class);
+    }
+
+    /** Makes this pipe's network find all of its pipes again. Called whenever this pipe's connections change, or it is
+     * removed from the world. */
+    public void invalidateNetwork() {
+        if (network != null) {
+            network.invalidate();
+            network = null;
+        }
+    }
+
+    private void tickNetwork() {
+        if (network == null || !network.isValid()) {
+            FluidNetwork.build(this);
+        }
+        network.tick(pipe.getHolder().getPipeWorld().getTotalWorldTime());
+    }
+
+    FluidStack getNetworkFluid() {
+        return currentFluid;
+    }
+
+    /** Changes the fluid in this pipe without resetting the direction of every section, unless it actually changed. */
+    void setNetworkFluid(FluidStack fluid) {
+        if (fluid == null ? currentFluid != null : !fluid.isFluidEqual(currentFluid)) {
+            setFluidLocal(fluid);
+        }
+    }
+
+    /** @return The most fluid that this pipe can hold in all of its connected sections. */
+    int getNetworkCapacity() {
+        int count = 1;
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (pipe.isConnected(face)) {
+                count++;
+            }
+        }
+        return capacity * count;
+    }
+
+    int getTransferPerTick() {
+        return fluidTransferInfo.transferPerTick;
+    }
+
+    int getTotalAmount() {
+        int total = 0;
+        for (Section section : sections.values()) {
+            total += section.amount;
+        }
+        return total;
+    }
+
+    /** @return False if fluid has recently been inserted into this pipe from the given face. */
+    boolean isNetworkOutputActive(EnumFacing face) {
+        return sections.get(EnumPipePart.fromFacing(face)).ticksInDirection >= 0;
+    }
+
+    /** Sets the direction of the given face after the network has moved fluid through it. */
+    void onNetworkMove(EnumFacing face, boolean out) {
+        sections.get(EnumPipePart.fromFacing(face)).ticksInDirection = out ? COOLDOWN_OUTPUT : COOLDOWN_INPUT;
+    }
+
+    /** Spreads the given amount of fluid out over this pipe's sections, filling the centre first. Called by the network
+     * every tick after it has moved fluid around. */
+    void setNetworkAmount(int amount) {
+        int faces = 0;
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (pipe.isConnected(face)) {
+                faces++;
+            }
+        }
+        Section center = sections.get(EnumPipePart.CENTER);
+        center.amount = Math.min(amount, capacity);
+        int left = amount - center.amount;
+        for (EnumPipePart part : EnumPipePart.FACES) {
+            Section section = sections.get(part);
+            if (faces > 0 && pipe.isConnected(part.face)) {
+                section.amount = Math.min(capacity, (left + faces - 1) / faces);
+                left -= section.amount;
+                faces--;
+            } else {
+                section.amount = 0;
+            }
+        }
+        // Only possible if a connection was removed this tick, in which case the network is about to be rebuilt
+        center.amount += left;
+
+        for (Section section : sections.values()) {
+            Arrays.fill(section.incoming, 0);
+            if (section.ticksInDirection > 0) {
+                section.ticksInDirection--;
+            } else if (section.ticksInDirection < 0) {
+                section.ticksInDirection++;
+            }
         }
     }
 
@@ -416,21 +590,24 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         for (EnumPipePart part : EnumPipePart.FACES) {
             Section section = sections.get(part);
             if (section.getCurrentDirection().canOutput()) {
-                PipeEventFluid.SideCheck sideCheck = new PipeEventFluid.SideCheck(pipe.getHolder(), this, currentFluid);
-                sideCheck.disallowAllExcept(part.face);
-                pipe.getHolder().fireEvent(sideCheck);
-                if (sideCheck.getOrder().size() == 1) {
-                    IFluidHandler fluidHandler = pipe.getHolder().getCapabilityFromPipe(part.face, CapUtil.CAP_FLUIDS);
-                    if (fluidHandler == null) continue;
+                if (hasHandlers(PipeEventFluid.SideCheck.class)) {
+                    PipeEventFluid.SideCheck sideCheck = new PipeEventFluid.SideCheck(pipe.getHolder(), this, currentFluid);
+                    sideCheck.disallowAllExcept(part.face);
+                    pipe.getHolder().fireEvent(sideCheck);
+                    if (sideCheck.getOrder().size() != 1) {
+                        continue;
+                    }
+                }
+                IFluidHandler fluidHandler = pipe.getHolder().getCapabilityFromPipe(part.face, CapUtil.CAP_FLUIDS);
+                if (fluidHandler == null) continue;
 
-                    FluidStack fluidToPush = new FluidStack(currentFluid, section.drainInternal(fluidTransferInfo.transferPerTick, false));
+                FluidStack fluidToPush = new FluidStack(currentFluid, section.drainInternal(fluidTransferInfo.transferPerTick, false));
 
-                    if (fluidToPush.amount > 0) {
-                        int filled = fluidHandler.fill(fluidToPush, true);
-                        if (filled > 0) {
-                            section.drainInternal(filled, true);
-                            section.ticksInDirection = COOLDOWN_OUTPUT;
-                        }
+                if (fluidToPush.amount > 0) {
+                    int filled = fluidHandler.fill(fluidToPush, true);
+                    if (filled > 0) {
+                        section.drainInternal(filled, true);
+                        section.ticksInDirection = COOLDOWN_OUTPUT;
                     }
                 }
             }
@@ -460,11 +637,13 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         }
 
         if (realDirections.size() > 0) {
-            PipeEventFluid.SideCheck sideCheck = new PipeEventFluid.SideCheck(pipe.getHolder(), this, currentFluid);
-            sideCheck.disallowAllExcept(realDirections);
-            pipe.getHolder().fireEvent(sideCheck);
-
-            EnumSet<EnumFacing> set = sideCheck.getOrder();
+            Set<EnumFacing> set = realDirections;
+            if (hasHandlers(PipeEventFluid.SideCheck.class)) {
+                PipeEventFluid.SideCheck sideCheck = new PipeEventFluid.SideCheck(pipe.getHolder(), this, currentFluid);
+                sideCheck.disallowAllExcept(realDirections);
+                pipe.getHolder().fireEvent(sideCheck);
+                set = sideCheck.getOrder();
+            }
 
             List<EnumFacing> random = new ArrayList<>(set);
             Collections.shuffle(random);
@@ -512,9 +691,11 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         }
 
         int[] totalOffered = Arrays.copyOf(inputPerTick, 6);
-        PreMoveToCentre preMove = new PreMoveToCentre(pipe.getHolder(), this, currentFluid, Math.min(flowRate, spaceAvailable), totalOffered, inputPerTick);
-        // Event handlers edit the array in-place
-        pipe.getHolder().fireEvent(preMove);
+        if (hasHandlers(PreMoveToCentre.class)) {
+            PreMoveToCentre preMove = new PreMoveToCentre(pipe.getHolder(), this, currentFluid, Math.min(flowRate, spaceAvailable), totalOffered, inputPerTick);
+            // Event handlers edit the array in-place
+            pipe.getHolder().fireEvent(preMove);
+        }
 
         int[] fluidLeavingSide = new int[6];
 
@@ -542,8 +723,10 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         }
 
         int[] fluidEnteringCentre = Arrays.copyOf(fluidLeavingSide, 6);
-        OnMoveToCentre move = new OnMoveToCentre(pipe.getHolder(), this, currentFluid, fluidLeavingSide, fluidEnteringCentre);
-        pipe.getHolder().fireEvent(move);
+        if (hasHandlers(OnMoveToCentre.class)) {
+            OnMoveToCentre move = new OnMoveToCentre(pipe.getHolder(), this, currentFluid, fluidLeavingSide, fluidEnteringCentre);
+            pipe.getHolder().fireEvent(move);
+        }
 
         for (EnumPipePart part : EnumPipePart.FACES) {
             Section section = sections.get(part);
@@ -704,6 +887,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                 return 0;
             }
             if (doFill) {
+                TilePipeHolder.wakeUp(pipe.getHolder());
                 incoming[currentTime] += amountToFill;
                 amount += amountToFill;
             }
@@ -816,10 +1000,12 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             if (!getCurrentDirection().canInput() || !pipe.isConnected(part.face) || resource == null) {
                 return 0;
             }
-            PipeEventFluid.TryInsert tryInsert = new PipeEventFluid.TryInsert(pipe.getHolder(), PipeFlowFluids.this, part.face, resource);
-            pipe.getHolder().fireEvent(tryInsert);
-            if (tryInsert.isCanceled()) {
-                return 0;
+            if (hasHandlers(PipeEventFluid.TryInsert.class)) {
+                PipeEventFluid.TryInsert tryInsert = new PipeEventFluid.TryInsert(pipe.getHolder(), PipeFlowFluids.this, part.face, resource);
+                pipe.getHolder().fireEvent(tryInsert);
+                if (tryInsert.isCanceled()) {
+                    return 0;
+                }
             }
 
             if (currentFluid == null || currentFluid.isFluidEqual(resource)) {
@@ -32,6 +32,7 @@ import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
+import net.minecraftforge.items.IItemHandler;
 
 import buildcraft.api.core.IStackFilter;
 import buildcraft.api.inventory.IItemTransactor;
@@ -41,6 +42,7 @@ import buildcraft.api.transport.pipe.IPipe;
 import buildcraft.api.transport.pipe.IPipe.ConnectedType;
 import buildcraft.api.transport.pipe.IPipeHolder;
 import buildcraft.api.transport.pipe.PipeApi;
+import buildcraft.api.transport.pipe.PipeEvent;
 import buildcraft.api.transport.pipe.PipeEventItem;
 import buildcraft.api.transport.pipe.PipeFlow;
 
@@ -53,11 +55,17 @@ import buildcraft.lib.misc.data.DelayedList;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.net.cache.BuildCraftObjectCaches;
 
-public final class PipeFlowItems extends PipeFlow implements IFlowItems {
+import buildcraft.transport.pipe.ISleepablePipePart;
+import buildcraft.transport.tile.TilePipeHolder;
+
+public final class PipeFlowItems extends PipeFlow implements IFlowItems, ISleepablePipePart {
     private static final double EXTRACT_SPEED = 0.08;
+    private static final double DEFAULT_TARGET_SPEED = 0.04;
+    private static final double DEFAULT_SPEED_DELTA = 0.01;
     public static final int NET_CREATE_ITEM = 2;
 
     private final DelayedList<TravellingItem> items = new DelayedList<>();
+    private final TravellingItemMergeIndex mergeIndex = new TravellingItemMergeIndex();
 
     public PipeFlowItems(IPipe pipe) {
         super(pipe);
@@ -70,7 +78,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         for (int i = 0; i < list.tagCount(); i++) {
             TravellingItem item = new TravellingItem(list.getCompoundTagAt(i), tickNow);
             if (!item.stack.isEmpty()) {
-                items.add(item.getCurrentDelay(tickNow), item);
+                addItem(item.getCurrentDelay(tickNow), item);
             }
         }
     }
@@ -106,24 +114,36 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                 item.side = buffer.readEnumValue(EnumFacing.class);
                 item.colour = MessageUtil.readEnumOrNull(buffer, EnumDyeColor.class);
                 item.timeToDest = buffer.readUnsignedShort();
-                item.tickStarted = pipe.getHolder().getPipeWorld().getTotalWorldTime() + 1;
-                item.tickFinished = item.tickStarted + item.timeToDest;
-                items.add(item.timeToDest + 1, item);
+                addClientItem(item);
             }
         }
     }
 
+    /** Adds an item that was sent from the server, either by {@link #NET_CREATE_ITEM} or by
+     * {@link MessageTravellingItems}. */
+    void addClientItem(TravellingItem item) {
+        item.tickStarted = pipe.getHolder().getPipeWorld().getTotalWorldTime() + 1;
+        item.tickFinished = item.tickStarted + item.timeToDest;
+        items.add(item.timeToDest + 1, item);
+        TravellingItemPrediction.trackClient(item, item.tickStarted);
+    }
+
     void sendItemDataToClient(TravellingItem item) {
-        final int stackId = BuildCraftObjectCaches.storeItemStack(item.stack);
-        sendCustomPayload(NET_CREATE_ITEM, (buffer) -> {
-            PacketBufferBC buf = PacketBufferBC.asPacketBufferBc(buffer);
-            buf.writeInt(stackId);
-            buf.writeShort(item.stack.getCount());
-            buf.writeBoolean(item.toCenter);
-            buf.writeEnumValue(item.side);
-            MessageUtil.writeEnumOrNull(buf, item.colour);
-            buf.writeShort(item.timeToDest > Short.MAX_VALUE ? Short.MAX_VALUE : item.timeToDest);
-        });
+        if (item.id == 0) {
+            item.id = TravellingItemPrediction.allocateId();
+        }
+        item.hopsSinceSync = 0;
+        IPipeHolder holder = pipe.getHolder();
+        TravellingItemSync.get(holder.getPipeWorld()).addItem(holder.getPipePos(), item);
+    }
+
+    /** Tells the client that an item it predicted no longer exists. */
+    private void sendCancelToClient(@Nullable TravellingItemPrediction.Expected expected) {
+        if (expected == null) {
+            return;
+        }
+        IPipeHolder holder = pipe.getHolder();
+        TravellingItemSync.get(holder.getPipeWorld()).addCancel(holder.getPipePos(), expected.id);
     }
 
     // IFlowItems
@@ -161,7 +181,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
             throw new IllegalStateException("The transactor " + trans + " returned an empty itemstack from a known good request!");
         }
 
-        insertItemEvents(stack, colour, EXTRACT_SPEED, from);
+        insertItemEvents(stack, colour, EXTRACT_SPEED, from, null);
 
         return count;
     }
@@ -195,8 +215,16 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         World world = pipe.getHolder().getPipeWorld();
 
         List<TravellingItem> toTick = items.advance();
+        for (TravellingItem item : toTick) {
+            mergeIndex.remove(item);
+        }
         if (world.isRemote) {
-            // TODO: Client item advancing/intelligent stuffs
+            long now = world.getTotalWorldTime();
+            for (TravellingItem item : toTick) {
+                if (!item.cancelled) {
+                    predictNextHop(item, now);
+                }
+            }
             return;
         }
 
@@ -209,16 +237,88 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         }
     }
 
+    // Sleeping
+
+    @Override
+    public int getIdleTicks() {
+        return items.getMinDelay();
+    }
+
+    @Override
+    public void onWakeUp(int ticksSlept) {
+        // None of the skipped ticks had any items, but the list still needs to catch up
+        items.skip(ticksSlept);
+    }
+
+    // Client prediction
+
+    /** Moves an item on the client that has just reached the center or end of this pipe to where it will most likely
+     * go next. The server will correct this if it was wrong. */
+    private void predictNextHop(TravellingItem item, long now) {
+        if (item.id == 0) {
+            return;
+        }
+        TravellingItem next = new TravellingItem(item.clientItemLink, item.stackSize);
+        if (item.toCenter) {
+            EnumFacing exit = TravellingItemPrediction.predictExit(pipe, item.side);
+            if (exit == null) {
+                TravellingItemPrediction.untrackClient(item);
+                return;
+            }
+            next.toCenter = false;
+            next.side = exit;
+            next.speed = TravellingItemPrediction.adjustSpeed(item.speed, DEFAULT_TARGET_SPEED, DEFAULT_SPEED_DELTA);
+            addPredictedItem(item, next, now);
+        } else {
+            PipeFlowItems nextFlow = TravellingItemPrediction.predictNextFlow(pipe, item.side);
+            if (nextFlow == null) {
+                TravellingItemPrediction.untrackClient(item);
+                return;
+            }
+            next.toCenter = true;
+            next.side = item.side.getOpposite();
+            next.speed = TravellingItemPrediction.clampInsertSpeed(item.speed);
+            nextFlow.addPredictedItem(item, next, now);
+        }
+    }
+
+    private void addPredictedItem(TravellingItem from, TravellingItem next, long now) {
+        next.id = from.id;
+        next.colour = from.colour;
+        next.genTimings(now, getPipeLength(next.side));
+        items.add(next.timeToDest, next);
+        TravellingItemPrediction.trackClient(next, now);
+    }
+
+    // Server item movement
+
     private void onItemReachCenter(TravellingItem item) {
         IPipeHolder holder = pipe.getHolder();
-        PipeEventItem.ReachCenter reachCenter = new PipeEventItem.ReachCenter(holder, this, item.colour, item.stack, item.side);
-        holder.fireEvent(reachCenter);
-        if (reachCenter.getStack().isEmpty()) {
+        TravellingItemPrediction.Expected expected = null;
+        if (item.id != 0) {
+            EnumFacing exit = TravellingItemPrediction.predictExit(pipe, item.side);
+            if (exit != null) {
+                double speed = TravellingItemPrediction.adjustSpeed(item.speed, DEFAULT_TARGET_SPEED, DEFAULT_SPEED_DELTA);
+                expected = new TravellingItemPrediction.Expected(item, exit, speed, false);
+            }
+        }
+        EnumDyeColor colour = item.colour;
+        ItemStack stack = item.stack;
+        EnumFacing from = item.side;
+        if (hasHandlers(PipeEventItem.ReachCenter.class)) {
+            PipeEventItem.ReachCenter reachCenter = new PipeEventItem.ReachCenter(holder, this, colour, stack, from);
+            holder.fireEvent(reachCenter);
+            colour = reachCenter.colour;
+            stack = reachCenter.getStack();
+            from = reachCenter.from;
+        }
+        if (stack.isEmpty()) {
+            sendCancelToClient(expected);
             return;
         }
 
-        PipeEventItem.SideCheck sideCheck = new PipeEventItem.SideCheck(holder, this, reachCenter.colour, reachCenter.from, reachCenter.getStack());
-        sideCheck.disallow(reachCenter.from);
+        PipeEventItem.SideCheck sideCheck = new PipeEventItem.SideCheck(holder, this, colour, from, stack);
+        sideCheck.disallow(from);
         for (EnumFacing face : EnumFacing.VALUES) {
             if (item.tried.contains(face) || !pipe.isConnected(face)) {
                 sideCheck.disallow(face);
@@ -228,49 +328,49 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
 
         List<EnumSet<EnumFacing>> order = sideCheck.getOrder();
         if (order.isEmpty()) {
-            PipeEventItem.TryBounce tryBounce = new PipeEventItem.TryBounce(holder, this, reachCenter.colour, reachCenter.from, reachCenter.getStack());
+            PipeEventItem.TryBounce tryBounce = new PipeEventItem.TryBounce(holder, this, colour, from, stack);
             holder.fireEvent(tryBounce);
             if (tryBounce.canBounce) {
-                order = ImmutableList.of(EnumSet.of(reachCenter.from));
+                order = ImmutableList.of(EnumSet.of(from));
             } else {
                 dropItem(item.stack, null, item.side.getOpposite(), item.speed);
+                sendCancelToClient(expected);
                 return;
             }
         }
 
-        PipeEventItem.ItemEntry entry = new PipeEventItem.ItemEntry(reachCenter.colour, reachCenter.getStack(), reachCenter.from);
-        PipeEventItem.Split split = new PipeEventItem.Split(holder, this, order, entry);
-        holder.fireEvent(split);
-        ImmutableList<PipeEventItem.ItemEntry> entries = ImmutableList.copyOf(split.items);
+        PipeEventItem.ItemEntry entry = new PipeEventItem.ItemEntry(colour, stack, from);
+        ImmutableList<PipeEventItem.ItemEntry> entries;
+        if (hasHandlers(PipeEventItem.Split.class)) {
+            PipeEventItem.Split split = new PipeEventItem.Split(holder, this, order, entry);
+            holder.fireEvent(split);
+            entries = ImmutableList.copyOf(split.items);
+        } else {
+            entries = ImmutableList.of(entry);
+        }
 
         PipeEventItem.FindDest findDest = new PipeEventItem.FindDest(holder, this, order, entries);
         holder.fireEvent(findDest);
 
         World world = holder.getPipeWorld();
         long now = world.getTotalWorldTime();
+        boolean modifySpeedHandled = hasHandlers(PipeEventItem.ModifySpeed.class);
         for (PipeEventItem.ItemEntry itemEntry : findDest.items) {
             if (itemEntry.stack.isEmpty()) {
                 continue;
             }
-            PipeEventItem.ModifySpeed modifySpeed = new PipeEventItem.ModifySpeed(holder, this, itemEntry, item.speed);
-            modifySpeed.modifyTo(0.04, 0.01);
-            holder.fireEvent(modifySpeed);
-
-            double target = modifySpeed.targetSpeed;
-            double maxDelta = modifySpeed.maxSpeedChange;
-            double nSpeed = item.speed;
-            if (nSpeed < target) {
-                nSpeed += maxDelta;
-                if (nSpeed > target) {
-                    nSpeed = target;
-                }
-            } else if (nSpeed > target) {
-                nSpeed -= maxDelta;
-                if (nSpeed < target) {
-                    nSpeed = target;
-                }
+            double target = DEFAULT_TARGET_SPEED;
+            double maxDelta = DEFAULT_SPEED_DELTA;
+            if (modifySpeedHandled) {
+                PipeEventItem.ModifySpeed modifySpeed = new PipeEventItem.ModifySpeed(holder, this, itemEntry, item.speed);
+                modifySpeed.modifyTo(DEFAULT_TARGET_SPEED, DEFAULT_SPEED_DELTA);
+                holder.fireEvent(modifySpeed);
+                target = modifySpeed.targetSpeed;
+                maxDelta = modifySpeed.maxSpeedChange;
             }
 
+            double nSpeed = TravellingItemPrediction.adjustSpeed(item.speed, target, maxDelta);
+
             List<EnumFacing> destinations = itemEntry.to;
             if (destinations == null || destinations.size() == 0) {
                 destinations = findDest.generateRandomOrder();
@@ -285,20 +385,44 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                 newItem.side = destinations.get(0);
                 newItem.speed = nSpeed;
                 newItem.genTimings(now, getPipeLength(newItem.side));
-                items.add(newItem.timeToDest, newItem);
+                addItem(newItem.timeToDest, newItem);
+                if (expected != null) {
+                    boolean predicted = expected.applyAndMatch(newItem) && findDest.items.size() == 1;
+                    expected = null;
+                    if (predicted) {
+                        continue;
+                    }
+                }
                 sendItemDataToClient(newItem);
             }
         }
+        sendCancelToClient(expected);
     }
 
     private void onItemReachEnd(TravellingItem item) {
         IPipeHolder holder = pipe.getHolder();
-        PipeEventItem.ReachEnd reachEnd = new PipeEventItem.ReachEnd(holder, this, item.colour, item.stack, item.side);
-        holder.fireEvent(reachEnd);
-        item.colour = reachEnd.colour;
-        item.stack = reachEnd.getStack();
+        TravellingItemPrediction.Expected expected = null;
+        PipeFlowItems predictedFlow = null;
+        if (item.id != 0) {
+            predictedFlow = TravellingItemPrediction.predictNextFlow(pipe, item.side);
+            if (predictedFlow != null) {
+                BlockPos pos = holder.getPipePos();
+                BlockPos next = pos.offset(item.side);
+                // Players watching the next chunk might not have seen this item yet
+                boolean otherChunk = (pos.getX() >> 4) != (next.getX() >> 4) || (pos.getZ() >> 4) != (next.getZ() >> 4);
+                double speed = TravellingItemPrediction.clampInsertSpeed(item.speed);
+                expected = new TravellingItemPrediction.Expected(item, item.side.getOpposite(), speed, otherChunk);
+            }
+        }
+        if (hasHandlers(PipeEventItem.ReachEnd.class)) {
+            PipeEventItem.ReachEnd reachEnd = new PipeEventItem.ReachEnd(holder, this, item.colour, item.stack, item.side);
+            holder.fireEvent(reachEnd);
+            item.colour = reachEnd.colour;
+            item.stack = reachEnd.getStack();
+        }
         ItemStack excess = item.stack;
         if (excess.isEmpty()) {
+            sendCancelToClient(expected);
             return;
         }
         if (pipe.isConnected(item.side)) {
@@ -310,7 +434,12 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                         break;
                     }
                     PipeFlow flow = oPipe.getFlow();
-                    if (flow instanceof IFlowItems) {
+                    if (flow == predictedFlow && expected != null) {
+                        excess = predictedFlow.injectItemFromPipe(excess, item.side.getOpposite(), item.colour, item.speed, expected);
+                        if (excess.isEmpty()) {
+                            return;
+                        }
+                    } else if (flow instanceof IFlowItems) {
                         IFlowItems oFlow = (IFlowItems) flow;
                         excess = oFlow.injectItem(excess, true, item.side.getOpposite(), item.colour, item.speed);
                         if (excess.isEmpty()) {
@@ -320,14 +449,26 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                     break;
                 }
                 case TILE: {
-                    TileEntity tile = pipe.getConnectedTile(item.side);
-                    IInjectable injectable = ItemTransactorHelper.getInjectable(tile, item.side.getOpposite());
-                    excess = injectable.injectItem(excess, true, item.side.getOpposite(), item.colour, item.speed);
-                    if (excess.isEmpty()) {
-                        return;
+                    // The holder caches its neighbours capabilities, so ask it first
+                    IInjectable injectable = holder.getCapabilityFromPipe(item.side, PipeApi.CAP_INJECTABLE);
+                    if (injectable != null) {
+                        excess = injectable.injectItem(excess, true, item.side.getOpposite(), item.colour, item.speed);
+                        if (excess.isEmpty()) {
+                            return;
+                        }
                     }
 
-                    IItemTransactor transactor = ItemTransactorHelper.getTransactor(tile, item.side.getOpposite());
+                    IItemTransactor transactor = holder.getCapabilityFromPipe(item.side, CapUtil.CAP_ITEM_TRANSACTOR);
+                    if (transactor == null) {
+                        IItemHandler handler = holder.getCapabilityFromPipe(item.side, CapUtil.CAP_ITEMS);
+                        if (handler != null) {
+                            transactor = ItemTransactorHelper.getTransactor(handler);
+                        } else {
+                            // Plain inventories
+                            TileEntity tile = pipe.getConnectedTile(item.side);
+                            transactor = ItemTransactorHelper.getTransactor(tile, item.side.getOpposite());
+                        }
+                    }
                     excess = transactor.insert(excess, false, false);
 
                     if (excess.isEmpty()) {
@@ -345,7 +486,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         item.toCenter = true;
         item.stack = excess;
         item.genTimings(holder.getPipeWorld().getTotalWorldTime(), getPipeLength(item.side));
-        items.add(item.timeToDest, item);
+        addItem(item.timeToDest, item);
         sendItemDataToClient(item);
     }
 
@@ -368,10 +509,12 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         ent.motionY = motion.getFrontOffsetY() * speed;
         ent.motionZ = motion.getFrontOffsetZ() * speed;
 
-        PipeEventItem.Drop drop = new PipeEventItem.Drop(holder, this, ent);
-        holder.fireEvent(drop);
-        if (ent.getEntityItem().isEmpty() || ent.isDead) {
-            return;
+        if (hasHandlers(PipeEventItem.Drop.class)) {
+            PipeEventItem.Drop drop = new PipeEventItem.Drop(holder, this, ent);
+            holder.fireEvent(drop);
+            if (ent.getEntityItem().isEmpty() || ent.isDead) {
+                return;
+            }
         }
 
         world.spawnEntity(ent);
@@ -388,13 +531,23 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         if (pipe.getHolder().getPipeWorld().isRemote) {
             throw new IllegalStateException("Cannot inject items on the client side!");
         }
+        return injectItem(stack, doAdd, from, colour, speed, null);
+    }
+
+    /** Injects an item that has come directly from an adjacent {@link PipeFlowItems}, which the client will have
+     * already predicted. */
+    @Nonnull
+    ItemStack injectItemFromPipe(@Nonnull ItemStack stack, EnumFacing from, EnumDyeColor colour, double speed, TravellingItemPrediction.Expected expected) {
+        return injectItem(stack, true, from, colour, speed, expected);
+    }
+
+    @Nonnull
+    private ItemStack injectItem(@Nonnull ItemStack stack, boolean doAdd, EnumFacing from, EnumDyeColor colour, double speed, @Nullable TravellingItemPrediction.Expected expected) {
         if (!canInjectItems(from)) {
             return stack;
         }
 
-        if (speed < 0.01) {
-            speed = 0.01;
-        }
+        speed = TravellingItemPrediction.clampInsertSpeed(speed);
 
         // Try insert
 
@@ -406,12 +559,15 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         ItemStack toSplit = stack.copy();
         ItemStack toInsert = toSplit.splitStack(tryInsert.accepted);
 
-        if (doAdd) {
-            insertItemEvents(toInsert, colour, speed, from);
-        }
-
         if (toSplit.isEmpty()) {
             toSplit = StackUtil.EMPTY;
+        } else {
+            // Only part of the item moved, so the client's prediction will be corrected by the rest of it bouncing
+            expected = null;
+        }
+
+        if (doAdd) {
+            insertItemEvents(toInsert, colour, speed, from, expected);
         }
 
         return toSplit;
@@ -437,17 +593,20 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         item.colour = colour;
         item.genTimings(now, 0);
         item.tried.add(from);
-        addItemTryMerge(item);
+        addItemTryMerge(item, false);
     }
 
-    /** Used internally to split up manual insertions from controlled extractions. */
-    private void insertItemEvents(@Nonnull ItemStack toInsert, EnumDyeColor colour, double speed, EnumFacing from) {
+    /** Used internally to split up manual insertions from controlled extractions.
+     *
+     * @param expected The client's prediction for this item, if it moved here directly from another pipe. */
+    private void insertItemEvents(@Nonnull ItemStack toInsert, EnumDyeColor colour, double speed, EnumFacing from, @Nullable TravellingItemPrediction.Expected expected) {
         IPipeHolder holder = pipe.getHolder();
 
         PipeEventItem.OnInsert onInsert = new PipeEventItem.OnInsert(holder, this, colour, toInsert, from);
         holder.fireEvent(onInsert);
 
         if (onInsert.getStack().isEmpty()) {
+            sendCancelToClient(expected);
             return;
         }
 
@@ -462,19 +621,33 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         item.stack = onInsert.getStack();
         item.genTimings(now, getPipeLength(from));
         item.tried.add(from);
-        addItemTryMerge(item);
+        boolean predicted = expected != null && expected.applyAndMatch(item);
+        addItemTryMerge(item, predicted);
     }
-    
-    private void addItemTryMerge(TravellingItem item) {
-        for (List<TravellingItem> list : items.getAllElements()) {
-            for (TravellingItem item2 : list) {
-                if (item2.mergeWith(item)) {
-                    return;
-                }
+
+    /** @param predicted True if the client has already predicted this item, and so it doesn't need to be sent. */
+    private void addItemTryMerge(TravellingItem item, boolean predicted) {
+        TravellingItem target = mergeIndex.findMergeTarget(item);
+        if (target != null && target.mergeWith(item)) {
+            if (item.id != 0) {
+                // The client predicted this item, but it doesn't exist any more
+                IPipeHolder holder = pipe.getHolder();
+                TravellingItemSync.get(holder.getPipeWorld()).addCancel(holder.getPipePos(), item.id);
             }
+            return;
+        }
+        addItem(item.timeToDest, item);
+        if (!predicted) {
+            sendItemDataToClient(item);
         }
-        items.add(item.timeToDest, item);
-        sendItemDataToClient(item);
+    }
+
+    /** Adds a server-side item, keeping {@link #mergeIndex} in sync. */
+    private void addItem(int delay, TravellingItem item) {
+        // The item list has to be caught up before adding to it
+        TilePipeHolder.wakeUp(pipe.getHolder());
+        items.add(delay, item);
+        mergeIndex.add(item);
     }
 
     @Nullable
@@ -487,6 +660,15 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         return null;
     }
 
+    /** @return False if firing an event of the given type is known to be a no-op, and so can be skipped entirely. */
+    private boolean hasHandlers(Class<? extends PipeEvent> eventClass) {
+        IPipeHolder holder = pipe.getHolder();
+        if (holder instanceof TilePipeHolder) {
+            return ((TilePipeHolder) holder).eventBus.hasHandlers(eventClass);
+        }
+        return true;
+    }
+
     private double getPipeLength(EnumFacing side) {
         if (side == null) {
             return 0;
@@ -503,7 +685,11 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
     public List<TravellingItem> getAllItemsForRender() {
         List<TravellingItem> all = new ArrayList<>();
         for (List<TravellingItem> innerList : items.getAllElements()) {
-            all.addAll(innerList);
+            for (TravellingItem item : innerList) {
+                if (!item.cancelled) {
+                    all.add(item);
+                }
+            }
         }
         return all;
     }
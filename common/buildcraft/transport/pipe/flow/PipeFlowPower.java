@@ -46,17 +46,27 @@ import buildcraft.lib.misc.LocaleUtil;
 import buildcraft.lib.misc.MathUtil;
 import buildcraft.lib.misc.data.AverageInt;
 
-public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
+import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.pipe.ISleepablePipePart;
+import buildcraft.transport.tile.TilePipeHolder;
+
+public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable, ISleepablePipePart {
     public static final long DEFAULT_MAX_POWER = MjAPI.MJ * 10;
     public static final int NET_POWER_AMOUNTS = 2;
 
-    private long maxPower = -1;
-    private long powerLoss = -1;
-    private long powerResistance = -1;
+    long maxPower = -1;
+    long powerLoss = -1;
+    long powerResistance = -1;
 
     private long currentWorldTime;
 
-    private boolean isReceiver = false;
+    boolean isReceiver = false;
+
+    /** The network that this pipe is in, if {@link BCTransportConfig#usePowerNetworks} is enabled. */
+    PowerNetwork network;
+    /** This pipe's index in its network's producers, or -1 if it isn't one. */
+    int networkIndex = -1;
+    private long lastNetworkDisplay = -1;
     private final EnumMap<EnumFacing, Section> sections = Arrays.stream(EnumFacing.VALUES)
         .collect(Collectors.toMap(
             Function.identity(),
@@ -158,6 +168,16 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         } else if (powerResistance < 0) {
             powerResistance = powerLoss * MjAPI.MJ / maxPower;
         }
+        invalidateNetwork();
+    }
+
+    /** Makes this pipe's network find all of its pipes again. Called whenever this pipe's connections change, or it is
+     * removed from the world. */
+    public void invalidateNetwork() {
+        if (network != null) {
+            network.invalidate();
+            network = null;
+        }
     }
 
     @Override
@@ -202,6 +222,13 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
     public void getDebugInfo(List<String> left, List<String> right, EnumFacing side) {
         left.add("maxPower = " + LocaleUtil.localizeMj(maxPower));
         left.add("isReceiver = " + isReceiver);
+        if (network != null) {
+            left.add("network = " + network.getMemberCount() + " pipes, " + network.getProducerCount() + " producers, "
+                + network.getConsumerCount() + " consumers");
+            left.add("- stored = " + LocaleUtil.localizeMj(network.getStored()) + ", sent = "
+                + LocaleUtil.localizeMj(network.getLastSent()));
+            return;
+        }
         left.add("internalPower = " + arrayToString(s -> s.internalPower) + " <- " + arrayToString(s -> s.internalNextPower));
         left.add("- powerQuery: " + arrayToString(s -> s.powerQuery) + " <- " + arrayToString(s -> s.nextPowerQuery));
         left.add("- power: IN " + arrayToString(s -> s.debugPowerInput) + ", OUT " + arrayToString(s -> s.debugPowerOutput));
@@ -225,6 +252,11 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
             reconfigure();
         }
 
+        if (BCTransportConfig.usePowerNetworks) {
+            tickNetwork();
+            return;
+        }
+
         step();
 
         init();
@@ -323,6 +355,47 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         }
     }
 
+    @Override
+    public int getIdleTicks() {
+        if (maxPower == -1) {
+            return 0;
+        }
+        if (BCTransportConfig.usePowerNetworks) {
+            // Receivers tick the network, and the network wakes the rest up when it starts sending power
+            if (isReceiver || network == null || !network.isValid() || lastNetworkDisplay != 0) {
+                return 0;
+            }
+            return UNTIL_WOKEN;
+        }
+        for (EnumFacing face : EnumFacing.VALUES) {
+            // Tiles are asked every tick how much power they want
+            if (pipe.getConnectedType(face) == ConnectedType.TILE) {
+                return 0;
+            }
+            Section s = sections.get(face);
+            if (s.powerQuery != 0 || s.nextPowerQuery != 0 || s.internalPower != 0 || s.internalNextPower != 0) {
+                return 0;
+            }
+        }
+        return UNTIL_WOKEN;
+    }
+
+    private void tickNetwork() {
+        if (network == null || !network.isValid()) {
+            PowerNetwork.build(this);
+        }
+        network.tick(pipe.getHolder().getPipeWorld().getTotalWorldTime());
+
+        long display = Math.min(network.getLastSent(), maxPower);
+        if (display != lastNetworkDisplay) {
+            lastNetworkDisplay = display;
+            for (EnumFacing face : EnumFacing.VALUES) {
+                sections.get(face).displayPower = pipe.isConnected(face) ? display : 0;
+            }
+            sendPayload(NET_POWER_AMOUNTS);
+        }
+    }
+
     private void step() {
         long now = pipe.getHolder().getPipeWorld().getTotalWorldTime();
         if (currentWorldTime != now) {
@@ -336,6 +409,7 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
     }
 
     private void requestPower(EnumFacing from, long amount) {
+        TilePipeHolder.wakeUp(pipe.getHolder());
         step();
 
         Section s = sections.get(from);
@@ -386,6 +460,9 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
 
         @Override
         public long getPowerRequested() {
+            if (BCTransportConfig.usePowerNetworks) {
+                return network == null ? 0 : network.getPowerRequested(PipeFlowPower.this);
+            }
             long req = 0;
             for (EnumFacing face : EnumFacing.VALUES) {
                 if (face != this.side) {
@@ -397,6 +474,7 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
 
         long receivePowerInternal(long sent) {
             if (sent > 0) {
+                TilePipeHolder.wakeUp(pipe.getHolder());
                 debugPowerOffered += sent;
                 internalNextPower += sent;
                 return 0;
@@ -407,6 +485,9 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         @Override
         public long receivePower(long microJoules, boolean simulate) {
             if (isReceiver) {
+                if (BCTransportConfig.usePowerNetworks) {
+                    return network == null ? microJoules : network.receivePower(PipeFlowPower.this, microJoules, simulate);
+                }
                 PipeFlowPower.this.step();
                 if (!simulate) {
                     return this.receivePowerInternal(microJoules);
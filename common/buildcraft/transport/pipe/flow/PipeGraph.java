@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.IPipe.ConnectedType;
+import buildcraft.api.transport.pipe.PipeFlow;
+
+/** A group of pipes with the same type of flow that are connected to each other, along with which of them are next to
+ * each other. Used to build the {@link PowerNetwork} and {@link FluidNetwork}, which only differ in what they do with
+ * the pipes once they have been found. */
+final class PipeGraph<F extends PipeFlow> {
+    /** Every pipe in the graph, in the order that they were found. The first one is the one the search started from. */
+    final List<F> members;
+    /** For every member and face (at {@code index * 6 + face.ordinal()}), the index of the member on that side, or -1
+     * if there isn't one. */
+    final int[] neighbours;
+
+    private PipeGraph(List<F> members, int[] neighbours) {
+        this.members = members;
+        this.neighbours = neighbours;
+    }
+
+    /** Searches outwards from the given pipe, one connection at a time.
+     *
+     * @param flowClass The type of flow that every pipe in the graph must have.
+     * @param filter Called once for every pipe that is found (apart from the first one), in the order that they are
+     *            found. Pipes that it returns false for are left out, and aren't searched through. */
+    static <F extends PipeFlow> PipeGraph<F> search(F start, Class<F> flowClass, Predicate<F> filter) {
+        Map<F, Integer> indices = new IdentityHashMap<>();
+        List<F> found = new ArrayList<>();
+        indices.put(start, 0);
+        found.add(start);
+        for (int i = 0; i < found.size(); i++) {
+            IPipe pipe = found.get(i).pipe;
+            for (EnumFacing face : EnumFacing.VALUES) {
+                F other = getConnectedFlow(pipe, face, flowClass);
+                if (other != null && !indices.containsKey(other) && filter.test(other)) {
+                    indices.put(other, found.size());
+                    found.add(other);
+                }
+            }
+        }
+        int[] neighbours = new int[found.size() * 6];
+        Arrays.fill(neighbours, -1);
+        for (int i = 0; i < found.size(); i++) {
+            for (EnumFacing face : EnumFacing.VALUES) {
+                Integer other = indices.get(getConnectedFlow(found.get(i).pipe, face, flowClass));
+                if (other != null) {
+                    neighbours[i * 6 + face.ordinal()] = other;
+                }
+            }
+        }
+        return new PipeGraph<>(found, neighbours);
+    }
+
+    /** @return The flow of the pipe on the given face, if both pipes are connected to each other and it has the right
+     *         type of flow. */
+    private static <F extends PipeFlow> F getConnectedFlow(IPipe pipe, EnumFacing face, Class<F> flowClass) {
+        if (pipe.getConnectedType(face) != ConnectedType.PIPE) {
+            return null;
+        }
+        IPipe other = pipe.getConnectedPipe(face);
+        if (other == null || !other.isConnected(face.getOpposite()) || !flowClass.isInstance(other.getFlow())) {
+            return null;
+        }
+        return flowClass.cast(other.getFlow());
+    }
+}
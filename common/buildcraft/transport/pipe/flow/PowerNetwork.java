@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.api.mj.IMjReceiver;
+import buildcraft.api.mj.MjAPI;
+import buildcraft.api.transport.pipe.IPipe.ConnectedType;
+
+import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.BCTransportConfig.PowerLossMode;
+import buildcraft.transport.tile.TilePipeHolder;
+
+/** Every {@link PipeFlowPower} that is connected together, when {@link BCTransportConfig#usePowerNetworks} is enabled.
+ * Rather than each pipe passing power one pipe further every tick, the network works out how much power can go from
+ * its receiving pipes (producers) to every tile that it is connected to (consumers) in a single step per tick.
+ * <p>
+ * The paths between them are only worked out when the network is built (when a pipe in it is connected, disconnected,
+ * loaded or unloaded), so each tick only costs as much as the number of producers and consumers. The pipes themselves
+ * only keep the values that they display. */
+final class PowerNetwork {
+    private final PipeFlowPower[] members;
+    private final PipeFlowPower[] producers;
+    private final Consumer[] consumers;
+    /** The most power that can be stored in the network, so that producers can't fill it up forever. */
+    private final long capacity;
+
+    private boolean valid = true;
+    private long lastTick = Long.MIN_VALUE;
+
+    /** Power that has been received but not yet sent anywhere. */
+    private long stored;
+    /** The power that every producer has received this tick. */
+    private final long[] received;
+    /** The total power that the consumers asked for last tick, as seen by the producers (so including losses). */
+    private long demand;
+    /** The power that was sent out of the network last tick. */
+    private long lastSent;
+
+    private static final class Consumer {
+        final PipeFlowPower flow;
+        final EnumFacing face;
+        /** The fraction of the power that arrives, out of {@link MjAPI#MJ}. */
+        final long efficiency;
+        /** The power lost every tick along the path, if anything is sent along it. */
+        final long loss;
+        /** The most power that can be sent along the path in a single tick. */
+        final long limit;
+
+        Consumer(PipeFlowPower flow, EnumFacing face, long efficiency, long loss, long limit) {
+            this.flow = flow;
+            this.face = face;
+            this.efficiency = efficiency;
+            this.loss = loss;
+            this.limit = limit;
+        }
+    }
+
+    private PowerNetwork(PipeFlowPower[] members, int[] neighbours) {
+        this.members = members;
+        List<PipeFlowPower> producerList = new ArrayList<>();
+        long cap = 0;
+        for (int i = 0; i < members.length; i++) {
+            PipeFlowPower flow = members[i];
+            flow.network = this;
+            flow.networkIndex = -1;
+            if (flow.isReceiver) {
+                flow.networkIndex = producerList.size();
+                producerList.add(flow);
+                cap += flow.maxPower;
+            }
+        }
+        this.producers = producerList.toArray(new PipeFlowPower[0]);
+        this.received = new long[producers.length];
+        this.capacity = cap;
+        this.consumers = findConsumers(neighbours);
+    }
+
+    /** Creates a new network out of every kinesis pipe that the given one is connected to, whether or not they are
+     * receivers. Their old networks are marked invalid straight away, as every pipe in them ends up in this one. */
+    static PowerNetwork build(PipeFlowPower start) {
+        PipeGraph<PipeFlowPower> graph = PipeGraph.search(start, PipeFlowPower.class, flow -> true);
+        for (PipeFlowPower flow : graph.members) {
+            if (flow.network != null) {
+                flow.network.valid = false;
+            }
+        }
+        return new PowerNetwork(graph.members.toArray(new PipeFlowPower[0]), graph.neighbours);
+    }
+
+    /** Works out the best path from any producer to every pipe, and then creates a consumer for every tile that those
+     * pipes are connected to. */
+    private Consumer[] findConsumers(int[] neighbours) {
+        int count = members.length;
+        long[] cost = new long[count];
+        long[] efficiency = new long[count];
+        long[] loss = new long[count];
+        long[] limit = new long[count];
+        Arrays.fill(cost, Long.MAX_VALUE);
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        for (int i = 0; i < count; i++) {
+            PipeFlowPower flow = members[i];
+            if (flow.isReceiver) {
+                cost[i] = 0;
+                efficiency[i] = getEfficiency(flow, MjAPI.MJ);
+                loss[i] = getLoss(flow, 0);
+                limit[i] = flow.maxPower;
+                queue.add(new long[] { 0, i });
+            }
+        }
+        while (!queue.isEmpty()) {
+            long[] next = queue.poll();
+            int from = (int) next[1];
+            if (next[0] != cost[from]) {
+                continue;
+            }
+            for (int f = 0; f < 6; f++) {
+                int to = neighbours[from * 6 + f];
+                if (to < 0) {
+                    continue;
+                }
+                PipeFlowPower flow = members[to];
+                // Every pipe costs at least 1, so that the shortest path is used when there isn't any resistance
+                long newCost = cost[from] + flow.powerResistance + 1;
+                if (newCost < cost[to]) {
+                    cost[to] = newCost;
+                    efficiency[to] = getEfficiency(flow, efficiency[from]);
+                    loss[to] = getLoss(flow, loss[from]);
+                    limit[to] = Math.min(limit[from], flow.maxPower);
+                    queue.add(new long[] { newCost, to });
+                }
+            }
+        }
+
+        List<Consumer> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (cost[i] == Long.MAX_VALUE) {
+                continue;
+            }
+            PipeFlowPower flow = members[i];
+            for (EnumFacing face : EnumFacing.VALUES) {
+                if (flow.pipe.getConnectedType(face) == ConnectedType.TILE) {
+                    list.add(new Consumer(flow, face, efficiency[i], loss[i], limit[i]));
+                }
+            }
+        }
+        return list.toArray(new Consumer[0]);
+    }
+
+    private static long getEfficiency(PipeFlowPower flow, long efficiency) {
+        if (BCTransportConfig.lossMode != PowerLossMode.PERCENTAGE) {
+            return efficiency;
+        }
+        return efficiency * (MjAPI.MJ - flow.powerResistance) / MjAPI.MJ;
+    }
+
+    private static long getLoss(PipeFlowPower flow, long loss) {
+        if (BCTransportConfig.lossMode != PowerLossMode.ABSOLUTE) {
+            return loss;
+        }
+        return loss + flow.powerLoss;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    int getMemberCount() {
+        return members.length;
+    }
+
+    int getProducerCount() {
+        return producers.length;
+    }
+
+    int getConsumerCount() {
+        return consumers.length;
+    }
+
+    long getStored() {
+        return stored;
+    }
+
+    /** @return The power sent out of the network last tick, for displaying in the pipes. */
+    long getLastSent() {
+        return lastSent;
+    }
+
+    // Producers
+
+    long getPowerRequested(PipeFlowPower producer) {
+        int index = producer.networkIndex;
+        if (!valid || index < 0) {
+            return 0;
+        }
+        long wanted = Math.min(demand, capacity) - stored;
+        return Math.max(0, Math.min(wanted, producer.maxPower - received[index]));
+    }
+
+    /** @return The excess power that wasn't accepted. */
+    long receivePower(PipeFlowPower producer, long microJoules, boolean simulate) {
+        int index = producer.networkIndex;
+        if (!valid || index < 0 || microJoules <= 0) {
+            return microJoules;
+        }
+        long accepted = Math.min(microJoules, producer.maxPower - received[index]);
+        accepted = Math.max(0, Math.min(accepted, capacity - stored));
+        if (!simulate) {
+            received[index] += accepted;
+            stored += accepted;
+        }
+        return microJoules - accepted;
+    }
+
+    // Ticking
+
+    /** Sends as much of the stored power as possible to the consumers. Every pipe in the network calls this every tick,
+     * but only the first call in each tick does anything. */
+    void tick(long now) {
+        if (!valid || lastTick == now) {
+            return;
+        }
+        lastTick = now;
+        Arrays.fill(received, 0);
+
+        IMjReceiver[] receivers = new IMjReceiver[consumers.length];
+        long[] needed = new long[consumers.length];
+        long totalNeeded = 0;
+        for (int i = 0; i < consumers.length; i++) {
+            Consumer consumer = consumers[i];
+            if (consumer.efficiency <= 0) {
+                continue;
+            }
+            IMjReceiver receiver = consumer.flow.pipe.getHolder().getCapabilityFromPipe(consumer.face, MjAPI.CAP_RECEIVER);
+            if (receiver == null || !receiver.canReceive()) {
+                continue;
+            }
+            long requested = Math.min(receiver.getPowerRequested(), consumer.limit);
+            if (requested <= 0) {
+                continue;
+            }
+            receivers[i] = receiver;
+            // The power that has to be put into the network to get the requested power out of this end
+            needed[i] = requested * MjAPI.MJ / consumer.efficiency + consumer.loss;
+            totalNeeded += needed[i];
+        }
+        demand = totalNeeded;
+
+        long sent = 0;
+        long used = 0;
+        if (totalNeeded > 0 && stored > 0) {
+            long available = Math.min(stored, totalNeeded);
+            for (int i = 0; i < consumers.length; i++) {
+                if (receivers[i] == null) {
+                    continue;
+                }
+                Consumer consumer = consumers[i];
+                long input = available == totalNeeded ? needed[i] : needed[i] * available / totalNeeded;
+                long output = (input - consumer.loss) * consumer.efficiency / MjAPI.MJ;
+                if (output <= 0) {
+                    continue;
+                }
+                long excess = receivers[i].receivePower(output, false);
+                long accepted = output - excess;
+                if (accepted <= 0) {
+                    continue;
+                }
+                sent += accepted;
+                used += accepted == output ? input : input * accepted / output;
+            }
+        }
+        stored -= Math.min(stored, used);
+        if (lastSent == 0 && sent != 0) {
+            // Pipes that aren't receivers sleep while nothing is being sent, but they need to display the power
+            for (PipeFlowPower member : members) {
+                TilePipeHolder.wakeUp(member.pipe.getHolder());
+            }
+        }
+        lastSent = sent;
+    }
+}
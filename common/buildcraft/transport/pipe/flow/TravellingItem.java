@@ -28,12 +28,19 @@ public class TravellingItem {
     public final Supplier<ItemStack> clientItemLink;
     public int stackSize;
     public EnumDyeColor colour;
+    /** Set on the client if the server corrected a prediction of this item, after which it shouldn't be rendered or
+     * ticked. */
+    boolean cancelled;
 
     // Server fields
     /** The server itemstack */
     @Nonnull
     ItemStack stack;
+    /** The id used to identify this item over the network, on both sides. This is 0 if it has never been sent to the
+     * client. See {@link TravellingItemPrediction}. */
     int id = 0;
+    /** The number of hops that the client has predicted since this item was last sent. */
+    int hopsSinceSync = 0;
     boolean toCenter;
     double speed = 0.05;
     /** Absolute times (relative to world.getTotalWorldTime()) with when an item started to when it finishes. */
@@ -45,6 +52,8 @@ public class TravellingItem {
     EnumFacing side;
     /** A set of all the faces that this item has tried to go and failed. */
     EnumSet<EnumFacing> tried = EnumSet.noneOf(EnumFacing.class);
+    /** The key that this item is currently stored under in {@link TravellingItemMergeIndex}, or null if it isn't. */
+    TravellingItemMergeIndex.Key mergeKey;
 
     // @formatter:off
     /* States (server side):
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.lib.misc.ItemStackKey;
+
+/** Indexes every {@link TravellingItem} in a pipe by everything that {@link TravellingItem#canMerge(TravellingItem)}
+ * checks, so that finding a merge candidate for a newly inserted item doesn't require looking at every other item in
+ * the pipe. */
+public class TravellingItemMergeIndex {
+    /** The number of ticks that each arrival bucket covers. This must be at least as big as the maximum tick difference
+     * that {@link TravellingItem#canMerge(TravellingItem)} allows, so that only the neighbouring buckets need to be
+     * checked. */
+    static final int TICK_BUCKET_SIZE = 10;
+
+    private final Map<Key, List<TravellingItem>> index = new HashMap<>();
+
+    public void add(TravellingItem item) {
+        if (item.stack.isEmpty()) {
+            return;
+        }
+        Key key = new Key(item, createStackKey(item.stack), item.tickFinished / TICK_BUCKET_SIZE);
+        item.mergeKey = key;
+        index.computeIfAbsent(key, k -> new ArrayList<>(2)).add(item);
+    }
+
+    public void remove(TravellingItem item) {
+        Key key = item.mergeKey;
+        if (key == null) {
+            return;
+        }
+        item.mergeKey = null;
+        List<TravellingItem> list = index.get(key);
+        if (list == null) {
+            return;
+        }
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == item) {
+                list.remove(i);
+                break;
+            }
+        }
+        if (list.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /** @return An item already in this index that the given item could be merged into, or null if none of them
+     *         could. */
+    @Nullable
+    public TravellingItem findMergeTarget(TravellingItem with) {
+        if (index.isEmpty() || with.stack.isEmpty()) {
+            return null;
+        }
+        ItemStackKey stackKey = createStackKey(with.stack);
+        long bucket = with.tickFinished / TICK_BUCKET_SIZE;
+        for (long b = bucket - 1; b <= bucket + 1; b++) {
+            List<TravellingItem> list = index.get(new Key(with, stackKey, b));
+            if (list == null) {
+                continue;
+            }
+            for (TravellingItem item : list) {
+                if (item.canMerge(with)) {
+                    return item;
+                }
+            }
+        }
+        return null;
+    }
+
+    public void clear() {
+        index.clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (List<TravellingItem> list : index.values()) {
+            size += list.size();
+        }
+        return size;
+    }
+
+    private static ItemStackKey createStackKey(ItemStack stack) {
+        // ItemStackKey compares the count as well, which changes whenever items merge together
+        ItemStack single = stack.copy();
+        single.setCount(1);
+        return new ItemStackKey(single);
+    }
+
+    static final class Key {
+        private final EnumFacing side;
+        private final boolean toCenter;
+        private final EnumDyeColor colour;
+        private final ItemStackKey stack;
+        private final long tickBucket;
+        private final int hash;
+
+        Key(TravellingItem item, ItemStackKey stack, long tickBucket) {
+            this.side = item.side;
+            this.toCenter = item.toCenter;
+            this.colour = item.colour;
+            this.stack = stack;
+            this.tickBucket = tickBucket;
+            this.hash = Objects.hash(side, toCenter, colour, stack, tickBucket);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+            if (obj == null || obj.getClass() != getClass()) return false;
+            Key other = (Key) obj;
+            return hash == other.hash//
+                && side == other.side//
+                && toCenter == other.toCenter//
+                && colour == other.colour//
+                && tickBucket == other.tickBucket//
+                && stack.equals(other.stack);
+        }
+    }
+}
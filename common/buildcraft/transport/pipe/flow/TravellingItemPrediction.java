@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.IPipe.ConnectedType;
+
+import buildcraft.lib.misc.StackUtil;
+
+/** Holds the rules that both the client and server use to predict where an item will go next, so that the server only
+ * needs to send an item to the client when the real route differs from the predicted one.
+ * <p>
+ * Every item that has been sent to the client has a non-zero {@link TravellingItem#id}, which is kept by every hop that
+ * was predicted. The server sends the item again (with the same id, replacing the client's prediction) whenever the
+ * outcome differs, or sends a cancellation if the item disappeared where the client expected it to keep going. */
+final class TravellingItemPrediction {
+    /** The maximum number of hops that can be predicted before the server sends the item again anyway, so that players
+     * that started watching part way through still see the item. */
+    static final int RESYNC_INTERVAL = 16;
+
+    /** The maximum number of items to keep track of on the client before checking for ones that have been left behind
+     * (for example in pipes that were unloaded). */
+    private static final int CLIENT_PRUNE_THRESHOLD = 4096;
+
+    private static int nextId = 1;
+
+    /** Client side map of {@link TravellingItem#id} to the latest item for that id. */
+    private static final Map<Integer, TravellingItem> CLIENT_ITEMS = new HashMap<>();
+
+    private TravellingItemPrediction() {}
+
+    static int allocateId() {
+        int id = nextId++;
+        if (nextId == 0) {
+            nextId = 1;
+        }
+        return id;
+    }
+
+    /** @return The only side that an item coming from the given side could leave through, or null if there are zero or
+     *         several possible sides (and so the client won't try to predict it). */
+    @Nullable
+    static EnumFacing predictExit(IPipe pipe, EnumFacing from) {
+        EnumFacing exit = null;
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (face == from || !pipe.isConnected(face)) {
+                continue;
+            }
+            if (exit != null) {
+                return null;
+            }
+            exit = face;
+        }
+        return exit;
+    }
+
+    /** @return The flow that an item leaving the given pipe through the given side would be predicted to move into, or
+     *         null if it would leave the pipe network. */
+    @Nullable
+    static PipeFlowItems predictNextFlow(IPipe pipe, EnumFacing side) {
+        if (!pipe.isConnected(side) || pipe.getConnectedType(side) != ConnectedType.PIPE) {
+            return null;
+        }
+        IPipe oPipe = pipe.getConnectedPipe(side);
+        if (oPipe == null || !(oPipe.getFlow() instanceof PipeFlowItems)) {
+            return null;
+        }
+        return (PipeFlowItems) oPipe.getFlow();
+    }
+
+    static double adjustSpeed(double speed, double target, double maxDelta) {
+        if (speed < target) {
+            speed += maxDelta;
+            if (speed > target) {
+                speed = target;
+            }
+        } else if (speed > target) {
+            speed -= maxDelta;
+            if (speed < target) {
+                speed = target;
+            }
+        }
+        return speed;
+    }
+
+    static double clampInsertSpeed(double speed) {
+        return speed < 0.01 ? 0.01 : speed;
+    }
+
+    /** What the client will have predicted for the next hop of an item, which the server compares the real outcome
+     * against. */
+    static final class Expected {
+        final int id, hops;
+        final boolean forceSync;
+        final EnumFacing side;
+        final EnumDyeColor colour;
+        final ItemStack stack;
+        final int count;
+        final double speed;
+
+        /** @param from The item, as the client currently knows it, <i>before</i> any events have modified it. */
+        Expected(TravellingItem from, EnumFacing side, double speed, boolean forceSync) {
+            this.id = from.id;
+            this.hops = from.hopsSinceSync + 1;
+            this.forceSync = forceSync || hops >= RESYNC_INTERVAL;
+            this.side = side;
+            this.colour = from.colour;
+            this.stack = from.stack;
+            this.count = from.stack.getCount();
+            this.speed = speed;
+        }
+
+        /** Gives the real item the same id as the predicted one, and checks to see if it matches the prediction.
+         *
+         * @return True if the client's prediction was correct, and so the item doesn't need to be sent. */
+        boolean applyAndMatch(TravellingItem real) {
+            real.id = id;
+            real.hopsSinceSync = hops;
+            return !forceSync//
+                && real.side == side//
+                && real.colour == colour//
+                && real.speed == speed//
+                && real.stack.getCount() == count//
+                && StackUtil.canMerge(real.stack, stack);
+        }
+    }
+
+    // Client side tracking
+
+    /** Sets the given item as the current client side item for its id, cancelling any previous one. */
+    static void trackClient(TravellingItem item, long now) {
+        if (item.id == 0) {
+            return;
+        }
+        TravellingItem old = CLIENT_ITEMS.put(item.id, item);
+        if (old != null && old != item) {
+            old.cancelled = true;
+        }
+        if (CLIENT_ITEMS.size() > CLIENT_PRUNE_THRESHOLD) {
+            CLIENT_ITEMS.values().removeIf(i -> i.tickFinished < now - 100);
+        }
+    }
+
+    static void untrackClient(TravellingItem item) {
+        if (item.id != 0) {
+            CLIENT_ITEMS.remove(item.id, item);
+        }
+    }
+
+    static void cancelClient(int id) {
+        TravellingItem item = CLIENT_ITEMS.remove(id);
+        if (item != null) {
+            item.cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.management.PlayerChunkMapEntry;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+
+import buildcraft.lib.net.MessageManager;
+import buildcraft.lib.net.PacketBufferBC;
+import buildcraft.lib.net.cache.BuildCraftObjectCaches;
+
+/** Collects every {@link TravellingItem} that needs to be sent to clients during a tick, grouped by chunk, and then
+ * sends a single {@link MessageTravellingItems} per chunk to every player watching it at the end of the tick. */
+public class TravellingItemSync {
+    private static final Map<World, TravellingItemSync> SYNCS = new WeakHashMap<>();
+
+    // Stats, for the debug screen
+    private static long itemsSent = 0;
+    private static long packetsSent = 0;
+    private static long packetsSaved = 0;
+
+    private final Map<Long, ChunkBatch> batches = new HashMap<>();
+
+    public static TravellingItemSync get(World world) {
+        return SYNCS.computeIfAbsent(world, w -> new TravellingItemSync());
+    }
+
+    /** Called at the end of every world tick to send all of the items collected during it. */
+    public static void onWorldTickEnd(World world) {
+        TravellingItemSync sync = SYNCS.get(world);
+        if (sync != null) {
+            sync.flush(world);
+        }
+    }
+
+    public static long getItemsSent() {
+        return itemsSent;
+    }
+
+    public static long getPacketsSent() {
+        return packetsSent;
+    }
+
+    /** @return The number of packets that would have been sent if every item was sent in its own packet, minus the
+     *         number that were actually sent. */
+    public static long getPacketsSaved() {
+        return packetsSaved;
+    }
+
+    public void addItem(BlockPos pos, TravellingItem item) {
+        getBatch(pos).add(pos, item);
+    }
+
+    /** Tells the client to remove the item it predicted for the given {@link TravellingItem#id}. */
+    public void addCancel(BlockPos pos, int id) {
+        getBatch(pos).addCancel(pos, id);
+    }
+
+    private ChunkBatch getBatch(BlockPos pos) {
+        long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        ChunkBatch batch = batches.get(key);
+        if (batch == null) {
+            batch = new ChunkBatch(pos.getX() >> 4, pos.getZ() >> 4);
+            batches.put(key, batch);
+        }
+        return batch;
+    }
+
+    private void flush(World world) {
+        if (batches.isEmpty()) {
+            return;
+        }
+        if (world instanceof WorldServer) {
+            WorldServer server = (WorldServer) world;
+            for (ChunkBatch batch : batches.values()) {
+                PlayerChunkMapEntry entry = server.getPlayerChunkMap().getEntry(batch.chunkX, batch.chunkZ);
+                if (entry == null) {
+                    // No-one was watching this chunk.
+                    continue;
+                }
+                MessageTravellingItems message = batch.createMessage();
+                entry.hasPlayerMatchingInRange(0, player -> {
+                    send(message, player, batch.count);
+                    // Always return false so that the iteration doesn't stop early
+                    return false;
+                });
+            }
+        }
+        batches.clear();
+    }
+
+    private static void send(MessageTravellingItems message, EntityPlayerMP player, int itemCount) {
+        MessageManager.sendTo(message, player);
+        itemsSent += itemCount;
+        packetsSent++;
+        packetsSaved += itemCount - 1;
+    }
+
+    static final class ChunkBatch {
+        final int chunkX, chunkZ;
+        final PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
+        int count = 0;
+        /** The index (see {@link MessageTravellingItems#getIndexInChunk(int, int, int)}) of the last item that was
+         * written, as positions are written as deltas from this. */
+        int lastIndex = 0;
+
+        ChunkBatch(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        void add(BlockPos pos, TravellingItem item) {
+            writePos(pos);
+            int flags = (item.toCenter ? MessageTravellingItems.FLAG_TO_CENTER : 0) | item.side.getIndex();
+            buffer.writeByte(flags);
+            buffer.writeVarInt(item.id);
+            buffer.writeVarInt(BuildCraftObjectCaches.storeItemStack(item.stack));
+            buffer.writeVarInt(item.stack.getCount());
+            buffer.writeByte(item.colour == null ? 0 : item.colour.getMetadata() + 1);
+            buffer.writeVarInt(Math.min(item.timeToDest, Short.MAX_VALUE));
+            buffer.writeDouble(item.speed);
+        }
+
+        void addCancel(BlockPos pos, int id) {
+            writePos(pos);
+            buffer.writeByte(MessageTravellingItems.FLAG_CANCEL);
+            buffer.writeVarInt(id);
+        }
+
+        private void writePos(BlockPos pos) {
+            int index = MessageTravellingItems.getIndexInChunk(pos.getX(), pos.getY(), pos.getZ());
+            int delta = index - lastIndex;
+            lastIndex = index;
+            count++;
+            buffer.writeVarInt((delta << 1) ^ (delta >> 31));
+        }
+
+        MessageTravellingItems createMessage() {
+            return new MessageTravellingItems(chunkX, chunkZ, count, buffer);
+        }
+    }
+}
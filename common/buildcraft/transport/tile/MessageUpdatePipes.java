@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.tile;
+
+import java.io.IOException;
+
+import com.google.common.base.Throwables;
+
+import io.netty.buffer.ByteBuf;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+
+import buildcraft.api.core.BCLog;
+
+import buildcraft.lib.BCLibProxy;
+import buildcraft.lib.net.IPayloadReceiver;
+import buildcraft.lib.net.PacketBufferBC;
+
+/** The network updates of every {@link TilePipeHolder} in a single chunk during a single tick. Each one is exactly what
+ * would have been sent in its own {@link buildcraft.lib.net.MessageUpdateTile}. See {@link PipeUpdateSync} for how
+ * these are collected. */
+public class MessageUpdatePipes implements IMessage {
+    private int chunkX, chunkZ;
+    private int count;
+    private PacketBufferBC payload;
+
+    public MessageUpdatePipes() {}
+
+    public MessageUpdatePipes(int chunkX, int chunkZ, int count, PacketBufferBC payload) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.count = count;
+        this.payload = payload;
+    }
+
+    static int getIndexInChunk(int x, int y, int z) {
+        return (y & 0xFF) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        PacketBufferBC buffer = PacketBufferBC.asPacketBufferBc(buf);
+        buffer.writeInt(chunkX);
+        buffer.writeInt(chunkZ);
+        buffer.writeVarInt(count);
+        int length = payload.readableBytes();
+        buffer.writeVarInt(length);
+        buffer.writeBytes(payload, payload.readerIndex(), length);
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        PacketBufferBC buffer = PacketBufferBC.asPacketBufferBc(buf);
+        chunkX = buffer.readInt();
+        chunkZ = buffer.readInt();
+        count = buffer.readVarInt();
+        int length = buffer.readVarInt();
+        payload = new PacketBufferBC(buffer.readBytes(length));
+    }
+
+    public static final IMessageHandler<MessageUpdatePipes, IMessage> HANDLER = (message, ctx) -> {
+        EntityPlayer player = BCLibProxy.getProxy().getPlayerForContext(ctx);
+        if (player == null || player.world == null) {
+            return null;
+        }
+        PacketBufferBC buffer = message.payload;
+        int baseX = message.chunkX << 4;
+        int baseZ = message.chunkZ << 4;
+        int index = 0;
+        for (int i = 0; i < message.count; i++) {
+            int zigzag = buffer.readVarInt();
+            index += (zigzag >>> 1) ^ -(zigzag & 1);
+            int length = buffer.readVarInt();
+            PacketBufferBC tilePayload = new PacketBufferBC(buffer.readBytes(length));
+
+            BlockPos pos = new BlockPos(baseX + (index & 15), index >> 8, baseZ + ((index >> 4) & 15));
+            TileEntity tile = player.world.getTileEntity(pos);
+            if (tile instanceof IPayloadReceiver) {
+                try {
+                    ((IPayloadReceiver) tile).receivePayload(ctx, tilePayload);
+                } catch (IOException io) {
+                    throw Throwables.propagate(io);
+                }
+            } else {
+                BCLog.logger.warn("Dropped pipe update for player " + player.getName() + " for tile at " + pos
+                    + " (found " + tile + ")");
+            }
+        }
+        return null;
+    };
+}
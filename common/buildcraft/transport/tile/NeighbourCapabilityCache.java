@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.tile;
+
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import net.minecraftforge.common.capabilities.Capability;
+
+/** The capabilities of the tiles next to a pipe. Each one is only looked up through the neighbour's capability
+ * dispatcher once (including ones that it doesn't have), and then kept until that side is invalidated.
+ * <p>
+ * {@link TilePipeHolder} invalidates every side whenever a neighbour changes, and a single side whenever a pluggable is
+ * replaced. A side is also looked up again if its tile has been invalidated or unloaded. */
+final class NeighbourCapabilityCache {
+    /** Stored for capabilities that the neighbour doesn't have, as null means that it hasn't been looked up yet. */
+    private static final Object NONE = new Object();
+
+    private static long hits = 0;
+    private static long misses = 0;
+
+    private final TilePipeHolder holder;
+    private final boolean[] known = new boolean[6];
+    @SuppressWarnings("unchecked")
+    private final WeakReference<TileEntity>[] tiles = new WeakReference[6];
+    @SuppressWarnings("unchecked")
+    private final Map<Capability<?>, Object>[] caps = new Map[6];
+
+    NeighbourCapabilityCache(TilePipeHolder holder) {
+        this.holder = holder;
+    }
+
+    static long getHits() {
+        return hits;
+    }
+
+    static long getMisses() {
+        return misses;
+    }
+
+    /** @return The tile next to the holder, or null if there isn't one. */
+    TileEntity getTile(EnumFacing side) {
+        int index = side.ordinal();
+        if (known[index]) {
+            WeakReference<TileEntity> ref = tiles[index];
+            if (ref == null) {
+                return null;
+            }
+            TileEntity tile = ref.get();
+            if (tile != null && !tile.isInvalid() && isLoaded(tile)) {
+                return tile;
+            }
+        }
+        invalidate(side);
+        TileEntity tile = holder.getNeighbourTile(side);
+        known[index] = true;
+        tiles[index] = tile == null ? null : new WeakReference<>(tile);
+        return tile;
+    }
+
+    /** Unloaded tiles aren't invalidated, so tiles in other chunks have to be checked. */
+    private boolean isLoaded(TileEntity tile) {
+        BlockPos pos = tile.getPos();
+        BlockPos holderPos = holder.getPos();
+        if (pos.getX() >> 4 == holderPos.getX() >> 4 && pos.getZ() >> 4 == holderPos.getZ() >> 4) {
+            return true;
+        }
+        return tile.getWorld().isBlockLoaded(pos, false);
+    }
+
+    /** @return The capability of the tile next to the holder, as seen from the holder. */
+    @SuppressWarnings("unchecked")
+    <T> T getCapability(EnumFacing side, @Nonnull Capability<T> capability) {
+        TileEntity tile = getTile(side);
+        if (tile == null) {
+            return null;
+        }
+        int index = side.ordinal();
+        Map<Capability<?>, Object> map = caps[index];
+        if (map == null) {
+            map = caps[index] = new IdentityHashMap<>();
+        }
+        Object value = map.get(capability);
+        if (value == null) {
+            misses++;
+            T cap = tile.getCapability(capability, side.getOpposite());
+            map.put(capability, cap == null ? NONE : cap);
+            return cap;
+        }
+        hits++;
+        return value == NONE ? null : (T) value;
+    }
+
+    void invalidate(EnumFacing side) {
+        int index = side.ordinal();
+        known[index] = false;
+        tiles[index] = null;
+        if (caps[index] != null) {
+            caps[index].clear();
+        }
+    }
+
+    void invalidateAll() {
+        for (EnumFacing side : EnumFacing.VALUES) {
+            invalidate(side);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.tile;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.world.World;
+
+/** Counts the {@link TilePipeHolder}s in a (server) world that are being ticked, and the ones that are sleeping. */
+public final class PipeSleepCounter {
+    /** Synchronised as the debug overlay reads this from the render thread, even for the integrated server's
+     * worlds. */
+    private static final Map<World, PipeSleepCounter> COUNTERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private int awake;
+    private int sleeping;
+
+    /** Only called from the server thread. */
+    static PipeSleepCounter get(World world) {
+        return COUNTERS.computeIfAbsent(world, w -> new PipeSleepCounter());
+    }
+
+    /** @return The counter for the given world, or null if no pipes have been counted in it. Unlike
+     *         {@link #get(World)} this never creates a counter, so it is safe to call from any thread. */
+    @Nullable
+    public static PipeSleepCounter find(World world) {
+        return COUNTERS.get(world);
+    }
+
+    public int getAwake() {
+        return awake;
+    }
+
+    public int getSleeping() {
+        return sleeping;
+    }
+
+    void add(boolean asleep) {
+        if (asleep) {
+            sleeping++;
+        } else {
+            awake++;
+        }
+    }
+
+    void remove(boolean asleep) {
+        if (asleep) {
+            sleeping--;
+        } else {
+            awake--;
+        }
+    }
+
+    void onSleep() {
+        awake--;
+        sleeping++;
+    }
+
+    void onWakeUp() {
+        sleeping--;
+        awake++;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.tile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.server.management.PlayerChunkMapEntry;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+
+import buildcraft.lib.net.MessageManager;
+import buildcraft.lib.net.PacketBufferBC;
+
+/** Collects the network updates of every {@link TilePipeHolder} that are sent to all watching players during a tick,
+ * grouped by chunk, and then sends a single {@link MessageUpdatePipes} per chunk to every player watching it at the end
+ * of the tick. */
+public class PipeUpdateSync {
+    /** Batches are split once they get bigger than this, to keep well under the maximum packet size. */
+    private static final int MAX_BATCH_BYTES = 512 * 1024;
+
+    private static final Map<World, PipeUpdateSync> SYNCS = new WeakHashMap<>();
+
+    // Stats, for the debug screen
+    private static long updatesSent = 0;
+    private static long packetsSent = 0;
+
+    private final Map<Long, ChunkBatch> batches = new HashMap<>();
+
+    public static PipeUpdateSync get(World world) {
+        return SYNCS.computeIfAbsent(world, w -> new PipeUpdateSync());
+    }
+
+    /** Called at the end of every world tick to send all of the updates collected during it. */
+    public static void onWorldTickEnd(World world) {
+        PipeUpdateSync sync = SYNCS.get(world);
+        if (sync != null) {
+            sync.flush(world);
+        }
+    }
+
+    public static long getUpdatesSent() {
+        return updatesSent;
+    }
+
+    public static long getPacketsSent() {
+        return packetsSent;
+    }
+
+    /** @param payload The whole payload, starting with the id, as given to {@link TilePipeHolder#receivePayload}. */
+    public void addUpdate(BlockPos pos, PacketBufferBC payload) {
+        long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        ChunkBatch batch = batches.get(key);
+        if (batch == null) {
+            batch = new ChunkBatch(pos.getX() >> 4, pos.getZ() >> 4);
+            batches.put(key, batch);
+        }
+        batch.add(pos, payload);
+    }
+
+    private void flush(World world) {
+        if (batches.isEmpty()) {
+            return;
+        }
+        if (world instanceof WorldServer) {
+            WorldServer server = (WorldServer) world;
+            for (ChunkBatch batch : batches.values()) {
+                PlayerChunkMapEntry entry = server.getPlayerChunkMap().getEntry(batch.chunkX, batch.chunkZ);
+                if (entry == null) {
+                    // No-one was watching this chunk.
+                    continue;
+                }
+                List<MessageUpdatePipes> messages = batch.createMessages();
+                entry.hasPlayerMatchingInRange(0, player -> {
+                    for (MessageUpdatePipes message : messages) {
+                        MessageManager.sendTo(message, player);
+                        packetsSent++;
+                    }
+                    updatesSent += batch.total;
+                    // Always return false so that the iteration doesn't stop early
+                    return false;
+                });
+            }
+        }
+        batches.clear();
+    }
+
+    static final class ChunkBatch {
+        final int chunkX, chunkZ;
+        final List<MessageUpdatePipes> full = new ArrayList<>();
+        PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
+        int count = 0;
+        int total = 0;
+        /** The index (see {@link MessageUpdatePipes#getIndexInChunk(int, int, int)}) of the last update that was
+         * written, as positions are written as deltas from this. */
+        int lastIndex = 0;
+
+        ChunkBatch(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        void add(BlockPos pos, PacketBufferBC payload) {
+            if (buffer.readableBytes() > MAX_BATCH_BYTES) {
+                full.add(new MessageUpdatePipes(chunkX, chunkZ, count, buffer));
+                buffer = new PacketBufferBC(Unpooled.buffer());
+                count = 0;
+                lastIndex = 0;
+            }
+            int index = MessageUpdatePipes.getIndexInChunk(pos.getX(), pos.getY(), pos.getZ());
+            int delta = index - lastIndex;
+            lastIndex = index;
+            count++;
+            total++;
+            buffer.writeVarInt((delta << 1) ^ (delta >> 31));
+            int length = payload.readableBytes();
+            buffer.writeVarInt(length);
+            buffer.writeBytes(payload, payload.readerIndex(), length);
+        }
+
+        List<MessageUpdatePipes> createMessages() {
+            List<MessageUpdatePipes> messages = new ArrayList<>(full);
+            if (count > 0) {
+                messages.add(new MessageUpdatePipes(chunkX, chunkZ, count, buffer));
+            }
+            return messages;
+        }
+    }
+}
@@ -18,6 +18,8 @@ import java.util.Set;
 
 import javax.annotation.Nonnull;
 
+import io.netty.buffer.Unpooled;
+
 import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.item.EnumDyeColor;
 import net.minecraft.item.Item;
@@ -51,9 +53,12 @@ import buildcraft.lib.misc.data.IdAllocator;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
 
+import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.pipe.ISleepablePipePart;
 import buildcraft.transport.pipe.Pipe;
 import buildcraft.transport.pipe.PipeEventBus;
 import buildcraft.transport.pipe.PluggableHolder;
+import buildcraft.transport.pipe.flow.TravellingItemSync;
 import buildcraft.transport.plug.FilterEventHandler;
 import buildcraft.transport.wire.WireManager;
 
@@ -96,7 +101,16 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
     private final Set<PipeMessageReceiver> networkUpdates = EnumSet.noneOf(PipeMessageReceiver.class);
     private final Set<PipeMessageReceiver> networkGuiUpdates = EnumSet.noneOf(PipeMessageReceiver.class);
     private final Map<EnumFacing, WeakReference<TileEntity>> neighbourTiles = new EnumMap<>(EnumFacing.class);
+    private final NeighbourCapabilityCache neighbourCaps = new NeighbourCapabilityCache(this);
     private NBTTagCompound unknownData;
+    /** True if this is sleeping: every part of the pipe was idle, so they are not being ticked. Only used on the
+     * server. */
+    private boolean sleeping = false;
+    /** The number of ticks that have been skipped since this went to sleep, and the number that can be skipped before
+     * it has to wake up again. */
+    private int ticksSlept, sleepTicks;
+    /** True if this has been added to the {@link PipeSleepCounter} for its world. */
+    private boolean counted = false;
 
     public TilePipeHolder() {
         for (EnumFacing side : EnumFacing.VALUES) {
@@ -171,11 +185,20 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
             if (meta > 0 && meta <= 16) {
                 pipe.setColour(EnumDyeColor.byMetadata(meta - 1));
             }
+            // Neighbouring pipes were told about this block before it had a pipe, so they need to look it up again
+            for (EnumFacing face : EnumFacing.VALUES) {
+                TileEntity neighbour = getNeighbourTile(face);
+                if (neighbour instanceof TilePipeHolder) {
+                    ((TilePipeHolder) neighbour).neighbourCaps.invalidate(face.getOpposite());
+                }
+            }
         }
         scheduleRenderUpdate();
     }
 
     public void refreshNeighbours() {
+        neighbourCaps.invalidateAll();
+        wakeUp();
         for (EnumFacing face : EnumFacing.VALUES) {
             WeakReference<TileEntity> current = neighbourTiles.get(face);
             if (current != null) {
@@ -197,6 +220,19 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
     public void invalidate() {
         super.invalidate();
         wireManager.removeParts(new ArrayList<>(wireManager.parts.keySet()));
+        if (pipe != null) {
+            pipe.onRemove();
+        }
+        removeFromCounter();
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        if (pipe != null) {
+            pipe.onRemove();
+        }
+        removeFromCounter();
     }
 
     @Override
@@ -205,39 +241,65 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
         if (pipe != null) {
             pipe.onLoad();
         }
+        if (!world.isRemote && !counted) {
+            counted = true;
+            PipeSleepCounter.get(world).add(sleeping);
+        }
+    }
+
+    private void removeFromCounter() {
+        if (counted) {
+            counted = false;
+            PipeSleepCounter.get(world).remove(sleeping);
+        }
     }
 
     // ITickable
 
     @Override
     public void update() {
-        // Tick objects
-        if (pipe != null) {
-            pipe.onTick();
+        if (sleeping) {
+            if (ticksSlept < sleepTicks && BCTransportConfig.pipesSleepWhenIdle) {
+                ticksSlept++;
+            } else {
+                wakeUp();
+            }
         }
-        for (EnumFacing face : EnumFacing.VALUES) {
-            pluggables.get(face).onTick();
+
+        // Tick objects
+        if (!sleeping) {
+            if (pipe != null) {
+                pipe.onTick();
+            }
+            for (EnumFacing face : EnumFacing.VALUES) {
+                pluggables.get(face).onTick();
+            }
+            if (!world.isRemote && BCTransportConfig.pipesSleepWhenIdle) {
+                int idle = getIdleTicks();
+                if (idle > 0) {
+                    goToSleep(idle);
+                }
+            }
         }
 
         // Send network updates
-        if (networkUpdates.size() > 0) {
-            // TODO: Multi-update messages! (multiple updates sent in a single message)
-            Set<PipeMessageReceiver> parts = EnumSet.copyOf(networkUpdates);
-            for (PipeMessageReceiver part : parts) {
-                sendNetworkUpdate(getReceiverId(part));
+        if (!world.isRemote) {
+            if (networkUpdates.size() > 0) {
+                // Sent at the end of the tick, along with every other pipe in this chunk
+                PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
+                buffer.writeShort(getUpdateId(networkUpdates));
+                writeUpdates(networkUpdates, buffer);
+                PipeUpdateSync.get(world).addUpdate(pos, buffer);
             }
-        }
-        // No need to send gui updates to specific players if we just sent off messages to all players.
-        networkGuiUpdates.removeAll(networkUpdates);
-        networkUpdates.clear();
+            // No need to send gui updates to specific players if we just sent off messages to all players.
+            networkGuiUpdates.removeAll(networkUpdates);
 
-        if (networkGuiUpdates.size() > 0) {
-            // TODO: Multi-update messages! (multiple updates sent in a single message)
-            Set<PipeMessageReceiver> parts = EnumSet.copyOf(networkGuiUpdates);
-            for (PipeMessageReceiver part : parts) {
-                sendNetworkGuiUpdate(getReceiverId(part));
+            if (networkGuiUpdates.size() > 0) {
+                Set<PipeMessageReceiver> parts = EnumSet.copyOf(networkGuiUpdates);
+                createAndSendGuiMessage(getUpdateId(parts), buffer -> writeUpdates(parts, buffer));
             }
         }
+        networkUpdates.clear();
         networkGuiUpdates.clear();
 
         if (scheduleRenderUpdate) {
@@ -251,8 +313,80 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
         }
     }
 
+    // Sleeping
+
+    private int getIdleTicks() {
+        int idle = pipe == null ? ISleepablePipePart.UNTIL_WOKEN : pipe.getIdleTicks();
+        for (EnumFacing face : EnumFacing.VALUES) {
+            PipePluggable plug = pluggables.get(face).pluggable;
+            if (idle > 0 && plug != null) {
+                idle = Math.min(idle, Pipe.getIdleTicks(plug));
+            }
+        }
+        return idle;
+    }
+
+    private void goToSleep(int ticks) {
+        sleeping = true;
+        ticksSlept = 0;
+        sleepTicks = ticks;
+        if (counted) {
+            PipeSleepCounter.get(world).onSleep();
+        }
+    }
+
+    /** Makes this start ticking again, if it was sleeping. This should be called whenever something happens to the pipe
+     * that one of its idle parts might need to react to, before it has changed anything. */
+    public void wakeUp() {
+        if (!sleeping) {
+            return;
+        }
+        sleeping = false;
+        if (counted) {
+            PipeSleepCounter.get(world).onWakeUp();
+        }
+        if (pipe != null) {
+            pipe.onWakeUp(ticksSlept);
+        }
+        for (EnumFacing face : EnumFacing.VALUES) {
+            PipePluggable plug = pluggables.get(face).pluggable;
+            if (plug instanceof ISleepablePipePart) {
+                ((ISleepablePipePart) plug).onWakeUp(ticksSlept);
+            }
+        }
+    }
+
+    /** Calls {@link #wakeUp()} if the given holder is a {@link TilePipeHolder}. */
+    public static void wakeUp(IPipeHolder holder) {
+        if (holder instanceof TilePipeHolder) {
+            ((TilePipeHolder) holder).wakeUp();
+        }
+    }
+
     // Network
 
+    private static int getUpdateId(Set<PipeMessageReceiver> parts) {
+        return parts.size() == 1 ? getReceiverId(parts.iterator().next()) : NET_UPDATE_MULTI;
+    }
+
+    /** Writes every part into a single payload. If there is more than one part then this is read by
+     * {@link #NET_UPDATE_MULTI}: a mask of the parts, followed by each part in order. */
+    private void writeUpdates(Set<PipeMessageReceiver> parts, PacketBufferBC buffer) {
+        if (parts.size() == 1) {
+            writePayload(getReceiverId(parts.iterator().next()), buffer, Side.SERVER);
+            return;
+        }
+        int mask = 0;
+        for (PipeMessageReceiver part : parts) {
+            mask |= 1 << part.ordinal();
+        }
+        buffer.writeShort(mask);
+        // EnumSet always iterates in ordinal order, which is the order that they are read in
+        for (PipeMessageReceiver part : parts) {
+            writePayload(getReceiverId(part), buffer, Side.SERVER);
+        }
+    }
+
     @Override
     public void writePayload(int id, PacketBufferBC buffer, Side side) {
         super.writePayload(id, buffer, side);
@@ -314,7 +448,7 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
                 }
                 wireManager.readPayload(buffer, side, ctx);
             } else if (id == NET_UPDATE_MULTI) {
-                int total = buffer.readUnsignedByte();
+                int total = buffer.readUnsignedShort();
                 for (PipeMessageReceiver type : PipeMessageReceiver.VALUES) {
                     if (((total >> type.ordinal()) & 1) == 1) {
                         readPayload(getReceiverId(type), buffer, side, ctx);
@@ -382,6 +516,8 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
 
         eventBus.unregisterHandler(old);
         eventBus.registerHandler(with);
+        neighbourCaps.invalidate(side);
+        wakeUp();
 
         if (pipe != null) {
             pipe.markForUpdate();
@@ -396,11 +532,7 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
 
     @Override
     public IPipe getNeighbourPipe(EnumFacing side) {
-        TileEntity neighbour = getNeighbourTile(side);
-        if (neighbour == null) {
-            return null;
-        }
-        return neighbour.getCapability(PipeApi.CAP_PIPE, side.getOpposite());
+        return neighbourCaps.getCapability(side, PipeApi.CAP_PIPE);
     }
 
     @Override
@@ -416,10 +548,7 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
             }
         }
         if (pipe.isConnected(side)) {
-            TileEntity neighour = getNeighbourTile(side);
-            if (neighour != null) {
-                return neighour.getCapability(capability, side.getOpposite());
-            }
+            return neighbourCaps.getCapability(side, capability);
         }
         return null;
     }
@@ -456,6 +585,8 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
 
     @Override
     public boolean fireEvent(PipeEvent event) {
+        // Events can come from anywhere (for example gates activating actions), so any part might need to react
+        wakeUp();
         return eventBus.fireEvent(event);
     }
 
@@ -511,6 +642,18 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
             .isPowered(part)));
         left.add("All wire systems in world count = " + (world.isRemote ? 0 : wireManager.getWireSystems().wireSystems
             .size()));
+        if (!world.isRemote) {
+            left.add("Item sync: " + TravellingItemSync.getItemsSent() + " items in " + TravellingItemSync.getPacketsSent()
+                + " packets (" + TravellingItemSync.getPacketsSaved() + " saved)");
+            left.add("Pipe sync: " + PipeUpdateSync.getUpdatesSent() + " updates in " + PipeUpdateSync.getPacketsSent()
+                + " packets");
+            PipeSleepCounter counter = PipeSleepCounter.find(world);
+            left.add("Sleeping: " + (sleeping ? ticksSlept + " / " + (sleepTicks == ISleepablePipePart.UNTIL_WOKEN
+                ? "until woken" : sleepTicks) : "no") + (counter == null ? "" : " (" + counter.getAwake() + " awake, "
+                    + counter.getSleeping() + " sleeping in this world)"));
+            left.add("Neighbour capabilities: " + NeighbourCapabilityCache.getHits() + " hits, "
+                + NeighbourCapabilityCache.getMisses() + " misses");
+        }
         if (unknownData != null) {
             left.add(unknownData.toString());
         }
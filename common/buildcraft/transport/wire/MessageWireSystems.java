@@ -6,6 +6,7 @@
 
 package buildcraft.transport.wire;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,19 +19,29 @@ import net.minecraft.network.PacketBuffer;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 
+/** Adds (or replaces) wire systems on the client, keyed by {@link WireSystem#getWiresHashCode()}. */
 public class MessageWireSystems implements IMessage {
+    /** If true then the client should forget every wire system it knows about before adding the ones in this
+     * message. */
+    private boolean clear;
+    private List<Integer> removed = new ArrayList<>();
     private Map<Integer, WireSystem> wireSystems = new HashMap<>();
 
     public MessageWireSystems() {
     }
 
-    public MessageWireSystems(Map<Integer, WireSystem> wireSystems) {
+    public MessageWireSystems(boolean clear, List<Integer> removed, Map<Integer, WireSystem> wireSystems) {
+        this.clear = clear;
+        this.removed = removed;
         this.wireSystems = wireSystems;
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
         PacketBuffer pb = new PacketBuffer(buf);
+        pb.writeBoolean(clear);
+        pb.writeInt(removed.size());
+        removed.forEach(pb::writeInt);
         pb.writeInt(wireSystems.size());
         wireSystems.forEach((wiresHashCode, wireSystem) -> {
             pb.writeInt(wiresHashCode);
@@ -45,6 +56,12 @@ public class MessageWireSystems implements IMessage {
     @Override
     public void fromBytes(ByteBuf buf) {
         PacketBuffer pb = new PacketBuffer(buf);
+        clear = pb.readBoolean();
+        removed.clear();
+        int removedCount = pb.readInt();
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(pb.readInt());
+        }
         wireSystems.clear();
         int count = pb.readInt();
         for (int i = 0; i < count; i++) {
@@ -52,14 +69,17 @@ public class MessageWireSystems implements IMessage {
             int wiresHashCode = pb.readInt();
             int localCount = pb.readInt();
             for (int j = 0; j < localCount; j++) {
-                wireSystem.elements.add(new WireSystem.WireElement(pb));
+                wireSystem.addElement(new WireSystem.WireElement(pb));
             }
             wireSystems.put(wiresHashCode, wireSystem);
         }
     }
 
     public static final IMessageHandler<MessageWireSystems, IMessage> HANDLER = (message, ctx) -> {
-        ClientWireSystems.INSTANCE.wireSystems.clear();
+        if (message.clear) {
+            ClientWireSystems.INSTANCE.wireSystems.clear();
+        }
+        message.removed.forEach(ClientWireSystems.INSTANCE.wireSystems::remove);
         ClientWireSystems.INSTANCE.wireSystems.putAll(message.wireSystems);
         return null;
     };
@@ -58,6 +58,7 @@ public class MessageWireSystemsPowered implements IMessage {
                                 hashPowered.getValue()
                         )
                 )
+                .filter(systemPowered -> systemPowered.getLeft() != null)
                 .flatMap(systemPowered ->
                         systemPowered.getLeft().elements.stream()
                                 .map(element ->
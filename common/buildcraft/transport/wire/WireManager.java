@@ -57,7 +57,7 @@ public class WireManager implements IWireManager {
         if (getColorOfPart(part) == null) {
             parts.put(part, colour);
             if (!holder.getPipeWorld().isRemote) {
-                getWireSystems().buildAndAddWireSystem(new WireSystem.WireElement(holder.getPipePos(), part));
+                getWireSystems().addWire(new WireSystem.WireElement(holder.getPipePos(), part), colour);
                 holder.getPipeTile().markDirty();
             }
             updateBetweens(false);
@@ -75,9 +75,7 @@ public class WireManager implements IWireManager {
         } else {
             parts.remove(part);
             if (!holder.getPipeWorld().isRemote) {
-                WireSystem.WireElement element = new WireSystem.WireElement(holder.getPipePos(), part);
-                WireSystem.getConnectedElementsOfElement(holder, element).forEach(getWireSystems()::buildAndAddWireSystem);
-                getWireSystems().getWireSystemsWithElement(element).forEach(getWireSystems()::removeWireSystem);
+                getWireSystems().removeWire(new WireSystem.WireElement(holder.getPipePos(), part));
                 holder.getPipeTile().markDirty();
             }
             updateBetweens(false);
@@ -90,13 +88,7 @@ public class WireManager implements IWireManager {
         if (!holder.getPipeWorld().isRemote) {
             toRemove.stream()
                     .map(part -> new WireSystem.WireElement(holder.getPipePos(), part))
-                    .flatMap(element -> WireSystem.getConnectedElementsOfElement(holder, element).stream())
-                    .distinct()
-                    .forEach(getWireSystems()::buildAndAddWireSystem);
-            toRemove.stream()
-                    .map(part -> new WireSystem.WireElement(holder.getPipePos(), part))
-                    .flatMap(element -> getWireSystems().getWireSystemsWithElement(element).stream()).
-                    forEach(getWireSystems()::removeWireSystem);
+                    .forEach(getWireSystems()::removeWire);
             holder.getPipeTile().markDirty();
         }
         updateBetweens(false);
@@ -49,11 +49,53 @@ import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.transport.plug.PluggableGate;
 
 public class WireSystem {
+    /** Every element in this system. This should only be modified through {@link #addElement(WireElement)} and
+     * {@link #removeElement(WireElement)}, so that {@link #elementIndices} stays in sync with it. */
     public final List<WireElement> elements = new ArrayList<>();
     public EnumDyeColor color = null;
+    /** The index of every element in {@link #elements}, so that elements can be found and removed without searching
+     * the whole list. */
+    private final Map<WireElement, Integer> elementIndices = new HashMap<>();
 
     public boolean hasElement(WireElement element) {
-        return elements.contains(element);
+        return elementIndices.containsKey(element);
+    }
+
+    /** @return True if the element was added, or false if it was already in this system. */
+    public boolean addElement(WireElement element) {
+        if (elementIndices.containsKey(element)) {
+            return false;
+        }
+        elementIndices.put(element, elements.size());
+        elements.add(element);
+        return true;
+    }
+
+    /** Removes the given element by swapping the last element into its place, so this doesn't preserve the order of
+     * {@link #elements}.
+     *
+     * @return True if the element was removed, or false if it wasn't in this system. */
+    public boolean removeElement(WireElement element) {
+        Integer index = elementIndices.remove(element);
+        if (index == null) {
+            return false;
+        }
+        WireElement last = elements.remove(elements.size() - 1);
+        if (index < elements.size()) {
+            elements.set(index, last);
+            elementIndices.put(last, index);
+        }
+        return true;
+    }
+
+    /** @return True if this system contains any wire part at the given position. */
+    public boolean hasWireAt(BlockPos pos) {
+        for (EnumWirePart part : EnumWirePart.VALUES) {
+            if (elementIndices.containsKey(new WireElement(pos, part))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /** Checks to see if the given holder could connect a wire across the specified side even if a matching wire wasn't
@@ -133,13 +175,13 @@ public class WireSystem {
                         }
                         if (color != null && colorOfPart == color) {
                             wireSystems.getWireSystemsWithElement(element).stream().filter(wireSystem -> wireSystem != this && wireSystem.color == this.color).forEach(wireSystems::removeWireSystem);
-                            elements.add(element);
+                            addElement(element);
                             queue.addAll(getConnectedElementsOfElement(wireSystems.world, element));
                             Arrays.stream(EnumFacing.VALUES).forEach(side -> queue.add(new WireElement(element.blockPos, side)));
                         }
                     } else if (element.type == WireElement.Type.EMITTER_SIDE) {
                         if (holder.getPluggable(element.emitterSide) instanceof PluggableGate) {
-                            elements.add(new WireElement(element.blockPos, element.emitterSide));
+                            addElement(new WireElement(element.blockPos, element.emitterSide));
                         }
                     }
                 }
@@ -190,8 +232,9 @@ public class WireSystem {
 
     public WireSystem readFromNBT(NBTTagCompound nbt) {
         elements.clear();
+        elementIndices.clear();
         NBTTagList elementsList = nbt.getTagList("elements", Constants.NBT.TAG_COMPOUND);
-        IntStream.range(0, elementsList.tagCount()).mapToObj(elementsList::getCompoundTagAt).map(WireElement::new).forEach(elements::add);
+        IntStream.range(0, elementsList.tagCount()).mapToObj(elementsList::getCompoundTagAt).map(WireElement::new).forEach(this::addElement);
         color = EnumDyeColor.byMetadata(nbt.getInteger("color"));
         return this;
     }
@@ -6,23 +6,27 @@
 
 package buildcraft.transport.wire;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Set;
 
-import com.google.common.base.Predicates;
-
-import org.apache.commons.lang3.tuple.Pair;
+import javax.annotation.Nullable;
 
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.EnumDyeColor;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldSavedData;
 import net.minecraft.world.storage.MapStorage;
@@ -40,12 +44,24 @@ import buildcraft.transport.plug.PluggableGate;
 public class WorldSavedDataWireSystems extends WorldSavedData {
     public static final String DATA_NAME = "buildcraft_wire_systems";
     public World world;
-    public final Map<WireSystem, Boolean> wireSystems = new HashMap<>();
+    /** Every wire system, mapped to whether it is powered or not. This is an identity map as systems are modified in
+     * place when wires are added or removed, which changes their {@link WireSystem#hashCode()}. */
+    public final Map<WireSystem, Boolean> wireSystems = new IdentityHashMap<>();
     public boolean gatesChanged = true;
     public boolean structureChanged = true;
     public final List<WireSystem> changedSystems = new ArrayList<>();
-    public final List<EntityPlayerMP> changedPlayers = new ArrayList<>();
     public final Map<WireSystem.WireElement, IWireEmitter> emittersCache = new HashMap<>();
+    /** Every element of every wire system, mapped to the systems that contain it. Wire parts are only ever in a single
+     * system, but an emitter is shared between every colour of wire next to it. */
+    private final Map<WireSystem.WireElement, List<WireSystem>> elementsToSystems = new HashMap<>();
+    /** Every chunk that contains any element of a wire system, mapped to those systems. (The values are always
+     * true, this is just used as an identity set). */
+    private final Map<Long, Map<WireSystem, Boolean>> chunksToSystems = new HashMap<>();
+    /** The reverse of {@link #chunksToSystems}, with the number of elements that the system has in each chunk. */
+    private final Map<WireSystem, Map<Long, Integer>> systemsToChunks = new IdentityHashMap<>();
+    /** Every system that has had elements added or removed since the last tick. */
+    private final Set<WireSystem> changedStructures = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<EntityPlayerMP, WatchingPlayer> watchingPlayers = new HashMap<>();
 
     public WorldSavedDataWireSystems() {
         super(DATA_NAME);
@@ -62,28 +78,317 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
     }
 
     public List<WireSystem> getWireSystemsWithElement(WireSystem.WireElement element) {
-        return wireSystems.keySet().stream().filter(wireSystem -> wireSystem.hasElement(element)).collect(Collectors.toList());
+        List<WireSystem> systems = elementsToSystems.get(element);
+        if (systems == null) {
+            return Collections.emptyList();
+        }
+        // Copied as callers quite often remove the systems that are returned
+        return new ArrayList<>(systems);
     }
 
     public void removeWireSystem(WireSystem wireSystem) {
-        wireSystems.remove(wireSystem);
+        if (wireSystems.remove(wireSystem) != null) {
+            wireSystem.elements.forEach(element -> unindexElement(wireSystem, element));
+        }
         markStructureChanged();
     }
 
+    private void addWireSystem(WireSystem wireSystem) {
+        wireSystem.elements.forEach(element -> indexElement(wireSystem, element));
+        wireSystems.put(wireSystem, wireSystem.update(this));
+    }
+
+    private void indexElement(WireSystem wireSystem, WireSystem.WireElement element) {
+        elementsToSystems.computeIfAbsent(element, e -> new ArrayList<>(1)).add(wireSystem);
+        long chunk = getChunkKey(element.blockPos);
+        Map<Long, Integer> chunks = systemsToChunks.computeIfAbsent(wireSystem, s -> new HashMap<>());
+        if (chunks.merge(chunk, 1, Integer::sum) == 1) {
+            chunksToSystems.computeIfAbsent(chunk, c -> new IdentityHashMap<>()).put(wireSystem, Boolean.TRUE);
+        }
+        changedStructures.add(wireSystem);
+    }
+
+    private void unindexElement(WireSystem wireSystem, WireSystem.WireElement element) {
+        List<WireSystem> systems = elementsToSystems.get(element);
+        if (systems != null) {
+            systems.removeIf(s -> s == wireSystem);
+            if (systems.isEmpty()) {
+                elementsToSystems.remove(element);
+            }
+        }
+        long chunk = getChunkKey(element.blockPos);
+        Map<Long, Integer> chunks = systemsToChunks.get(wireSystem);
+        if (chunks != null && chunks.containsKey(chunk)) {
+            if (chunks.merge(chunk, -1, Integer::sum) <= 0) {
+                chunks.remove(chunk);
+                Map<WireSystem, Boolean> inChunk = chunksToSystems.get(chunk);
+                if (inChunk != null) {
+                    inChunk.remove(wireSystem);
+                    if (inChunk.isEmpty()) {
+                        chunksToSystems.remove(chunk);
+                    }
+                }
+            }
+            if (chunks.isEmpty()) {
+                systemsToChunks.remove(wireSystem);
+            }
+        }
+        changedStructures.add(wireSystem);
+    }
+
+    private static long getChunkKey(BlockPos pos) {
+        return ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+    }
+
+    private void addToSystem(WireSystem wireSystem, WireSystem.WireElement element) {
+        if (wireSystem.addElement(element)) {
+            indexElement(wireSystem, element);
+        }
+    }
+
+    private void removeFromSystem(WireSystem wireSystem, WireSystem.WireElement element) {
+        if (wireSystem.removeElement(element)) {
+            unindexElement(wireSystem, element);
+        }
+    }
+
+    /** Builds a full wire system by walking every wire connected to the given element, replacing any existing systems
+     * that it overlaps with. Prefer {@link #addWire(WireSystem.WireElement, EnumDyeColor)} and
+     * {@link #removeWire(WireSystem.WireElement)} for single edits, as they don't need to walk the whole system. */
     public void buildAndAddWireSystem(WireSystem.WireElement element) {
         WireSystem wireSystem = new WireSystem().build(this, element);
-        if(!wireSystem.isEmpty()) {
-            wireSystems.put(wireSystem, false);
-            wireSystems.put(wireSystem, wireSystem.update(this));
+        if (!wireSystem.isEmpty()) {
+            addWireSystem(wireSystem);
         }
         markStructureChanged();
     }
 
+    /** Adds a single wire part that was just placed, merging every wire system of the same colour that it connects
+     * together. The smaller systems are always merged into the largest one, so this only costs as much as the number
+     * of elements that actually move. */
+    public void addWire(WireSystem.WireElement element, EnumDyeColor color) {
+        if (elementsToSystems.containsKey(element)) {
+            return;
+        }
+        TileEntity tile = world.getTileEntity(element.blockPos);
+        if (!(tile instanceof IPipeHolder)) {
+            return;
+        }
+        IPipeHolder holder = (IPipeHolder) tile;
+        List<WireSystem> joined = new ArrayList<>();
+        for (WireSystem.WireElement connected : WireSystem.getConnectedElementsOfElement(holder, element)) {
+            if (connected.equals(element) || getColorOfWire(connected) != color) {
+                continue;
+            }
+            WireSystem wireSystem = getWireSystemOfWire(connected);
+            if (wireSystem == null) {
+                // A wire that isn't in any system (probably from an older save), so the whole thing needs building
+                buildAndAddWireSystem(element);
+                return;
+            }
+            if (joined.stream().noneMatch(s -> s == wireSystem)) {
+                joined.add(wireSystem);
+            }
+        }
+
+        WireSystem target = null;
+        for (WireSystem wireSystem : joined) {
+            if (target == null || wireSystem.elements.size() > target.elements.size()) {
+                target = wireSystem;
+            }
+        }
+        if (target == null) {
+            target = new WireSystem();
+            target.color = color;
+        }
+        for (WireSystem wireSystem : joined) {
+            if (wireSystem != target) {
+                wireSystems.remove(wireSystem);
+                for (WireSystem.WireElement moved : wireSystem.elements) {
+                    unindexElement(wireSystem, moved);
+                    addToSystem(target, moved);
+                }
+            }
+        }
+        addToSystem(target, element);
+        for (EnumFacing side : EnumFacing.VALUES) {
+            if (holder.getPluggable(side) instanceof PluggableGate) {
+                addToSystem(target, new WireSystem.WireElement(element.blockPos, side));
+            }
+        }
+        wireSystems.put(target, target.update(this));
+        markStructureChanged();
+    }
+
+    /** Removes a single wire part, splitting its wire system up if that disconnected any of it. */
+    public void removeWire(WireSystem.WireElement element) {
+        WireSystem wireSystem = getWireSystemOfWire(element);
+        if (wireSystem == null) {
+            return;
+        }
+        List<WireSystem.WireElement> starts = new ArrayList<>();
+        for (WireSystem.WireElement connected : WireSystem.getConnectedElementsOfElement(world, element)) {
+            if (!connected.equals(element) && wireSystem.hasElement(connected) && !starts.contains(connected)) {
+                starts.add(connected);
+            }
+        }
+        removeFromSystem(wireSystem, element);
+        removeUnusedEmitters(wireSystem, element.blockPos);
+        if (starts.isEmpty()) {
+            removeWireSystem(wireSystem);
+            return;
+        }
+        if (starts.size() > 1) {
+            splitWireSystem(wireSystem, starts);
+        }
+        wireSystems.put(wireSystem, wireSystem.update(this));
+        markStructureChanged();
+    }
+
+    /** Searches outwards from every start element at the same time, one element per search in turn, until at most one
+     * connected piece is left that hasn't been completely walked. Every piece that was completely walked is then split
+     * off into its own system, so only the smaller pieces ever need to be walked in full.
+     * <p>
+     * Searches that meet each other are joined together with a (tiny) union-find, as they are in the same piece. */
+    private void splitWireSystem(WireSystem wireSystem, List<WireSystem.WireElement> starts) {
+        int count = starts.size();
+        int[] parents = new int[count];
+        boolean[] finished = new boolean[count];
+        List<Deque<WireSystem.WireElement>> queues = new ArrayList<>(count);
+        Map<WireSystem.WireElement, Integer> owners = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            parents[i] = i;
+            Deque<WireSystem.WireElement> queue = new ArrayDeque<>();
+            queue.add(starts.get(i));
+            queues.add(queue);
+            owners.put(starts.get(i), i);
+        }
+        int unfinished = count;
+        while (unfinished > 1) {
+            for (int i = 0; i < count && unfinished > 1; i++) {
+                int root = findRoot(parents, i);
+                if (finished[root]) {
+                    continue;
+                }
+                Deque<WireSystem.WireElement> queue = queues.get(i);
+                if (queue.isEmpty()) {
+                    if (isPieceWalked(parents, queues, root)) {
+                        finished[root] = true;
+                        unfinished--;
+                    }
+                    continue;
+                }
+                WireSystem.WireElement element = queue.poll();
+                for (WireSystem.WireElement connected : WireSystem.getConnectedElementsOfElement(world, element)) {
+                    if (!wireSystem.hasElement(connected)) {
+                        continue;
+                    }
+                    Integer owner = owners.get(connected);
+                    if (owner == null) {
+                        owners.put(connected, i);
+                        queue.add(connected);
+                    } else {
+                        int otherRoot = findRoot(parents, owner);
+                        root = findRoot(parents, i);
+                        if (otherRoot != root && !finished[otherRoot]) {
+                            parents[otherRoot] = root;
+                            unfinished--;
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Integer> pieces = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (parents[i] == i && finished[i]) {
+                pieces.add(i);
+            }
+        }
+        if (unfinished == 0) {
+            // Every piece was walked at the same time, so one of them can stay in the original system
+            pieces.remove(pieces.size() - 1);
+        }
+        for (int piece : pieces) {
+            WireSystem split = new WireSystem();
+            split.color = wireSystem.color;
+            Set<BlockPos> positions = new HashSet<>();
+            owners.forEach((element, owner) -> {
+                if (findRoot(parents, owner) == piece) {
+                    removeFromSystem(wireSystem, element);
+                    addToSystem(split, element);
+                    positions.add(element.blockPos);
+                }
+            });
+            for (BlockPos pos : positions) {
+                for (EnumFacing side : EnumFacing.VALUES) {
+                    WireSystem.WireElement emitter = new WireSystem.WireElement(pos, side);
+                    if (wireSystem.hasElement(emitter)) {
+                        addToSystem(split, emitter);
+                    }
+                }
+                removeUnusedEmitters(wireSystem, pos);
+            }
+            wireSystems.put(split, split.update(this));
+        }
+    }
+
+    private static int findRoot(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    private static boolean isPieceWalked(int[] parents, List<Deque<WireSystem.WireElement>> queues, int root) {
+        for (int i = 0; i < parents.length; i++) {
+            if (findRoot(parents, i) == root && !queues.get(i).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Removes every emitter at the given position from the system if it no longer has any wires there. */
+    private void removeUnusedEmitters(WireSystem wireSystem, BlockPos pos) {
+        if (!wireSystem.hasWireAt(pos)) {
+            for (EnumFacing side : EnumFacing.VALUES) {
+                removeFromSystem(wireSystem, new WireSystem.WireElement(pos, side));
+            }
+        }
+    }
+
+    @Nullable
+    private WireSystem getWireSystemOfWire(WireSystem.WireElement element) {
+        List<WireSystem> systems = elementsToSystems.get(element);
+        return systems == null || systems.isEmpty() ? null : systems.get(0);
+    }
+
+    @Nullable
+    private EnumDyeColor getColorOfWire(WireSystem.WireElement element) {
+        if (element.type != WireSystem.WireElement.Type.WIRE_PART) {
+            return null;
+        }
+        TileEntity tile = world.getTileEntity(element.blockPos);
+        if (tile instanceof IPipeHolder) {
+            return ((IPipeHolder) tile).getWireManager().getColorOfPart(element.wirePart);
+        }
+        return null;
+    }
+
+    /** Re-adds every wire in the given holder, for when something changed how they connect to their neighbours. */
     public void rebuildWireSystemsAround(IPipeHolder holder) {
-        Arrays.stream(EnumWirePart.values())
-                .flatMap(part -> WireSystem.getConnectedElementsOfElement(world, new WireSystem.WireElement(holder.getPipePos(), part)).stream())
-                .distinct()
-                .forEach(this::buildAndAddWireSystem);
+        Map<WireSystem.WireElement, EnumDyeColor> wires = new HashMap<>();
+        for (EnumWirePart part : EnumWirePart.VALUES) {
+            EnumDyeColor color = holder.getWireManager().getColorOfPart(part);
+            if (color != null) {
+                wires.put(new WireSystem.WireElement(holder.getPipePos(), part), color);
+            }
+        }
+        wires.keySet().forEach(this::removeWire);
+        wires.forEach(this::addWire);
+        markStructureChanged();
     }
 
     public IWireEmitter getEmitter(WireSystem.WireElement element) {
@@ -125,31 +430,127 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
                         return wireSystems.put(wireSystem, newPowered) != newPowered;
                     })
                     .forEach(changedSystems::add);
+            gatesChanged = false;
+        }
+        watchingPlayers.keySet().removeIf(player -> player.isDead || player.world != world);
+        if (!watchingPlayers.isEmpty()) {
+            Map<WireSystem, Integer> hashes = new IdentityHashMap<>();
+            watchingPlayers.forEach((player, watching) -> watching.sync(player, hashes));
         }
-        world.getPlayers(EntityPlayerMP.class, Predicates.alwaysTrue()).forEach(player -> {
-            Map<Integer, WireSystem> changedWires = this.wireSystems.keySet().stream()
-                    .filter(wireSystem -> wireSystem.isPlayerWatching(player) && (structureChanged || changedPlayers.contains(player)))
-                    .collect(Collectors.toMap(WireSystem::getWiresHashCode, Function.identity()));
-            if(!changedWires.isEmpty()) {
-                MessageManager.sendTo(new MessageWireSystems(changedWires), player);
-            }
-            Map<Integer, Boolean> hashesPowered = this.wireSystems.entrySet().stream()
-                    .filter(systemPower ->
-                            systemPower.getKey().isPlayerWatching(player) &&
-                                    (structureChanged || changedSystems.contains(systemPower.getKey()) || changedPlayers.contains(player))
-                    )
-                    .map(systemPowered -> Pair.of(systemPowered.getKey().getWiresHashCode(), systemPowered.getValue()))
-                    .collect(Collectors.toMap(Pair::getLeft, Pair::getRight));
-            if(!hashesPowered.isEmpty()) {
-                MessageManager.sendTo(new MessageWireSystemsPowered(hashesPowered), player);
-            }
-        });
         if(structureChanged || !changedSystems.isEmpty()) {
             markDirty();
         }
         structureChanged = false;
         changedSystems.clear();
-        changedPlayers.clear();
+        changedStructures.clear();
+    }
+
+    public void onChunkWatch(EntityPlayerMP player, ChunkPos chunkPos) {
+        watchingPlayers.computeIfAbsent(player, p -> new WatchingPlayer()).watch(ChunkPos.asLong(chunkPos.chunkXPos, chunkPos.chunkZPos));
+    }
+
+    public void onChunkUnwatch(EntityPlayerMP player, ChunkPos chunkPos) {
+        WatchingPlayer watching = watchingPlayers.get(player);
+        if (watching != null) {
+            watching.unwatch(ChunkPos.asLong(chunkPos.chunkXPos, chunkPos.chunkZPos));
+        }
+    }
+
+    private int getWiresHashCode(Map<WireSystem, Integer> hashes, WireSystem wireSystem) {
+        return hashes.computeIfAbsent(wireSystem, WireSystem::getWiresHashCode);
+    }
+
+    /** Everything that has been sent to a single player, so that only the differences need to be sent to them each
+     * tick. */
+    private final class WatchingPlayer {
+        final Set<Long> watchedChunks = new HashSet<>();
+        final Set<Long> newChunks = new HashSet<>();
+        final Set<Long> oldChunks = new HashSet<>();
+        /** Every system that the player knows about, mapped to the {@link WireSystem#getWiresHashCode()} that it had
+         * when it was sent. */
+        final Map<WireSystem, Integer> sentSystems = new IdentityHashMap<>();
+        /** True until the first message has been sent, which clears out anything the client had from other worlds. */
+        boolean firstSync = true;
+
+        void watch(long chunk) {
+            if (watchedChunks.add(chunk)) {
+                newChunks.add(chunk);
+                oldChunks.remove(chunk);
+            }
+        }
+
+        void unwatch(long chunk) {
+            if (watchedChunks.remove(chunk)) {
+                oldChunks.add(chunk);
+                newChunks.remove(chunk);
+            }
+        }
+
+        boolean isWatching(WireSystem wireSystem) {
+            Map<Long, Integer> chunks = systemsToChunks.get(wireSystem);
+            if (chunks != null) {
+                for (Long chunk : chunks.keySet()) {
+                    if (watchedChunks.contains(chunk)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        void sync(EntityPlayerMP player, Map<WireSystem, Integer> hashes) {
+            if (!firstSync && newChunks.isEmpty() && oldChunks.isEmpty() && changedStructures.isEmpty() && changedSystems.isEmpty()) {
+                return;
+            }
+            // Every system that might need to be sent, added or removed
+            Set<WireSystem> toCheck = Collections.newSetFromMap(new IdentityHashMap<>());
+            toCheck.addAll(changedStructures);
+            for (Long chunk : newChunks) {
+                toCheck.addAll(chunksToSystems.getOrDefault(chunk, Collections.emptyMap()).keySet());
+            }
+            for (Long chunk : oldChunks) {
+                toCheck.addAll(chunksToSystems.getOrDefault(chunk, Collections.emptyMap()).keySet());
+            }
+            newChunks.clear();
+            oldChunks.clear();
+
+            List<Integer> removed = new ArrayList<>();
+            Map<Integer, WireSystem> added = new HashMap<>();
+            Map<Integer, Boolean> hashesPowered = new HashMap<>();
+            for (WireSystem wireSystem : toCheck) {
+                Integer sentHash = sentSystems.get(wireSystem);
+                boolean watching = wireSystems.containsKey(wireSystem) && isWatching(wireSystem);
+                if (!watching) {
+                    if (sentHash != null) {
+                        sentSystems.remove(wireSystem);
+                        removed.add(sentHash);
+                    }
+                    continue;
+                }
+                int hash = getWiresHashCode(hashes, wireSystem);
+                if (sentHash == null || sentHash != hash || changedStructures.contains(wireSystem)) {
+                    if (sentHash != null && sentHash != hash) {
+                        removed.add(sentHash);
+                    }
+                    sentSystems.put(wireSystem, hash);
+                    added.put(hash, wireSystem);
+                    hashesPowered.put(hash, wireSystems.get(wireSystem));
+                }
+            }
+            for (WireSystem wireSystem : changedSystems) {
+                Integer sentHash = sentSystems.get(wireSystem);
+                if (sentHash != null && wireSystems.containsKey(wireSystem)) {
+                    hashesPowered.put(sentHash, wireSystems.get(wireSystem));
+                }
+            }
+            if (firstSync || !removed.isEmpty() || !added.isEmpty()) {
+                MessageManager.sendTo(new MessageWireSystems(firstSync, removed, added), player);
+                firstSync = false;
+            }
+            if (!hashesPowered.isEmpty()) {
+                MessageManager.sendTo(new MessageWireSystemsPowered(hashesPowered), player);
+            }
+        }
     }
 
     @Override
@@ -168,10 +569,15 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
     @Override
     public void readFromNBT(NBTTagCompound nbt) {
         wireSystems.clear();
+        elementsToSystems.clear();
+        chunksToSystems.clear();
+        systemsToChunks.clear();
         NBTTagList entriesList = nbt.getTagList("entries", Constants.NBT.TAG_COMPOUND);
         for(int i = 0; i < entriesList.tagCount(); i++) {
             NBTTagCompound entry = entriesList.getCompoundTagAt(i);
-            wireSystems.put(new WireSystem().readFromNBT(entry.getCompoundTag("wireSystem")), entry.getBoolean("powered"));
+            WireSystem wireSystem = new WireSystem().readFromNBT(entry.getCompoundTag("wireSystem"));
+            wireSystem.elements.forEach(element -> indexElement(wireSystem, element));
+            wireSystems.put(wireSystem, entry.getBoolean("powered"));
         }
     }
 
@@ -0,0 +1,203 @@
+package buildcraft.test.factory.util;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import net.minecraftforge.fluids.Fluid;
+import net.minecraftforge.fluids.FluidRegistry;
+
+import buildcraft.lib.world.BlockStateCache;
+import buildcraft.lib.world.SingleBlockAccess;
+
+import buildcraft.factory.util.FluidPathTree;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class FluidPathTreeTester extends VanillaSetupBaseTester {
+    private static final BlockPos ORIGIN = new BlockPos(0, 60, 0);
+
+    /** Every position in {@link #water} is a water source, and everything else is stone. */
+    private static class WaterAccess extends SingleBlockAccess {
+        final Set<BlockPos> water = new HashSet<>();
+
+        WaterAccess() {
+            super(Blocks.STONE.getDefaultState());
+        }
+
+        @Override
+        public IBlockState getBlockState(BlockPos pos) {
+            return water.contains(pos) ? Blocks.WATER.getDefaultState() : Blocks.STONE.getDefaultState();
+        }
+    }
+
+    /** Reads from a {@link WaterAccess} rather than a real world. */
+    private static class TestTree extends FluidPathTree {
+        final WaterAccess access;
+
+        TestTree(WaterAccess access, int maxDistance) {
+            super(maxDistance);
+            this.access = access;
+        }
+
+        @Override
+        protected boolean isSource(World world, BlockPos pos) {
+            return access.water.contains(pos);
+        }
+
+        @Override
+        protected Fluid getFluidWithFlowing(World world, BlockPos pos) {
+            return access.water.contains(pos) ? FluidRegistry.WATER : null;
+        }
+
+        void searchAll() {
+            search(null, new BlockStateCache(access), Integer.MAX_VALUE, Long.MAX_VALUE);
+        }
+    }
+
+    /** Two rows of water, going east from the origin. */
+    private static WaterAccess createStrip() {
+        WaterAccess access = new WaterAccess();
+        for (int x = 0; x < 6; x++) {
+            access.water.add(ORIGIN.add(x, 0, 0));
+            access.water.add(ORIGIN.add(x, 0, 1));
+        }
+        return access;
+    }
+
+    @Test
+    public void testSourceOrder() {
+        WaterAccess access = new WaterAccess();
+        for (int x = -4; x <= 4; x++) {
+            for (int z = -4; z <= 4; z++) {
+                access.water.add(ORIGIN.add(x, 0, z));
+            }
+        }
+        TestTree tree = new TestTree(access, 3);
+        tree.start(null, ORIGIN, ORIGIN, FluidRegistry.WATER);
+        tree.searchAll();
+        Assert.assertFalse(tree.hasOpenNodes());
+
+        int count = 0;
+        int lastDistance = Integer.MAX_VALUE;
+        int node;
+        while ((node = tree.pollSource()) != FluidPathTree.NO_NODE) {
+            BlockPos pos = tree.getPos(node);
+            int distance = (int) pos.distanceSq(ORIGIN);
+            Assert.assertTrue(distance <= 9);
+            // Furthest first
+            Assert.assertTrue(distance <= lastDistance);
+            lastDistance = distance;
+            count++;
+        }
+        // Every position within 3 blocks of the origin
+        Assert.assertEquals(29, count);
+        Assert.assertEquals(29, tree.size());
+    }
+
+    @Test
+    public void testRemoveAndRepair() {
+        WaterAccess access = createStrip();
+        TestTree tree = new TestTree(access, 16);
+        tree.start(null, ORIGIN, ORIGIN, FluidRegistry.WATER);
+        tree.searchAll();
+        Assert.assertEquals(12, tree.size());
+
+        BlockPos end = ORIGIN.add(5, 0, 0);
+        Assert.assertTrue(tree.validatePath(null, tree.getNode(end), 1));
+
+        // Breaking the northern row removes everything after the break, as that is the way they were found
+        BlockPos broken = ORIGIN.add(1, 0, 0);
+        access.water.remove(broken);
+        Assert.assertFalse(tree.validatePath(null, tree.getNode(end), 2));
+        Assert.assertEquals(FluidPathTree.NO_NODE, tree.getNode(broken));
+        Assert.assertEquals(FluidPathTree.NO_NODE, tree.getNode(end));
+        Assert.assertEquals(7, tree.size());
+        Assert.assertTrue(tree.hasOpenNodes());
+
+        // ...but they can still be reached from the southern row
+        tree.searchAll();
+        Assert.assertEquals(11, tree.size());
+        Assert.assertEquals(FluidPathTree.NO_NODE, tree.getNode(broken));
+        Assert.assertNotEquals(FluidPathTree.NO_NODE, tree.getNode(end));
+        Assert.assertTrue(tree.validatePath(null, tree.getNode(end), 3));
+    }
+
+    @Test
+    public void testNbtPartialSearch() {
+        WaterAccess access = createStrip();
+        TestTree tree = new TestTree(access, 16);
+        tree.start(null, ORIGIN, ORIGIN, FluidRegistry.WATER);
+        tree.search(null, new BlockStateCache(access), 3, Long.MAX_VALUE);
+        Assert.assertTrue(tree.hasOpenNodes());
+
+        TestTree read = new TestTree(access, 16);
+        read.readFromNBT(tree.writeToNBT());
+        Assert.assertEquals(FluidRegistry.WATER, read.getFluid());
+        Assert.assertEquals(tree.size(), read.size());
+        Assert.assertEquals(tree.getOpenCount(), read.getOpenCount());
+        Assert.assertEquals(tree.getSourceCount(), read.getSourceCount());
+
+        // The loaded tree carries on searching from where the saved one stopped
+        tree.searchAll();
+        read.searchAll();
+        Assert.assertEquals(12, read.size());
+        assertSameSources(tree, read);
+    }
+
+    @Test
+    public void testNbtAfterRemove() {
+        WaterAccess access = createStrip();
+        TestTree tree = new TestTree(access, 16);
+        tree.start(null, ORIGIN, ORIGIN, FluidRegistry.WATER);
+        tree.searchAll();
+        access.water.remove(ORIGIN.add(1, 0, 0));
+        tree.validatePath(null, tree.getNode(ORIGIN.add(5, 0, 0)), 1);
+
+        // Writing compacts away the removed nodes
+        NBTTagCompound nbt = tree.writeToNBT();
+        Assert.assertEquals(7, nbt.getIntArray("nodes").length);
+
+        TestTree read = new TestTree(access, 16);
+        read.readFromNBT(nbt);
+        Assert.assertEquals(7, read.size());
+        for (int x = 0; x < 6; x++) {
+            Assert.assertEquals(tree.getNode(ORIGIN.add(x, 0, 0)) != FluidPathTree.NO_NODE,
+                read.getNode(ORIGIN.add(x, 0, 0)) != FluidPathTree.NO_NODE);
+            Assert.assertNotEquals(FluidPathTree.NO_NODE, read.getNode(ORIGIN.add(x, 0, 1)));
+        }
+        // The nodes next to the removed ones are still queued up to be searched again
+        Assert.assertEquals(tree.getOpenCount(), read.getOpenCount());
+        read.searchAll();
+        Assert.assertEquals(11, read.size());
+        Assert.assertTrue(read.validatePath(null, read.getNode(ORIGIN.add(5, 0, 0)), 2));
+    }
+
+    @Test
+    public void testNbtEmpty() {
+        TestTree read = new TestTree(new WaterAccess(), 16);
+        read.readFromNBT(new TestTree(new WaterAccess(), 16).writeToNBT());
+        Assert.assertTrue(read.isEmpty());
+        Assert.assertNull(read.getFluid());
+    }
+
+    private static void assertSameSources(FluidPathTree expected, FluidPathTree actual) {
+        Assert.assertEquals(expected.getSourceCount(), actual.getSourceCount());
+        int node;
+        while ((node = expected.pollSource()) != FluidPathTree.NO_NODE) {
+            int other = actual.pollSource();
+            Assert.assertNotEquals(FluidPathTree.NO_NODE, other);
+            // Nodes that are just as far away can come out in either order
+            Assert.assertEquals(expected.getPos(node).distanceSq(ORIGIN), actual.getPos(other).distanceSq(ORIGIN), 0);
+        }
+        Assert.assertEquals(FluidPathTree.NO_NODE, actual.pollSource());
+    }
+}
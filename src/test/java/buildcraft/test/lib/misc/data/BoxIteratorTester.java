@@ -0,0 +1,46 @@
+package buildcraft.test.lib.misc.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.misc.data.AxisOrder;
+import buildcraft.lib.misc.data.BoxIterator;
+import buildcraft.lib.misc.data.EnumAxisOrder;
+
+public class BoxIteratorTester {
+    private static final BlockPos MIN = new BlockPos(-2, 0, 3);
+    private static final BlockPos MAX = new BlockPos(2, 3, 5);
+
+    @Test
+    public void testSkipThirdMatchesAdvance() {
+        for (AxisOrder.Inversion inversion : AxisOrder.Inversion.VALUES) {
+            for (boolean invert : new boolean[] { false, true }) {
+                AxisOrder order = AxisOrder.getFor(EnumAxisOrder.XZY, inversion);
+                // Try skipping from every possible position
+                BoxIterator positions = new BoxIterator(MIN, MAX, order, invert);
+                int skipFrom = 0;
+                while (positions.hasNext()) {
+                    BoxIterator advanced = new BoxIterator(MIN, MAX, order, invert);
+                    BoxIterator skipped = new BoxIterator(MIN, MAX, order, invert);
+                    for (int i = 0; i < skipFrom; i++) {
+                        advanced.advance();
+                        skipped.advance();
+                    }
+                    int layer = advanced.getCurrent().getY();
+                    while (advanced.getCurrent() != null && advanced.getCurrent().getY() == layer) {
+                        advanced.advance();
+                    }
+                    skipped.skipThird();
+                    String msg = inversion + ", invert = " + invert + ", from " + skipFrom;
+                    Assert.assertEquals(msg, advanced.getCurrent(), skipped.getCurrent());
+                    Assert.assertSame(msg, advanced.getOrder(), skipped.getOrder());
+
+                    positions.advance();
+                    skipFrom++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package buildcraft.test.lib.misc.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.lib.misc.data.DelayedList;
+
+public class DelayedListTester {
+    @Test
+    public void testOrdering() {
+        DelayedList<Integer> list = new DelayedList<>(8);
+        list.add(0, 0);
+        list.add(3, 3);
+        list.add(1, 1);
+        list.add(-4, 0);
+
+        Assert.assertEquals(4, list.getMaxDelay());
+        assertContents(list.advance(), 0, 0);
+        assertContents(list.advance(), 1);
+        assertContents(list.advance());
+        assertContents(list.advance(), 3);
+        assertContents(list.advance());
+        Assert.assertEquals(0, list.getMaxDelay());
+    }
+
+    @Test
+    public void testWrapAround() {
+        DelayedList<Integer> list = new DelayedList<>(4);
+        for (int tick = 0; tick < 100; tick++) {
+            list.add(3, tick);
+            List<Integer> next = list.advance();
+            if (tick < 3) {
+                assertContents(next);
+            } else {
+                assertContents(next, tick - 3);
+            }
+        }
+    }
+
+    @Test
+    public void testOverflow() {
+        DelayedList<Integer> list = new DelayedList<>(4);
+        list.add(10, 10);
+        list.add(5, 5);
+        list.add(2, 2);
+        Assert.assertEquals(list.getWheelSize() + 1, list.getAllElements().size());
+
+        for (int tick = 0; tick <= 12; tick++) {
+            List<Integer> next = list.advance();
+            if (tick == 2 || tick == 5 || tick == 10) {
+                assertContents(next, tick);
+            } else {
+                assertContents(next);
+            }
+        }
+        Assert.assertEquals(list.getWheelSize(), list.getAllElements().size());
+    }
+
+    @Test
+    public void testMinDelay() {
+        DelayedList<Integer> list = new DelayedList<>(4);
+        Assert.assertEquals(Integer.MAX_VALUE, list.getMinDelay());
+        list.add(10, 10);
+        list.add(2, 2);
+
+        for (int tick = 0; tick <= 10; tick++) {
+            int expected = tick <= 2 ? 2 - tick : 10 - tick;
+            Assert.assertEquals(expected, list.getMinDelay());
+            list.advance();
+        }
+        Assert.assertEquals(Integer.MAX_VALUE, list.getMinDelay());
+    }
+
+    @Test
+    public void testSkip() {
+        for (int skip : new int[] { 0, 1, 3, 4, 5, 9, 40, 1000 }) {
+            DelayedList<Integer> advanced = new DelayedList<>(4);
+            DelayedList<Integer> skipped = new DelayedList<>(4);
+            // Advance both a bit first so that the wheel doesn't start at 0
+            advanced.advance();
+            skipped.advance();
+            for (int delay : new int[] { 0, 2, 3, 6, 10, 45, 999, 1003 }) {
+                advanced.add(delay, delay);
+                skipped.add(delay, delay);
+            }
+
+            for (int i = 0; i < skip; i++) {
+                advanced.advance();
+            }
+            skipped.skip(skip);
+            Assert.assertEquals(advanced.getMinDelay(), skipped.getMinDelay());
+            for (int tick = 0; tick < 1010; tick++) {
+                Assert.assertEquals("skip " + skip + ", tick " + tick, advanced.advance(), skipped.advance());
+            }
+        }
+    }
+
+    @Test
+    public void testAllElements() {
+        DelayedList<Integer> list = new DelayedList<>(4);
+        list.add(1, 1);
+        list.add(2, 2);
+        list.add(20, 20);
+        list.advance();
+
+        List<Integer> all = new ArrayList<>();
+        for (List<Integer> inner : list.getAllElements()) {
+            all.addAll(inner);
+        }
+        assertContents(all, 1, 2, 20);
+
+        list.clear();
+        for (List<Integer> inner : list.getAllElements()) {
+            Assert.assertTrue(inner.isEmpty());
+        }
+    }
+
+    @Test
+    public void testAddWhileIterating() {
+        DelayedList<Integer> list = new DelayedList<>(4);
+        list.add(0, 0);
+        for (int tick = 0; tick < 20; tick++) {
+            List<Integer> next = list.advance();
+            assertContents(next, tick);
+            for (Integer i : next) {
+                // Re-adding with the maximum delay must not touch the list that we are iterating over
+                list.add(0, i + 1);
+                list.add(list.getWheelSize() - 1, -1);
+            }
+            list.getAllElements().forEach(l -> l.removeIf(i -> i < 0));
+        }
+    }
+
+    private static void assertContents(List<Integer> list, Integer... expected) {
+        List<Integer> sorted = new ArrayList<>(list);
+        sorted.sort(null);
+        List<Integer> exp = new ArrayList<>();
+        for (Integer i : expected) {
+            exp.add(i);
+        }
+        Assert.assertEquals(exp, sorted);
+    }
+}
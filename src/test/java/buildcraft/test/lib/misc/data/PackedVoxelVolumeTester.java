@@ -0,0 +1,134 @@
+package buildcraft.test.lib.misc.data;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.util.Rotation;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.misc.data.PackedVoxelVolume;
+
+public class PackedVoxelVolumeTester {
+    @Test
+    public void testBitsFor() {
+        Assert.assertEquals(1, PackedVoxelVolume.getBitsFor(0));
+        Assert.assertEquals(1, PackedVoxelVolume.getBitsFor(1));
+        Assert.assertEquals(1, PackedVoxelVolume.getBitsFor(2));
+        Assert.assertEquals(2, PackedVoxelVolume.getBitsFor(3));
+        Assert.assertEquals(2, PackedVoxelVolume.getBitsFor(4));
+        Assert.assertEquals(3, PackedVoxelVolume.getBitsFor(5));
+        Assert.assertEquals(8, PackedVoxelVolume.getBitsFor(256));
+        Assert.assertEquals(9, PackedVoxelVolume.getBitsFor(257));
+    }
+
+    @Test
+    public void testSetGet() {
+        for (int bits = 1; bits <= 32; bits++) {
+            PackedVoxelVolume volume = new PackedVoxelVolume(5, 3, 7, bits);
+            int[] expected = new int[volume.getVolume()];
+            Random rand = new Random(bits);
+            long max = (1L << bits) - 1;
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = (int) (rand.nextLong() & max & Integer.MAX_VALUE);
+                volume.set(i, expected[i]);
+            }
+            Assert.assertEquals(bits, volume.getBits());
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals("bits = " + bits + ", i = " + i, expected[i], volume.get(i));
+            }
+            Assert.assertArrayEquals(expected, volume.toIntArray());
+        }
+    }
+
+    @Test
+    public void testWiden() {
+        PackedVoxelVolume volume = new PackedVoxelVolume(4, 4, 4, 1);
+        volume.set(1, 2, 3, 1);
+        volume.set(3, 3, 3, 1);
+        volume.set(0, 0, 0, 6);
+        Assert.assertEquals(3, volume.getBits());
+        Assert.assertEquals(1, volume.get(1, 2, 3));
+        Assert.assertEquals(1, volume.get(3, 3, 3));
+        Assert.assertEquals(6, volume.get(0, 0, 0));
+        Assert.assertEquals(0, volume.get(2, 2, 2));
+
+        int[] values = volume.toIntArray();
+        values[5] = 1000;
+        PackedVoxelVolume read = new PackedVoxelVolume(4, 4, 4, 1);
+        read.readFrom(values);
+        Assert.assertEquals(10, read.getBits());
+        Assert.assertArrayEquals(values, read.toIntArray());
+    }
+
+    @Test
+    public void testIndexOrder() {
+        PackedVoxelVolume volume = new PackedVoxelVolume(3, 4, 5, 8);
+        int i = 0;
+        for (int z = 0; z < 5; z++) {
+            for (int y = 0; y < 4; y++) {
+                for (int x = 0; x < 3; x++) {
+                    Assert.assertEquals(i++, volume.getIndex(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBooleans() {
+        boolean[][][] flags = new boolean[3][2][4];
+        flags[0][0][0] = true;
+        flags[2][1][3] = true;
+        flags[1][0][2] = true;
+        PackedVoxelVolume volume = PackedVoxelVolume.fromBooleans(flags);
+        byte[] bytes = volume.toBooleanArray();
+        PackedVoxelVolume read = new PackedVoxelVolume(3, 2, 4, 1);
+        read.readFromBooleans(bytes);
+        for (int z = 0; z < 4; z++) {
+            for (int y = 0; y < 2; y++) {
+                for (int x = 0; x < 3; x++) {
+                    Assert.assertEquals(flags[x][y][z], volume.getBoolean(x, y, z));
+                    Assert.assertEquals(flags[x][y][z], read.getBoolean(x, y, z));
+                }
+            }
+        }
+        PackedVoxelVolume copy = volume.copy();
+        copy.setBoolean(0, 0, 0, false);
+        Assert.assertTrue(volume.getBoolean(0, 0, 0));
+    }
+
+    @Test
+    public void testRotatedView() {
+        PackedVoxelVolume volume = new PackedVoxelVolume(3, 2, 5, 8);
+        for (int i = 0; i < volume.getVolume(); i++) {
+            volume.set(i, i);
+        }
+        for (Rotation rotation : Rotation.values()) {
+            PackedVoxelVolume.RotatedView view = volume.rotated(rotation);
+            // Find the minimum corner of the rotated volume, to move it back to the origin
+            BlockPos min = null;
+            for (int x : new int[] { 0, volume.sizeX - 1 }) {
+                for (int z : new int[] { 0, volume.sizeZ - 1 }) {
+                    BlockPos corner = new BlockPos(x, 0, z).rotate(rotation);
+                    min = min == null ? corner : new BlockPos(
+                        Math.min(min.getX(), corner.getX()), 0, Math.min(min.getZ(), corner.getZ())
+                    );
+                }
+            }
+            for (int z = 0; z < volume.sizeZ; z++) {
+                for (int y = 0; y < volume.sizeY; y++) {
+                    for (int x = 0; x < volume.sizeX; x++) {
+                        BlockPos rotated = new BlockPos(x, y, z).rotate(rotation).subtract(min);
+                        Assert.assertTrue(rotated.getX() < view.sizeX && rotated.getZ() < view.sizeZ);
+                        Assert.assertEquals(
+                            rotation.toString(),
+                            volume.get(x, y, z),
+                            view.get(rotated.getX(), rotated.getY(), rotated.getZ())
+                        );
+                    }
+                }
+            }
+        }
+    }
+}
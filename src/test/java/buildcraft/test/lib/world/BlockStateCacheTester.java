@@ -0,0 +1,127 @@
+package buildcraft.test.lib.world;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.world.BlockStateCache;
+import buildcraft.lib.world.SingleBlockAccess;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class BlockStateCacheTester extends VanillaSetupBaseTester {
+    /** A lake of water 8 blocks deep, with stone everywhere else. Counts every read. */
+    private static class CountingAccess extends SingleBlockAccess {
+        int reads = 0;
+        IBlockState replaced = null;
+
+        CountingAccess() {
+            super(Blocks.AIR.getDefaultState());
+        }
+
+        @Override
+        public IBlockState getBlockState(BlockPos pos) {
+            reads++;
+            if (replaced != null) {
+                return replaced;
+            }
+            if (pos.getY() >= 56 && pos.getY() < 64 && Math.abs(pos.getX()) < 48 && Math.abs(pos.getZ()) < 48) {
+                return Blocks.WATER.getDefaultState();
+            }
+            return pos.getY() >= 64 ? Blocks.AIR.getDefaultState() : Blocks.STONE.getDefaultState();
+        }
+    }
+
+    /** The same flood fill that the pump uses to build its queue, which checks every neighbour of every fluid
+     * block. */
+    private static int floodFill(BlockStateCache states) {
+        BlockPos start = new BlockPos(0, 63, 0);
+        Set<BlockPos> checked = new HashSet<>();
+        Deque<BlockPos> toCheck = new ArrayDeque<>();
+        toCheck.add(start);
+        checked.add(start);
+        int found = 0;
+        while (!toCheck.isEmpty()) {
+            BlockPos current = toCheck.poll();
+            found++;
+            for (EnumFacing face : EnumFacing.VALUES) {
+                BlockPos next = current.offset(face);
+                // Checked twice, like the pump did
+                if (states.getFluidWithFlowing(next) != null && states.getBlockState(next) != null) {
+                    if (checked.add(next)) {
+                        toCheck.add(next);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void testFloodFillLookups() {
+        CountingAccess access = new CountingAccess();
+        // The lake (and the blocks around it) covers 7 * 7 chunks and 2 sections high, so the cache needs to be larger
+        // than the default for nothing to be evicted
+        BlockStateCache states = new BlockStateCache(access, 128);
+        int found = floodFill(states);
+        Assert.assertEquals(95 * 95 * 8, found);
+        Assert.assertEquals(access.reads, states.getWorldLookups());
+        long avoided = states.getLookups() - states.getWorldLookups();
+        System.out.println("Flood fill of " + found + " blocks: " + states.getLookups() + " lookups, "
+            + states.getWorldLookups() + " from the world, " + avoided + " avoided");
+        // Every block that was looked at should only have been read from the world once
+        Assert.assertTrue(avoided > states.getWorldLookups());
+
+        // Running again shouldn't read anything, as the whole lake fits in the cache
+        int before = access.reads;
+        floodFill(states);
+        Assert.assertEquals(before, access.reads);
+    }
+
+    @Test
+    public void testMarkChanged() {
+        CountingAccess access = new CountingAccess();
+        BlockStateCache states = new BlockStateCache(access);
+        BlockPos pos = new BlockPos(3, 60, -7);
+        BlockPos other = pos.east();
+        Assert.assertEquals(Blocks.WATER.getDefaultState(), states.getBlockState(pos));
+        Assert.assertEquals(Blocks.WATER.getDefaultState(), states.getBlockState(other));
+
+        access.replaced = Blocks.DIRT.getDefaultState();
+        Assert.assertEquals(Blocks.WATER.getDefaultState(), states.getBlockState(pos));
+        states.markChanged(pos);
+        Assert.assertEquals(Blocks.DIRT.getDefaultState(), states.getBlockState(pos));
+        Assert.assertEquals(Blocks.WATER.getDefaultState(), states.getBlockState(other));
+
+        states.clear();
+        Assert.assertEquals(Blocks.DIRT.getDefaultState(), states.getBlockState(other));
+    }
+
+    @Test
+    public void testEviction() {
+        CountingAccess access = new CountingAccess();
+        BlockStateCache states = new BlockStateCache(access, 2);
+        BlockPos a = new BlockPos(0, 60, 0);
+        BlockPos b = new BlockPos(16, 60, 0);
+        BlockPos c = new BlockPos(32, 60, 0);
+        states.getBlockState(a);
+        states.getBlockState(b);
+        states.getBlockState(a);
+        states.getBlockState(c);
+        Assert.assertEquals(3, access.reads);
+        // b was the least recently used, so it was dropped
+        states.getBlockState(a);
+        Assert.assertEquals(3, access.reads);
+        states.getBlockState(b);
+        Assert.assertEquals(4, access.reads);
+    }
+}
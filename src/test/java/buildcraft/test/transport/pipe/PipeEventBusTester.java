@@ -3,6 +3,7 @@ package buildcraft.test.transport.pipe;
 import org.junit.Assert;
 import org.junit.Test;
 
+import buildcraft.api.transport.pipe.PipeEventFluid;
 import buildcraft.api.transport.pipe.PipeEventHandler;
 import buildcraft.api.transport.pipe.PipeEventItem;
 
@@ -32,8 +33,75 @@ public class PipeEventBusTester {
         Assert.assertEquals(0, event.targetSpeed, 0.00001);
     }
 
+    @Test
+    public void testOrderAfterReregister() {
+        PipeEventBus bus = new PipeEventBus();
+        bus.registerHandler(this);
+        bus.registerHandler(new SecondHandler());
+
+        // Handlers with the same priority are called in the order that they were registered
+        PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        bus.fireEvent(event);
+        Assert.assertEquals(2, event.targetSpeed, 0.00001);
+
+        bus.unregisterHandler(this);
+        event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        bus.fireEvent(event);
+        Assert.assertEquals(2, event.targetSpeed, 0.00001);
+
+        bus.registerHandler(this);
+        event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        bus.fireEvent(event);
+        Assert.assertEquals(1, event.targetSpeed, 0.00001);
+    }
+
+    /** Measures how many events per second a bus with a realistic number of handlers (a flow, a behaviour, a few
+     * pluggables and a filter) can fire. */
+    @Test
+    public void benchmarkThroughput() {
+        PipeEventBus bus = new PipeEventBus();
+        bus.registerHandler(this);
+        bus.registerHandler(new SecondHandler());
+        for (int i = 0; i < 6; i++) {
+            bus.registerHandler(new UnrelatedHandler());
+        }
+
+        PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        final int count = 2_000_000;
+        // Warm up
+        for (int i = 0; i < count / 10; i++) {
+            bus.fireEvent(event);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            bus.fireEvent(event);
+        }
+        long time = System.nanoTime() - start;
+        dontInlineThis += (long) event.targetSpeed;
+        System.out.println("Fired " + count + " events in " + time / 1_000_000 + "ms (" + (long) (count / (time / 1e9)) + " events per second)");
+    }
+
     @PipeEventHandler
     public void modifySpeed(PipeEventItem.ModifySpeed event) {
         event.targetSpeed = 1;
     }
+
+    public static class SecondHandler {
+        @PipeEventHandler
+        public void modifySpeed(PipeEventItem.ModifySpeed event) {
+            event.targetSpeed = 2;
+        }
+    }
+
+    public static class UnrelatedHandler {
+        @PipeEventHandler
+        public void sideCheck(PipeEventItem.SideCheck event) {
+            dontInlineThis++;
+        }
+
+        @PipeEventHandler
+        public void fluidSideCheck(PipeEventFluid.SideCheck event) {
+            dontInlineThis++;
+        }
+    }
 }
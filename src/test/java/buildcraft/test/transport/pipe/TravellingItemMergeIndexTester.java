@@ -0,0 +1,101 @@
+package buildcraft.test.transport.pipe;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Items;
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.item.ItemStack;
+
+import buildcraft.transport.pipe.flow.TravellingItem;
+import buildcraft.transport.pipe.flow.TravellingItemMergeIndex;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class TravellingItemMergeIndexTester extends VanillaSetupBaseTester {
+    private static final int CONGESTED_COUNT = 4000;
+    private static final int INSERT_COUNT = 2000;
+
+    @Test
+    public void testFindsSameAsLinear() {
+        TravellingItemMergeIndex index = new TravellingItemMergeIndex();
+
+        TravellingItem apples = createItem(new ItemStack(Items.APPLE, 3), null, 100);
+        index.add(apples);
+        TravellingItem red = createItem(new ItemStack(Items.APPLE, 3), EnumDyeColor.RED, 100);
+        index.add(red);
+
+        Assert.assertSame(apples, index.findMergeTarget(createItem(new ItemStack(Items.APPLE), null, 109)));
+        Assert.assertSame(red, index.findMergeTarget(createItem(new ItemStack(Items.APPLE), EnumDyeColor.RED, 91)));
+        Assert.assertNull(index.findMergeTarget(createItem(new ItemStack(Items.APPLE), null, 110)));
+        Assert.assertNull(index.findMergeTarget(createItem(new ItemStack(Items.ARROW), null, 100)));
+
+        index.remove(apples);
+        Assert.assertNull(index.findMergeTarget(createItem(new ItemStack(Items.APPLE), null, 100)));
+        Assert.assertEquals(1, index.size());
+    }
+
+    /** Compares inserting into a backed-up pipe using the old linear scan and the merge index. */
+    @Test
+    public void benchmarkCongestedInsertion() {
+        TravellingItemMergeIndex index = new TravellingItemMergeIndex();
+        List<TravellingItem> all = new ArrayList<>();
+        for (int i = 0; i < CONGESTED_COUNT; i++) {
+            // Mostly full stacks, which can't be merged into, with the occasional partial stack that can be
+            int count = i % 50 == 0 ? 32 : 64;
+            TravellingItem item = createItem(new ItemStack(Blocks.COBBLESTONE, count), null, i / 4);
+            index.add(item);
+            all.add(item);
+        }
+        List<TravellingItem> toInsert = new ArrayList<>();
+        for (int i = 0; i < INSERT_COUNT; i++) {
+            toInsert.add(createItem(new ItemStack(Blocks.COBBLESTONE), null, i));
+        }
+
+        long start = System.nanoTime();
+        boolean[] linearFound = new boolean[INSERT_COUNT];
+        for (int i = 0; i < INSERT_COUNT; i++) {
+            TravellingItem with = toInsert.get(i);
+            for (TravellingItem item : all) {
+                if (item.canMerge(with)) {
+                    linearFound[i] = true;
+                    break;
+                }
+            }
+        }
+        long linearTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        TravellingItem[] indexFound = new TravellingItem[INSERT_COUNT];
+        for (int i = 0; i < INSERT_COUNT; i++) {
+            indexFound[i] = index.findMergeTarget(toInsert.get(i));
+        }
+        long indexTime = System.nanoTime() - start;
+
+        int found = 0;
+        for (int i = 0; i < INSERT_COUNT; i++) {
+            Assert.assertEquals("Insert " + i, linearFound[i], indexFound[i] != null);
+            if (indexFound[i] != null) {
+                Assert.assertTrue(indexFound[i].canMerge(toInsert.get(i)));
+                found++;
+            }
+        }
+        // Only the items that finish near one of the partial stacks can be merged
+        Assert.assertTrue(found > 0);
+        Assert.assertTrue(found < INSERT_COUNT);
+        System.out.println("Inserting " + INSERT_COUNT + " items into a pipe with " + CONGESTED_COUNT + " items:");
+        System.out.println("  linear = " + linearTime / INSERT_COUNT + "ns per insert");
+        System.out.println("  index  = " + indexTime / INSERT_COUNT + "ns per insert");
+    }
+
+    private static TravellingItem createItem(ItemStack stack, EnumDyeColor colour, long tickFinished) {
+        TravellingItem item = new TravellingItem(stack);
+        item.colour = colour;
+        item.genTimings(tickFinished, 0);
+        return item;
+    }
+}